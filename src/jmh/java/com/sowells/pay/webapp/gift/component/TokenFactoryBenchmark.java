@@ -0,0 +1,35 @@
+package com.sowells.pay.webapp.gift.component;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 토큰 생성 비용
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenFactoryBenchmark {
+  TokenFactory tokenFactory;
+
+  @Setup
+  public void setUp() {
+    tokenFactory = new TokenFactory();
+    ReflectionTestUtils.setField(tokenFactory, "GIFT_TOKEN_SIZE", 3);
+  }
+
+  @Benchmark
+  public String create() {
+    return tokenFactory.create();
+  }
+
+  @Benchmark
+  public String encode() {
+    return tokenFactory.encode(12345);
+  }
+}
@@ -0,0 +1,94 @@
+package com.sowells.pay.webapp.gift.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sowells.pay.webapp.gift.controller.GiftInfoBinaryMessageConverter;
+import lombok.Data;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 조회 API 응답의 직렬화 비용
+ * - objectList : 받기 완료된 정보를 내부 클래스 객체 리스트로 들고 Jackson 이 리플렉션으로 쓰던 이전 형태
+ * - json : 병렬 배열에서 JsonWriter 로 직접 쓰는 현재 형태
+ * - binary : Accept: application/x-gift-info 응답
+ * 할당량 비교 : ./mvnw -Pjmh verify -Djmh.args="GiftInfoResponseBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GiftInfoResponseBenchmark {
+  @Param({"1", "100", "300"})
+  int numOfReceivings;
+
+  ObjectMapper objectMapper;
+  GiftInfoResponse response;
+  ObjectListResponse objectListResponse;
+
+  @Setup
+  public void setUp() {
+    objectMapper = new ObjectMapper();
+    Timestamp creationTime = new Timestamp(System.currentTimeMillis());
+    long[] receiverIds = new long[numOfReceivings];
+    long[] amounts = new long[numOfReceivings];
+    long receivedAmount = 0;
+    for(int i = 0; i < numOfReceivings; i++) {
+      receiverIds[i] = 100_000L + i;
+      amounts[i] = 30_000L + i;
+      receivedAmount += amounts[i];
+    }
+    response = new GiftInfoResponse(creationTime, 10_000_000L, receivedAmount, receiverIds, amounts);
+
+    objectListResponse = new ObjectListResponse();
+    objectListResponse.setCreationTime(creationTime);
+    objectListResponse.setTotalAmount(10_000_000L);
+    objectListResponse.setReceivedAmount(receivedAmount);
+    List<ObjectListResponse.Receiving> receivings = new ArrayList<>();
+    for(int i = 0; i < numOfReceivings; i++) {
+      ObjectListResponse.Receiving receiving = objectListResponse.new Receiving();
+      receiving.setReceiverId(receiverIds[i]);
+      receiving.setAmount(amounts[i]);
+      receivings.add(receiving);
+    }
+    objectListResponse.setRecevings(receivings);
+  }
+
+  @Benchmark
+  public byte[] objectList() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(objectListResponse);
+  }
+
+  @Benchmark
+  public byte[] json() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(response);
+  }
+
+  @Benchmark
+  public byte[] binary() {
+    return GiftInfoBinaryMessageConverter.encode(response);
+  }
+
+  /**
+   * 이전 응답 형태
+   */
+  @Data
+  public static class ObjectListResponse {
+    Timestamp creationTime;
+    long totalAmount;
+    long receivedAmount;
+    List<Receiving> recevings;
+
+    @Data
+    public class Receiving {
+      long receiverId;
+      long amount;
+    }
+  }
+}
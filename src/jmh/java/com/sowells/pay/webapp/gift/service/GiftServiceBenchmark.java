@@ -0,0 +1,116 @@
+package com.sowells.pay.webapp.gift.service;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.component.GiftInfoCache;
+import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 인메모리 H2 기반 뿌리기 생성/받기/조회 비용
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GiftServiceBenchmark {
+  static final long CREATOR_ID = 0;
+  static final int MAX_NUM_OF_RECEIVERS = 300;
+
+  @Param({"10", "300"})
+  int numOfReceivers;
+
+  ConfigurableApplicationContext context;
+  GiftService giftService;
+  GiftInfoCache infoCache;
+
+  final AtomicLong roomSequence = new AtomicLong();
+  final AtomicLong userSequence = new AtomicLong(CREATOR_ID + 1);
+  String retrievalRoomId;
+  String retrievalToken;
+
+  @Setup
+  public void setUp() {
+    context = new SpringApplicationBuilder(PayWebApplication.class)
+      .profiles("test")
+      .web(WebApplicationType.NONE)
+      .run("--gift.token.size=3",
+        "--logging.level.org.hibernate.SQL=WARN",
+        "--logging.level.com.sowells=WARN");
+    giftService = context.getBean(GiftService.class);
+    infoCache = context.getBean(GiftInfoCache.class);
+
+    // 조회 대상 : 모든 분배건이 받기 완료된 뿌리기 건
+    retrievalRoomId = "retrieval-room";
+    retrievalToken = giftService.add(CREATOR_ID, retrievalRoomId, 10_000_000L, numOfReceivers);
+    for(int i = 0; i < numOfReceivers; i++) {
+      giftService.receive(userSequence.incrementAndGet(), retrievalRoomId, retrievalToken);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public String add() {
+    return giftService.add(CREATOR_ID, nextRoomId(), 10_000_000L, numOfReceivers);
+  }
+
+  /**
+   * 분배건이 모두 소진되면 새 뿌리기 건을 만들어 이어서 받는다. 생성 비용은 분배건 수만큼 나누어 포함된다.
+   */
+  @Benchmark
+  public long receive(ReceiverState state) {
+    if(state.remaining == 0) {
+      state.roomId = nextRoomId();
+      state.token = giftService.add(CREATOR_ID, state.roomId, 10_000_000L, MAX_NUM_OF_RECEIVERS);
+      state.remaining = MAX_NUM_OF_RECEIVERS;
+    }
+    state.remaining--;
+    return giftService.receive(userSequence.incrementAndGet(), state.roomId, state.token);
+  }
+
+  /**
+   * 이미 받은 사용자의 재요청 - 폭주 시 대부분을 차지하는 거절 경로
+   */
+  @Benchmark
+  public Object receiveRejected() {
+    try {
+      return giftService.receive(CREATOR_ID + 2, retrievalRoomId, retrievalToken);
+    } catch (BadRequestException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public GiftInfoResponse getCached() {
+    return giftService.get(CREATOR_ID, retrievalRoomId, retrievalToken);
+  }
+
+  @Benchmark
+  public GiftInfoResponse getUncached() {
+    infoCache.invalidate(retrievalRoomId, retrievalToken);
+    return giftService.get(CREATOR_ID, retrievalRoomId, retrievalToken);
+  }
+
+  private String nextRoomId() {
+    return "room-" + roomSequence.incrementAndGet();
+  }
+
+  @State(Scope.Thread)
+  public static class ReceiverState {
+    String roomId;
+    String token;
+    int remaining = 0;
+  }
+}
@@ -0,0 +1,90 @@
+package com.sowells.pay.webapp.gift.service;
+
+import com.sowells.pay.webapp.gift.component.BoundedRandomDistribution;
+import com.sowells.pay.webapp.gift.component.DistributionPolicy;
+import com.sowells.pay.webapp.gift.component.ShareSequence;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 인원 수에 따른 금액 분배 비용
+ * legacy 는 분배 방식 분리 이전의 GiftService.MoneyDivider (배열 할당 + 공유 Random) 이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyDividerBenchmark {
+  @Param({"1", "10", "100", "300"})
+  int numOfReceivers;
+
+  DistributionPolicy boundedRandom = new BoundedRandomDistribution();
+
+  @Benchmark
+  public void legacy(Blackhole blackhole) {
+    LegacyMoneyDivider divider = new LegacyMoneyDivider(10_000_000L, numOfReceivers);
+    for(int i = 0; i < numOfReceivers; i++) {
+      blackhole.consume(divider.next());
+    }
+  }
+
+  @Benchmark
+  public void boundedRandom(Blackhole blackhole) {
+    ShareSequence shares = boundedRandom.divide(10_000_000L, numOfReceivers);
+    while(shares.hasNext()) {
+      blackhole.consume(shares.next());
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void legacyConcurrent(Blackhole blackhole) {
+    legacy(blackhole);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void boundedRandomConcurrent(Blackhole blackhole) {
+    boundedRandom(blackhole);
+  }
+
+  @Slf4j
+  static class LegacyMoneyDivider {
+    private final int numOfReceivers;
+    private final long minAmount;
+    private final long maxAmount;
+    private long[] amounts;
+    private int index = 0;
+
+    LegacyMoneyDivider(long totalAmount, int numOfReceivers) {
+      this.numOfReceivers = numOfReceivers;
+
+      minAmount = totalAmount / numOfReceivers / 2;
+      maxAmount = totalAmount / 2 + minAmount;
+      long remainingAmount = totalAmount;
+      amounts = new long[numOfReceivers];
+
+      for(int i = 0; i < numOfReceivers; i++) {
+        long nextMax = remainingAmount - (numOfReceivers - i - 1) * minAmount;
+        if(i < numOfReceivers - 1)
+          amounts[i] = RandomUtils.nextLong(minAmount, Math.min(maxAmount+1, nextMax));
+        else
+          amounts[i] = remainingAmount;
+
+        remainingAmount -= amounts[i];
+      }
+      log.debug("Money divided into {}.", amounts);
+    }
+
+    long next() {
+      if(index >= numOfReceivers) throw new IndexOutOfBoundsException();
+      return amounts[index++];
+    }
+  }
+}
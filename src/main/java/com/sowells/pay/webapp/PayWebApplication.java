@@ -2,8 +2,10 @@ package com.sowells.pay.webapp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class PayWebApplication {
 
 	public static void main(String[] args) {
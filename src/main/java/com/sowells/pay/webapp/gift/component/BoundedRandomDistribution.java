@@ -0,0 +1,23 @@
+package com.sowells.pay.webapp.gift.component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 분배건마다 금액을 무작위로 정하되, 한 사람이 받는 금액은 n등분 한 금액의 0.5배 이상, 전체 금액의 절반 + 최소 금액 이하가 되도록 한다.
+ * ex) 10000원을 4명이 나눠갖는 경우, 1250원 ~ 6250원 사이의 금액을 얻는다.
+ * 난수는 스레드별 ThreadLocalRandom 을 사용하여 동시에 생성되는 뿌리기 건끼리 난수 생성기를 두고 경합하지 않는다.
+ */
+public class BoundedRandomDistribution implements DistributionPolicy {
+  @Override
+  public ShareSequence divide(long totalAmount, int numOfShares) {
+    long minAmount = totalAmount / numOfShares / 2;
+    // 인원이 적어 최대 금액으로도 전체 금액을 나눌 수 없으면 최대 금액을 n등분 한 금액(올림)으로 늘린다.
+    long maxAmount = Math.max(totalAmount / 2 + minAmount, (totalAmount + numOfShares - 1) / numOfShares);
+    return new ShareSequence(totalAmount, numOfShares, minAmount, maxAmount) {
+      @Override
+      protected long nextAmount(int index, long lower, long upper) {
+        return ThreadLocalRandom.current().nextLong(lower, upper + 1);
+      }
+    };
+  }
+}
@@ -0,0 +1,8 @@
+package com.sowells.pay.webapp.gift.component;
+
+/**
+ * 뿌릴 금액을 인원 수만큼의 분배건으로 나누는 방식
+ */
+public interface DistributionPolicy {
+  ShareSequence divide(long totalAmount, int numOfShares);
+}
@@ -0,0 +1,18 @@
+package com.sowells.pay.webapp.gift.component;
+
+/**
+ * 금액을 n등분 한다. 나누어 떨어지지 않는 금액은 앞선 분배건부터 1씩 더한다.
+ */
+public class EvenDistribution implements DistributionPolicy {
+  @Override
+  public ShareSequence divide(long totalAmount, int numOfShares) {
+    long baseAmount = totalAmount / numOfShares;
+    long remainder = totalAmount % numOfShares;
+    return new ShareSequence(totalAmount, numOfShares, baseAmount, remainder == 0 ? baseAmount : baseAmount + 1) {
+      @Override
+      protected long nextAmount(int index, long lower, long upper) {
+        return index < remainder ? baseAmount + 1 : baseAmount;
+      }
+    };
+  }
+}
@@ -0,0 +1,30 @@
+package com.sowells.pay.webapp.gift.component;
+
+import java.util.Arrays;
+
+/**
+ * 미리 정해진 금액 목록 그대로 분배한다. 금액 목록의 합과 개수가 뿌릴 금액, 인원 수와 같아야 한다.
+ */
+public class FixedDistribution implements DistributionPolicy {
+  private final long[] amounts;
+
+  public FixedDistribution(long... amounts) {
+    if(amounts.length == 0) throw new IllegalArgumentException("Amounts must not be empty.");
+    this.amounts = amounts.clone();
+  }
+
+  @Override
+  public ShareSequence divide(long totalAmount, int numOfShares) {
+    if(numOfShares != amounts.length || Arrays.stream(amounts).sum() != totalAmount) {
+      throw new IllegalArgumentException(String.format("Fixed amounts %s cannot be divided into %d shares of %d.", Arrays.toString(amounts), numOfShares, totalAmount));
+    }
+    long minAmount = Arrays.stream(amounts).min().getAsLong();
+    long maxAmount = Arrays.stream(amounts).max().getAsLong();
+    return new ShareSequence(totalAmount, numOfShares, minAmount, maxAmount) {
+      @Override
+      protected long nextAmount(int index, long lower, long upper) {
+        return amounts[index];
+      }
+    };
+  }
+}
@@ -0,0 +1,72 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * 비동기 모드의 API 처리 스레드 풀
+ * 스레드 수를 커넥션 풀 크기에 맞춰 커넥션을 기다리며 점유되는 스레드가 없도록 하고,
+ * 대기열이 가득 차면 요청을 쌓아두지 않고 ServiceUnavailableException 으로 바로 거절한다.
+ */
+@Component
+@ConditionalOnProperty(name = "gift.api.execution-mode", havingValue = "async")
+@Slf4j
+public class GiftApiExecutor implements GiftRequestExecutor {
+  final MeterRegistry meterRegistry;
+
+  @Value("${gift.api.async.threads:${spring.datasource.hikari.maximum-pool-size:10}}")
+  int THREADS;
+
+  @Value("${gift.api.async.queue-capacity:1000}")
+  int QUEUE_CAPACITY;
+
+  private ThreadPoolExecutor executor;
+
+  public GiftApiExecutor(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  void start() {
+    executor = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(QUEUE_CAPACITY), new CustomizableThreadFactory("gift-api-"), new ThreadPoolExecutor.AbortPolicy());
+    ExecutorServiceMetrics.monitor(meterRegistry, executor, "gift.api.executor", Collections.emptyList());
+    log.info("Gift API executor started. threads: {}, queueCapacity: {}", THREADS, QUEUE_CAPACITY);
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> submit(String roomId, Supplier<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(task.get());
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(new ServiceUnavailableException(Errors.SERVER_BUSY));
+    }
+    return future;
+  }
+}
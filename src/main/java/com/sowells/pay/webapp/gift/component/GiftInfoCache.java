@@ -0,0 +1,119 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 조회 API 응답을 (roomId, token) 별로 캐시한다.
+ * 캐시 항목은 ttl 이 지나거나 조회 가능 기간이 끝나면 만료되고, 받기가 완료되면 받은 내역이 바로 반영된다.
+ */
+@Component
+public class GiftInfoCache {
+  private final Cache<String, Entry> cache;
+  private final long ttlNanos;
+
+  public GiftInfoCache(@Value("${gift.info.cache.size:10000}") long maximumSize,
+                       @Value("${gift.info.cache.ttl:5000}") long ttlMillis,
+                       ObjectProvider<MeterRegistry> meterRegistry) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.cache = Caffeine.newBuilder()
+      .maximumSize(maximumSize)
+      .expireAfter(new Expiry<String, Entry>() {
+        @Override
+        public long expireAfterCreate(String key, Entry entry, long currentTime) {
+          long untilInvisible = TimeUnit.MILLISECONDS.toNanos(entry.visibleUntil - System.currentTimeMillis());
+          return Math.max(0, Math.min(ttlNanos, untilInvisible));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+          return currentDuration; // 받은 내역 반영은 만료 시각을 늘리지 않는다.
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+          return currentDuration;
+        }
+      })
+      .recordStats()
+      .build();
+    meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, "gift.info"));
+  }
+
+  /**
+   * 캐시된 응답을 찾고, 없으면 loader 로 읽어 캐시한다.
+   * 읽는 동안 커밋된 받기의 반영(addReceiving)은 읽기가 끝날 때까지 기다렸다가 읽은 응답에 더해지므로 빠지지 않는다.
+   */
+  public Entry get(String roomId, String token, Supplier<Entry> loader) {
+    return cache.get(key(roomId, token), key -> loader.get());
+  }
+
+  /**
+   * 캐시된 응답에 받은 내역을 추가한다. 현재 트랜잭션이 커밋된 이후에 반영된다.
+   */
+  public void addReceiving(String roomId, String token, long receiverId, long amount) {
+    if(TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          applyReceiving(roomId, token, receiverId, amount);
+        }
+      });
+    } else {
+      applyReceiving(roomId, token, receiverId, amount);
+    }
+  }
+
+  // computeIfPresent 는 잠금 없이 먼저 항목을 찾아 읽는 중인 항목을 건너뛰므로, compute 로 읽기가 끝날 때까지 기다려 반영한다.
+  private void applyReceiving(String roomId, String token, long receiverId, long amount) {
+    cache.asMap().compute(key(roomId, token), (key, entry) -> entry == null ? null : entry.withReceiving(receiverId, amount));
+  }
+
+  public void invalidate(String roomId, String token) {
+    cache.invalidate(key(roomId, token));
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  private static String key(String roomId, String token) {
+    return roomId + ':' + token; // token 에는 ':' 가 포함되지 않는다.
+  }
+
+  @Getter
+  public static class Entry {
+    private final long creatorId;
+    private final long visibleUntil;
+    private final GiftInfoResponse response;
+
+    public Entry(long creatorId, long visibleUntil, GiftInfoResponse response) {
+      this.creatorId = creatorId;
+      this.visibleUntil = visibleUntil;
+      this.response = response;
+    }
+
+    /**
+     * 직렬화 중인 응답이 바뀌지 않도록 받은 내역이 추가된 새 응답을 만든다.
+     * 받기 커밋 ~ 캐시 반영 사이에 DB에서 읽어 캐시된 응답에는 이미 받은 내역이 있으므로 다시 추가하지 않는다.
+     */
+    Entry withReceiving(long receiverId, long amount) {
+      if(response.hasReceiver(receiverId)) return this;
+      return new Entry(creatorId, visibleUntil, response.withReceiving(receiverId, amount));
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import com.sowells.pay.webapp.gift.exception.InternalException;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 뿌리기 서비스의 처리 시간과 결과를 측정한다.
+ *   gift.service : 서비스 메소드별 처리 시간 (operation, outcome)
+ *   gift.service.cpu : 서비스 메소드별 CPU 사용 시간 (operation)
+ *   gift.db : 저장소 메소드별 처리 시간 (repository, method)
+ *   gift.outcome : 서비스 메소드별 결과 건수 (operation, outcome - SUCCESS 또는 Errors 값)
+ */
+@Aspect
+@Component
+public class GiftMetricsAspect {
+  private static final String SUCCESS = "SUCCESS";
+  private static final Package REPOSITORY_PACKAGE = GiftOrderRepository.class.getPackage();
+
+  final MeterRegistry meterRegistry;
+  final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+  public GiftMetricsAspect(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Around("execution(public * com.sowells.pay.webapp.gift.service.GiftService.*(..))")
+  public Object measureService(ProceedingJoinPoint joinPoint) throws Throwable {
+    String operation = joinPoint.getSignature().getName();
+    Timer.Sample sample = Timer.start(meterRegistry);
+    long cpuStarted = threadMXBean.getCurrentThreadCpuTime();
+    String outcome = SUCCESS;
+    try {
+      return joinPoint.proceed();
+    } catch (BadRequestException e) {
+      outcome = e.getError().name();
+      throw e;
+    } catch (InternalException e) {
+      outcome = e.getError().name();
+      throw e;
+    } catch (Throwable e) {
+      outcome = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      Timer.builder("gift.service.cpu").tag("operation", operation).register(meterRegistry)
+        .record(threadMXBean.getCurrentThreadCpuTime() - cpuStarted, TimeUnit.NANOSECONDS);
+      sample.stop(Timer.builder("gift.service").tag("operation", operation).tag("outcome", outcome).register(meterRegistry));
+      Counter.builder("gift.outcome").tag("operation", operation).tag("outcome", outcome).register(meterRegistry).increment();
+    }
+  }
+
+  @Around("execution(public * com.sowells.pay.webapp.gift.repository.*.*(..))")
+  public Object measureRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    try {
+      return joinPoint.proceed();
+    } finally {
+      sample.stop(Timer.builder("gift.db")
+        .tag("repository", repositoryName(joinPoint.getThis()))
+        .tag("method", joinPoint.getSignature().getName())
+        .register(meterRegistry));
+    }
+  }
+
+  /**
+   * CrudRepository 에서 상속된 메소드도 실제 저장소 이름으로 구분한다.
+   */
+  private String repositoryName(Object repository) {
+    for(Class<?> type : repository.getClass().getInterfaces()) {
+      if(type.getPackage() == REPOSITORY_PACKAGE) return type.getSimpleName();
+    }
+    return repository.getClass().getSimpleName();
+  }
+}
@@ -0,0 +1,139 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sowells.pay.webapp.gift.entity.GiftOrder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 받기 요청 검증에 필요한 뿌리기 건 정보(생성 후 바뀌지 않는 값)를 (roomId, token) 별로 캐시한다.
+ * 항목은 뿌리기 건을 생성할 때 채워지고, 토큰이 재발급될 수 있는 조회 가능 기간이 끝나면 만료된다.
+ * 존재하지 않는 토큰은 짧은 시간(gift.order.unknown-cache.ttl) 동안 따로 기억하여, 잘못된 요청이 반복되어도 DB를 조회하지 않는다.
+ * 다른 노드에서 생성된 뿌리기 건은 unknown 항목이 만료될 때까지 INVALID_TOKEN 으로 거절될 수 있다.
+ */
+@Component
+public class GiftOrderCache {
+  private static final Boolean UNKNOWN = Boolean.TRUE;
+
+  private final Cache<String, Header> headers;
+  private final Cache<String, Boolean> unknownTokens;
+
+  public GiftOrderCache(@Value("${gift.order.cache.size:100000}") long maximumSize,
+                        @Value("${gift.order.unknown-cache.size:100000}") long unknownMaximumSize,
+                        @Value("${gift.order.unknown-cache.ttl:1000}") long unknownTtlMillis,
+                        ObjectProvider<MeterRegistry> meterRegistry) {
+    this.headers = Caffeine.newBuilder()
+      .maximumSize(maximumSize)
+      .expireAfter(new Expiry<String, Header>() {
+        @Override
+        public long expireAfterCreate(String key, Header header, long currentTime) {
+          return Math.max(0, TimeUnit.MILLISECONDS.toNanos(header.visibleUntil - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Header header, long currentTime, long currentDuration) {
+          return expireAfterCreate(key, header, currentTime); // 재발급된 토큰의 새 뿌리기 건
+        }
+
+        @Override
+        public long expireAfterRead(String key, Header header, long currentTime, long currentDuration) {
+          return currentDuration;
+        }
+      })
+      .recordStats()
+      .build();
+    this.unknownTokens = Caffeine.newBuilder()
+      .maximumSize(unknownMaximumSize)
+      .expireAfterWrite(unknownTtlMillis, TimeUnit.MILLISECONDS)
+      .recordStats()
+      .build();
+    meterRegistry.ifAvailable(registry -> {
+      CaffeineCacheMetrics.monitor(registry, headers, "gift.order");
+      CaffeineCacheMetrics.monitor(registry, unknownTokens, "gift.order.unknown");
+    });
+  }
+
+  public Header get(String roomId, String token) {
+    return headers.getIfPresent(key(roomId, token));
+  }
+
+  /**
+   * 최근에 DB에서 찾지 못한 토큰인지 여부
+   */
+  public boolean isUnknown(String roomId, String token) {
+    return unknownTokens.getIfPresent(key(roomId, token)) != null;
+  }
+
+  public void putUnknown(String roomId, String token) {
+    unknownTokens.put(key(roomId, token), UNKNOWN);
+  }
+
+  /**
+   * DB에서 읽은 뿌리기 건 정보를 캐시한다.
+   */
+  public Header put(GiftOrder order, long visibleUntil) {
+    Header header = new Header(order.getRequestId(), order.getCreatorId(), order.getExpirationTime().getTime(), visibleUntil);
+    headers.put(key(order.getRoomId(), order.getToken()), header);
+    return header;
+  }
+
+  /**
+   * 생성한 뿌리기 건 정보를 캐시한다. 현재 트랜잭션이 커밋된 이후에 반영된다.
+   */
+  public void register(GiftOrder order, long visibleUntil) {
+    if(TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          unknownTokens.invalidate(key(order.getRoomId(), order.getToken()));
+          put(order, visibleUntil);
+        }
+      });
+    } else {
+      unknownTokens.invalidate(key(order.getRoomId(), order.getToken()));
+      put(order, visibleUntil);
+    }
+  }
+
+  public CacheStats stats() {
+    return headers.stats();
+  }
+
+  public CacheStats unknownStats() {
+    return unknownTokens.stats();
+  }
+
+  private static String key(String roomId, String token) {
+    return roomId + ':' + token; // token 에는 ':' 가 포함되지 않는다.
+  }
+
+  @Getter
+  public static class Header {
+    private final long requestId;
+    private final long creatorId;
+    private final long expirationTime;
+    private final long visibleUntil;
+
+    Header(long requestId, long creatorId, long expirationTime, long visibleUntil) {
+      this.requestId = requestId;
+      this.creatorId = creatorId;
+      this.expirationTime = expirationTime;
+      this.visibleUntil = visibleUntil;
+    }
+
+    public boolean hasExpired(long currentTime) {
+      return currentTime > expirationTime;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.domain.UnclaimedShares;
+import com.sowells.pay.webapp.gift.entity.GiftRefund;
+import com.sowells.pay.webapp.gift.repository.GiftRefundRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 만료된 뿌리기 건 중 받아가지 않은 분배건이 남은 건의 미수령 금액을 환불 기록으로 남긴다.
+ * 뿌린 사용자 아이디로 파티션을 나누어 병렬 처리하고, 파티션 안에서는 requestId 순서로 chunk 단위 keyset 조회하여
+ * 처리 대상 건수와 관계없이 chunk 크기만큼의 메모리와 짧은 트랜잭션만 사용한다.
+ * 환불 기록은 뿌리기 건 당 한 건이며 (requestId 유니크), 이미 환불된 건은 조회에서 제외되므로 여러 번 실행해도 중복 환불되지 않는다.
+ * 분배기가 이미 지급했지만 DB에 반영하지 못한 할당이 환불되지 않도록, 분배기의 할당을 모두 반영한 뒤에만 환불한다.
+ */
+@Component
+@Slf4j
+public class GiftRefundJob {
+  final GiftRefundRepository refundRepository;
+  final ShareDispenser shareDispenser;
+  final TransactionTemplate chunkTx;
+  final Counter refundedOrders;
+  final Counter refundedAmount;
+
+  @Value("${gift.refund.enabled:true}")
+  boolean enabled;
+
+  // 다른 API 노드의 분배기 할당은 이 노드에서 반영할 수 없으므로, 만료 후 유예 시간이 지난 건만 처리한다.
+  @Value("${gift.refund.grace:60000}")
+  long GRACE_MILLIS;
+
+  @Value("${gift.refund.partitions:4}")
+  int PARTITIONS;
+
+  @Value("${gift.refund.chunk.size:1000}")
+  int CHUNK_SIZE;
+
+  public GiftRefundJob(GiftRefundRepository refundRepository, ShareDispenser shareDispenser, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+    this.refundRepository = refundRepository;
+    this.shareDispenser = shareDispenser;
+    this.chunkTx = new TransactionTemplate(transactionManager);
+    this.chunkTx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    this.refundedOrders = Counter.builder("gift.refund.orders").description("Number of expired gifts refunded").register(meterRegistry);
+    this.refundedAmount = Counter.builder("gift.refund.amount").description("Amount of unclaimed money refunded").register(meterRegistry);
+  }
+
+  @Scheduled(fixedDelayString = "${gift.refund.interval:60000}")
+  public void refundScheduled() {
+    if(!enabled) return;
+    refund(System.currentTimeMillis() - GRACE_MILLIS);
+  }
+
+  /**
+   * cutoffTime 이전에 만료된 뿌리기 건을 파티션별로 병렬 처리한다. 분배기에 반영되지 않은 할당이 남아있으면 처리하지 않는다.
+   * @return 환불 기록을 남긴 뿌리기 건 수
+   */
+  public long refund(long cutoffTime) {
+    // 만료된 건에는 새 할당이 생기지 않으므로, 큐를 모두 반영하고 나면 만료된 건의 할당은 모두 DB에 있다.
+    if(!shareDispenser.flush()) {
+      log.warn("Refund skipped because the dispenser still has unflushed assignments. It will be retried in the next run.");
+      return 0;
+    }
+
+    Timestamp cutoff = new Timestamp(cutoffTime);
+    long started = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(PARTITIONS, new CustomizableThreadFactory("gift-refund-"));
+    try {
+      List<Future<Long>> partitions = new ArrayList<>(PARTITIONS);
+      for(int partition = 0; partition < PARTITIONS; partition++) {
+        final int p = partition;
+        partitions.add(executor.submit(() -> refundPartition(cutoff, p)));
+      }
+
+      long total = 0;
+      for(Future<Long> partition : partitions) total += partition.get();
+      if(total > 0) {
+        log.info("Refunded {} expired gifts before {}. elapsed: {} ms", total, cutoff, (System.nanoTime() - started) / 1_000_000);
+      }
+      return total;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Refund job was interrupted.", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Refund job failed. Remaining gifts will be refunded in the next run.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private long refundPartition(Timestamp cutoff, int partition) {
+    long after = 0;
+    long total = 0;
+    while(true) {
+      final long from = after;
+      List<GiftRefund> refunds = chunkTx.execute(status -> refundChunk(cutoff, partition, from));
+      refundedOrders.increment(refunds.size());
+      refundedAmount.increment(refunds.stream().mapToLong(GiftRefund::getAmount).sum());
+      total += refunds.size();
+      if(refunds.size() < CHUNK_SIZE) return total;
+      after = refunds.get(refunds.size() - 1).getRequestId();
+    }
+  }
+
+  /**
+   * 뿌리기 건 중 아직 환불되지 않은 건의 미수령 금액을 환불 기록으로 남긴다. 호출자의 트랜잭션에서 저장된다.
+   * 정리 작업이 분배건을 삭제하기 전에 호출하며, 분배기의 할당을 반영한 뒤에 호출해야 한다.
+   * @return 환불 기록을 남긴 뿌리기 건 수
+   */
+  public int refundOrders(Collection<Long> requestIds) {
+    List<GiftRefund> refunds = save(refundRepository.findUnclaimedSharesByRequestIdIn(requestIds));
+    refundedOrders.increment(refunds.size());
+    refundedAmount.increment(refunds.stream().mapToLong(GiftRefund::getAmount).sum());
+    return refunds.size();
+  }
+
+  private List<GiftRefund> refundChunk(Timestamp cutoff, int partition, long after) {
+    return save(refundRepository.findUnclaimedShares(cutoff, after, PARTITIONS, partition, PageRequest.of(0, CHUNK_SIZE)));
+  }
+
+  private List<GiftRefund> save(List<UnclaimedShares> chunk) {
+    List<GiftRefund> refunds = new ArrayList<>(chunk.size());
+    for(UnclaimedShares unclaimed : chunk) {
+      GiftRefund refund = new GiftRefund();
+      refund.setRequestId(unclaimed.getRequestId());
+      refund.setCreatorId(unclaimed.getCreatorId());
+      refund.setAmount(unclaimed.getAmount());
+      refund.setNumOfShares(unclaimed.getNumOfShares().intValue());
+      refunds.add(refund);
+    }
+    refundRepository.saveAll(refunds);
+    return refunds;
+  }
+}
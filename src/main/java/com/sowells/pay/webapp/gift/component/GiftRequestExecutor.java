@@ -0,0 +1,22 @@
+package com.sowells.pay.webapp.gift.component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 비동기 API 모드에서 요청을 처리할 스레드를 정하는 실행기
+ */
+public interface GiftRequestExecutor {
+  /**
+   * 요청을 처리 스레드에 넘긴다. 작업의 예외는 감싸지 않고 그대로 전달되며, 처리 한도를 넘으면 ServiceUnavailableException 으로 완료된다.
+   * @param roomId 요청의 대화방 식별값
+   */
+  <T> CompletableFuture<T> submit(String roomId, Supplier<T> task);
+
+  /**
+   * 같은 대화방의 요청을 한 스레드에서 순서대로 처리하는지 여부
+   */
+  default boolean isSerializedByRoom() {
+    return false;
+  }
+}
@@ -0,0 +1,65 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import lombok.Getter;
+
+/**
+ * 진행중인 뿌리기 상태 저장소 (대화방별 토큰 예약, 뿌리기 건별 남은 분배건 큐와 받은 사용자 집합)
+ * 설정(gift.state.store)에 따라 프로세스 내 저장소(memory) 또는 여러 API 노드가 함께 사용하는 Redis 저장소(redis)를 사용한다.
+ * 각 연산은 원자적으로 처리되어야 한다.
+ */
+public interface GiftStateStore {
+  /**
+   * 대화방의 토큰을 releaseTime 까지 예약한다.
+   * @return 다른 노드가 이미 예약한 토큰이면 false
+   */
+  boolean reserveToken(String roomId, String token, long releaseTime);
+
+  void releaseToken(String roomId, String token);
+
+  /**
+   * 뿌리기 건의 분배건을 등록한다. expirationTime 이 지나면 제거된다.
+   */
+  void registerShares(long requestId, long[] historyIds, long[] amounts, long expirationTime);
+
+  /**
+   * 남은 분배건 하나를 사용자에게 할당한다.
+   * @return 등록되지 않은(또는 제거된) 뿌리기 건이면 null
+   */
+  ClaimedShare claimShare(long requestId, long userId);
+
+  /**
+   * 할당을 확정하지 못한 사용자를 받은 사용자 집합에서 제거한다. (분배건은 큐로 돌려놓지 않는다.)
+   */
+  void cancelClaim(long requestId, long userId);
+
+  /**
+   * 만료된 상태를 정리한다. (만료 시각으로 자동 삭제되는 저장소는 할 일이 없다.)
+   */
+  void evictExpired(long currentTime);
+
+  @Getter
+  class ClaimedShare {
+    private final Errors error;
+    private final long historyId;
+    private final long amount;
+
+    private ClaimedShare(Errors error, long historyId, long amount) {
+      this.error = error;
+      this.historyId = historyId;
+      this.amount = amount;
+    }
+
+    static ClaimedShare accepted(long historyId, long amount) {
+      return new ClaimedShare(null, historyId, amount);
+    }
+
+    static ClaimedShare rejected(Errors error) {
+      return new ClaimedShare(error, 0, 0);
+    }
+
+    public boolean isAccepted() {
+      return error == null;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.entity.GiftArchive;
+import com.sowells.pay.webapp.gift.entity.GiftHistory;
+import com.sowells.pay.webapp.gift.entity.GiftOrder;
+import com.sowells.pay.webapp.gift.repository.GiftArchiveRepository;
+import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * 조회 가능 기간(gift.order.visible.period)이 지난 뿌리기 건을 보관 테이블로 옮기고 분배건과 함께 삭제한다.
+ * 한 트랜잭션에서 chunk 크기만큼만 처리하고 chunk 사이에 쉬어, 정리 작업이 서비스 요청의 락과 커넥션을 오래 점유하지 않도록 한다.
+ * 토큰은 조회 가능 기간이 지나면 TokenAllocator 에서 반납되므로, 정리 대상 건의 토큰은 이미 재발급 가능한 상태이다.
+ * 정리 주기 전에 토큰이 재발급되면, 재발급하는 쪽에서 archiveToken 으로 이전 뿌리기 건을 먼저 보관한다.
+ * 환불 작업이 아직 처리하지 않은 미수령 금액은 분배건을 삭제하기 전에 같은 트랜잭션에서 환불 기록으로 남긴다.
+ */
+@Component
+@Slf4j
+public class GiftSweeper {
+  final GiftOrderRepository orderRepository;
+  final GiftHistoryRepository historyRepository;
+  final GiftArchiveRepository archiveRepository;
+  final GiftRefundJob refundJob;
+  final ShareDispenser shareDispenser;
+  final TransactionTemplate chunkTx;
+  final Counter archivedOrders;
+  final Counter archivedHistories;
+  final Timer chunkTimer;
+
+  @Value("${gift.sweeper.enabled:true}")
+  boolean enabled;
+
+  @Value("${gift.order.visible.period}")
+  long VISIBLE_PERIOD_MILLIS;
+
+  @Value("${gift.sweeper.chunk.size:500}")
+  int CHUNK_SIZE;
+
+  @Value("${gift.sweeper.chunk.max:100}")
+  int MAX_CHUNKS;
+
+  @Value("${gift.sweeper.chunk.pause:50}")
+  long CHUNK_PAUSE_MILLIS;
+
+  public GiftSweeper(GiftOrderRepository orderRepository, GiftHistoryRepository historyRepository, GiftArchiveRepository archiveRepository,
+                     GiftRefundJob refundJob, ShareDispenser shareDispenser, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+    this.orderRepository = orderRepository;
+    this.historyRepository = historyRepository;
+    this.archiveRepository = archiveRepository;
+    this.refundJob = refundJob;
+    this.shareDispenser = shareDispenser;
+    this.chunkTx = new TransactionTemplate(transactionManager);
+    this.chunkTx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    this.archivedOrders = Counter.builder("gift.sweeper.archived").tag("table", "t_gift_order")
+      .description("Number of rows archived and deleted by the sweeper").register(meterRegistry);
+    this.archivedHistories = Counter.builder("gift.sweeper.archived").tag("table", "t_gift_history")
+      .description("Number of rows archived and deleted by the sweeper").register(meterRegistry);
+    this.chunkTimer = Timer.builder("gift.sweeper.chunk").description("Time taken to archive a chunk").register(meterRegistry);
+  }
+
+  @Scheduled(initialDelayString = "${gift.sweeper.interval:600000}", fixedDelayString = "${gift.sweeper.interval:600000}")
+  public void sweepScheduled() {
+    if(!enabled) return;
+    sweep(System.currentTimeMillis() - VISIBLE_PERIOD_MILLIS);
+  }
+
+  /**
+   * cutoffTime 이전에 생성된 뿌리기 건을 chunk 단위로 정리한다. 한 번에 최대 MAX_CHUNKS 개의 chunk 만 처리한다.
+   * @return 정리된 뿌리기 건 수
+   */
+  public int sweep(long cutoffTime) {
+    // 분배기가 지급했지만 DB에 반영하지 못한 할당이 미수령 금액으로 환불되지 않도록 먼저 반영한다.
+    if(!shareDispenser.flush()) {
+      log.warn("Sweep skipped because the dispenser still has unflushed assignments. It will be retried in the next run.");
+      return 0;
+    }
+
+    Timestamp cutoff = new Timestamp(cutoffTime);
+    long started = System.nanoTime();
+    int total = 0;
+    for(int chunk = 0; chunk < MAX_CHUNKS; chunk++) {
+      Timer.Sample sample = Timer.start();
+      Integer archived = chunkTx.execute(status -> archiveChunk(cutoff));
+      sample.stop(chunkTimer);
+      total += archived;
+      if(archived < CHUNK_SIZE) break;
+      if(!pause()) break;
+    }
+
+    if(total > 0) {
+      long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+      log.info("Archived {} orders created before {}. elapsed: {} ms, throughput: {} orders/s", total, cutoff, elapsedMillis, total * 1000L / elapsedMillis);
+    }
+    return total;
+  }
+
+  /**
+   * 재발급되는 토큰의 이전 뿌리기 건을 정리 작업과 같은 방식으로 보관 테이블로 옮기고 삭제한다.
+   * 정리 주기 사이에 조회 가능 기간이 지난 건도 보관 없이 삭제되지 않도록, 토큰을 재발급하는 트랜잭션 안에서 호출한다.
+   * @return 정리된 뿌리기 건 수 (이전 뿌리기 건이 이미 정리되었으면 0)
+   */
+  public int archiveToken(String roomId, String token) {
+    GiftOrder order = orderRepository.findByRoomIdAndToken(roomId, token);
+    if(order == null) return 0;
+    return archive(Collections.singletonList(order));
+  }
+
+  private int archiveChunk(Timestamp cutoff) {
+    List<GiftOrder> orders = orderRepository.findByCreateTimeBefore(cutoff, PageRequest.of(0, CHUNK_SIZE, Sort.by("createTime")));
+    if(orders.isEmpty()) return 0;
+    return archive(orders);
+  }
+
+  private int archive(List<GiftOrder> orders) {
+    List<Long> requestIds = new ArrayList<>(orders.size());
+    for(GiftOrder order : orders) requestIds.add(order.getRequestId());
+    Map<Long, List<GiftHistory>> historiesByRequest = new HashMap<>();
+    List<GiftHistory> histories = historyRepository.findByRequestIdInOrderByHistoryId(requestIds);
+    for(GiftHistory history : histories) {
+      historiesByRequest.computeIfAbsent(history.getRequestId(), k -> new ArrayList<>()).add(history);
+    }
+
+    List<GiftArchive> archives = new ArrayList<>(orders.size());
+    for(GiftOrder order : orders) {
+      archives.add(archive(order, historiesByRequest.getOrDefault(order.getRequestId(), Collections.emptyList())));
+    }
+    archiveRepository.saveAll(archives);
+    int refunded = refundJob.refundOrders(requestIds); // 환불 기록은 분배건이 삭제되면 다시 만들 수 없다.
+    if(refunded > 0) log.info("Refunded {} gifts before archiving them.", refunded);
+    historyRepository.deleteByRequestIdIn(requestIds);
+    orderRepository.deleteByRequestIdIn(requestIds);
+
+    archivedOrders.increment(orders.size());
+    archivedHistories.increment(histories.size());
+    return orders.size();
+  }
+
+  private GiftArchive archive(GiftOrder order, List<GiftHistory> histories) {
+    GiftArchive archive = new GiftArchive();
+    archive.setRequestId(order.getRequestId());
+    archive.setRoomId(order.getRoomId());
+    archive.setToken(order.getToken());
+    archive.setCreatorId(order.getCreatorId());
+    archive.setTotalAmount(order.getTotalAmount());
+    archive.setMaxNumOfRecipients(order.getMaxNumOfRecipients());
+    archive.setCreateTime(order.getCreateTime());
+    archive.setExpirationTime(order.getExpirationTime());
+
+    StringBuilder shares = new StringBuilder(histories.size() * 16);
+    long receivedAmount = 0;
+    int numOfReceived = 0;
+    for(GiftHistory history : histories) {
+      if(shares.length() > 0) shares.append(',');
+      shares.append(history.getAmount()).append(':');
+      if(history.getReceiverId() != null) {
+        shares.append(history.getReceiverId());
+        receivedAmount += history.getAmount();
+        numOfReceived++;
+      }
+    }
+    archive.setShares(shares.toString());
+    archive.setReceivedAmount(receivedAmount);
+    archive.setNumOfReceived(numOfReceived);
+    return archive;
+  }
+
+  private boolean pause() {
+    try {
+      Thread.sleep(CHUNK_PAUSE_MILLIS);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 프로세스 내 뿌리기 상태 저장소 (API 노드가 하나인 경우)
+ * 분배건 할당은 락 없이 cursor 증가로 처리한다.
+ */
+@Component
+@ConditionalOnProperty(name = "gift.state.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryGiftStateStore implements GiftStateStore {
+  private final Map<String, Map<String, Long>> reservedTokens = new ConcurrentHashMap<>(); // 대화방 -> (토큰 -> 반납 시각)
+  private final Map<Long, Shares> liveShares = new ConcurrentHashMap<>();
+
+  @Override
+  public boolean reserveToken(String roomId, String token, long releaseTime) {
+    long currentTime = System.currentTimeMillis();
+    Map<String, Long> tokens = reservedTokens.computeIfAbsent(roomId, key -> new ConcurrentHashMap<>());
+    boolean[] reserved = new boolean[1];
+    tokens.compute(token, (key, reservedUntil) -> {
+      if(reservedUntil != null && reservedUntil > currentTime) return reservedUntil;
+      reserved[0] = true;
+      return releaseTime;
+    });
+    return reserved[0];
+  }
+
+  @Override
+  public void releaseToken(String roomId, String token) {
+    Map<String, Long> tokens = reservedTokens.get(roomId);
+    if(tokens != null) tokens.remove(token);
+  }
+
+  @Override
+  public void registerShares(long requestId, long[] historyIds, long[] amounts, long expirationTime) {
+    liveShares.put(requestId, new Shares(historyIds, amounts, expirationTime));
+  }
+
+  @Override
+  public ClaimedShare claimShare(long requestId, long userId) {
+    Shares shares = liveShares.get(requestId);
+    if(shares == null) return null;
+
+    if(!shares.receivers.add(userId)) return ClaimedShare.rejected(Errors.ALREADY_RECEIVED); // 뿌리기 당 한 사용자는 한번만 받을 수 있다.
+    int index = shares.nextIndex();
+    if(index < 0) {
+      shares.receivers.remove(userId);
+      return ClaimedShare.rejected(Errors.ALREADY_FULLY_CONSUMED); // 이미 선착순 인원이 다 받아간 경우
+    }
+    return ClaimedShare.accepted(shares.historyIds[index], shares.amounts[index]);
+  }
+
+  @Override
+  public void cancelClaim(long requestId, long userId) {
+    Shares shares = liveShares.get(requestId);
+    if(shares != null) shares.receivers.remove(userId);
+  }
+
+  @Override
+  public void evictExpired(long currentTime) {
+    liveShares.values().removeIf(shares -> shares.expirationTime < currentTime);
+    reservedTokens.values().removeIf(tokens -> {
+      tokens.values().removeIf(releaseTime -> releaseTime <= currentTime);
+      return tokens.isEmpty();
+    });
+  }
+
+  static class Shares {
+    final long[] historyIds;
+    final long[] amounts;
+    final long expirationTime;
+    final AtomicInteger cursor = new AtomicInteger();
+    final Set<Long> receivers = ConcurrentHashMap.newKeySet();
+
+    Shares(long[] historyIds, long[] amounts, long expirationTime) {
+      this.historyIds = historyIds;
+      this.amounts = amounts;
+      this.expirationTime = expirationTime;
+    }
+
+    int nextIndex() {
+      if(cursor.get() >= amounts.length) return -1; // 모두 소진된 뒤에는 cursor 를 더 증가시키지 않는다.
+      int index = cursor.getAndIncrement();
+      return index < amounts.length ? index : -1;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.sowells.pay.webapp.gift.component;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * 설정된 분배 방식(gift.distribution.policy)으로 뿌릴 금액을 나눈다.
+ */
+@Component
+public class MoneyDivider {
+  static final String POLICY_RANDOM = "random";
+  static final String POLICY_EVEN = "even";
+
+  @Value("${gift.distribution.policy:random}")
+  String POLICY;
+
+  private DistributionPolicy policy;
+
+  @PostConstruct
+  void init() {
+    policy = policyOf(POLICY);
+  }
+
+  public ShareSequence divide(long totalAmount, int numOfShares) {
+    return policy.divide(totalAmount, numOfShares);
+  }
+
+  static DistributionPolicy policyOf(String name) {
+    switch(name) {
+      case POLICY_RANDOM: return new BoundedRandomDistribution();
+      case POLICY_EVEN: return new EvenDistribution();
+      default: throw new IllegalArgumentException("Unknown distribution policy: " + name);
+    }
+  }
+}
@@ -0,0 +1,321 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 뿌린 사용자에게 받기 내역을 보낸다. (응답 형식은 구독자가 넘기는 ReceiptListener 가 정한다.)
+ * 구독은 (roomId, token) 별로 모아두고, 받기가 커밋되면 구독별 전송 대기열(BUFFER_SIZE)에 넣기만 하고 바로 반환한다.
+ * 대기열은 보낼 것이 있는 구독만 전송 스레드(최대 MAX_WRITERS)가 비우므로, 대기중인 구독자는 스레드를 점유하지 않고 느린 구독자가 다른 구독자의 전송을 늦추지 않는다.
+ * 대기열이 가득 찰 만큼 받지 못하는 구독자는 끊는다.
+ * 모두 받아가거나 뿌린 건이 만료되면 완료를 알리고 구독을 끝낸다.
+ * 이 노드에서 처리된 받기만 보내므로, 여러 노드로 운영하는 경우 같은 노드로 요청이 모이도록 라우팅해야 한다.
+ */
+@Component
+@Slf4j
+public class ReceiptBroadcaster {
+  public static final String FULLY_CONSUMED = "FULLY_CONSUMED";
+  public static final String EXPIRED = "EXPIRED";
+
+  private final ConcurrentHashMap<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+  private final AtomicInteger numOfSubscriptions = new AtomicInteger();
+  final MeterRegistry meterRegistry;
+
+  // 만료 처리 스레드 수
+  @Value("${gift.receipt.stream.threads:2}")
+  int THREADS;
+
+  // 구독별로 보내지 못하고 쌓아둘 수 있는 이벤트 수
+  @Value("${gift.receipt.stream.buffer-size:100}")
+  int BUFFER_SIZE;
+
+  // 동시에 전송중일 수 있는 구독 수
+  @Value("${gift.receipt.stream.max-writers:200}")
+  int MAX_WRITERS;
+
+  private ScheduledThreadPoolExecutor executor;
+  private ThreadPoolExecutor writers;
+  private Counter slowSubscribers;
+
+  public ReceiptBroadcaster(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  void start() {
+    executor = new ScheduledThreadPoolExecutor(THREADS, new CustomizableThreadFactory("gift-receipt-"));
+    executor.setRemoveOnCancelPolicy(true); // 먼저 끝난 구독의 만료 작업을 남겨두지 않는다.
+    writers = new ThreadPoolExecutor(0, MAX_WRITERS, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), new CustomizableThreadFactory("gift-receipt-writer-"));
+    Gauge.builder("gift.receipt.subscriptions", numOfSubscriptions, AtomicInteger::get)
+      .description("Number of open receipt streams").register(meterRegistry);
+    slowSubscribers = Counter.builder("gift.receipt.slow-subscribers")
+      .description("Number of receipt streams closed because the subscriber could not keep up").register(meterRegistry);
+  }
+
+  @PreDestroy
+  void stop() {
+    executor.shutdownNow();
+    subscriptions.values().forEach(set -> set.forEach(Subscription::cancel));
+    writers.shutdown();
+  }
+
+  /**
+   * 받기 내역을 구독한다. 구독 시점의 받기 내역(setSnapshot)과 구독자(start)가 모두 넘어와야 보내기 시작한다.
+   * @param expirationTime 뿌린 건의 만료 시각 (epoch ms)
+   */
+  public Subscription subscribe(String roomId, String token, long expirationTime) {
+    Subscription subscription = new Subscription(key(roomId, token), expirationTime);
+    subscriptions.compute(subscription.key, (key, set) -> {
+      if(set == null) set = ConcurrentHashMap.newKeySet();
+      set.add(subscription);
+      return set;
+    });
+    numOfSubscriptions.incrementAndGet();
+    long timeout = Math.max(0, expirationTime - System.currentTimeMillis());
+    subscription.expiration = executor.schedule(() -> subscription.finish(EXPIRED), timeout, TimeUnit.MILLISECONDS);
+    return subscription;
+  }
+
+  /**
+   * 받은 내역을 구독자에게 보낸다. 현재 트랜잭션이 커밋된 이후에 반영된다.
+   */
+  public void publish(String roomId, String token, long receiverId, long amount) {
+    if(TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          broadcast(key(roomId, token), receiverId, amount);
+        }
+      });
+    } else {
+      broadcast(key(roomId, token), receiverId, amount);
+    }
+  }
+
+  int numOfSubscriptions() {
+    return numOfSubscriptions.get();
+  }
+
+  private void broadcast(String key, long receiverId, long amount) {
+    Set<Subscription> set = subscriptions.get(key); // 커밋 이후에 확인하므로, 이보다 늦게 구독하면 시작 시점의 받기 내역에 포함된다.
+    if(set == null) return;
+    for(Subscription subscription : set) subscription.onReceipt(receiverId, amount); // 대기열에 넣기만 하므로 받기 요청을 늦추지 않는다.
+  }
+
+  private void remove(Subscription subscription) {
+    if(!subscription.removed.compareAndSet(false, true)) return;
+    subscriptions.computeIfPresent(subscription.key, (key, set) -> {
+      set.remove(subscription);
+      return set.isEmpty() ? null : set;
+    });
+    numOfSubscriptions.decrementAndGet();
+    if(subscription.expiration != null) subscription.expiration.cancel(false);
+  }
+
+  private static String key(String roomId, String token) {
+    return roomId + ':' + token; // token 에는 ':' 가 포함되지 않는다.
+  }
+
+  /**
+   * 구독자에게 보낼 이벤트
+   */
+  private interface Delivery {
+    void deliver(ReceiptListener listener) throws IOException;
+  }
+
+  /**
+   * 구독자 한 명의 받기 내역 구독. 받은 사용자는 뿌리기 당 한번만 받을 수 있으므로 receiverId 로 중복 전송을 막는다.
+   * 상태 변경은 구독 락 안에서 이벤트를 대기열에 넣는 것까지만 하고, 구독자에게 보내는 것은 락 밖에서 전송 스레드 하나가 순서대로 한다.
+   */
+  public class Subscription {
+    final String key;
+    @Getter
+    final long expirationTime;
+    final Set<Long> sentReceiverIds = new HashSet<>();
+    final List<GiftInfoResponse.Receiving> pending = new ArrayList<>();
+    final Queue<Delivery> outbox = new ConcurrentLinkedQueue<>();
+    final AtomicInteger outboxSize = new AtomicInteger();
+    final AtomicBoolean draining = new AtomicBoolean();
+    final AtomicBoolean closeNotified = new AtomicBoolean();
+    volatile ScheduledFuture<?> expiration;
+    final AtomicBoolean removed = new AtomicBoolean();
+    GiftInfoResponse snapshot;
+    volatile ReceiptListener listener;
+    long totalAmount;
+    long receivedAmount;
+    boolean finished; // 더 이상 이벤트를 대기열에 넣지 않는다.
+    volatile boolean closing; // 대기열을 비운 뒤 onClosed 를 알린다.
+    volatile Exception closeError;
+    String finishReason; // 시작 전에 만료된 경우
+
+    Subscription(String key, long expirationTime) {
+      this.key = key;
+      this.expirationTime = expirationTime;
+    }
+
+    /**
+     * 구독 시점의 받기 내역. 구독을 등록한 뒤에 읽어야 그 사이에 커밋된 받기가 빠지지 않는다.
+     */
+    public synchronized void setSnapshot(GiftInfoResponse snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    /**
+     * 구독 시점의 받기 내역을 보내고, 그동안 들어온 받기 내역을 이어서 보낸다.
+     */
+    public synchronized void start(ReceiptListener listener) {
+      if(snapshot == null) throw new IllegalStateException("Snapshot must be set before starting the subscription.");
+      this.listener = listener;
+      if(finished) {
+        close(null);
+        return;
+      }
+      totalAmount = snapshot.getTotalAmount();
+      // 구독 시점의 받기 내역은 한 이벤트 묶음으로 보내 대기열 크기와 관계없이 보낼 수 있도록 한다.
+      List<GiftInfoResponse.Receiving> receivings = new ArrayList<>(snapshot.getNumOfReceivings() + pending.size());
+      for(int i = 0; i < snapshot.getNumOfReceivings(); i++) {
+        if(accept(snapshot.getReceiverId(i), snapshot.getAmount(i))) receivings.add(new GiftInfoResponse.Receiving(snapshot.getReceiverId(i), snapshot.getAmount(i)));
+      }
+      for(GiftInfoResponse.Receiving receiving : pending) {
+        if(accept(receiving.getReceiverId(), receiving.getAmount())) receivings.add(receiving);
+      }
+      pending.clear();
+      enqueue(l -> {
+        for(GiftInfoResponse.Receiving receiving : receivings) l.onReceipt(receiving.getReceiverId(), receiving.getAmount());
+      });
+      if(receivedAmount >= totalAmount) finish(FULLY_CONSUMED);
+      else if(finishReason != null) finish(finishReason);
+    }
+
+    synchronized void onReceipt(long receiverId, long amount) {
+      if(finished) return;
+      if(listener == null) {
+        pending.add(new GiftInfoResponse.Receiving(receiverId, amount));
+        return;
+      }
+      if(!accept(receiverId, amount)) return;
+      enqueue(l -> l.onReceipt(receiverId, amount));
+      if(receivedAmount >= totalAmount) finish(FULLY_CONSUMED);
+    }
+
+    synchronized void finish(String reason) {
+      if(finished) return;
+      if(listener == null) {
+        finishReason = reason; // 구독 시점의 받기 내역을 보낸 뒤에 끝낸다.
+        return;
+      }
+      enqueue(l -> l.onCompleted(reason));
+      close(null);
+    }
+
+    /**
+     * 구독 요청이 거절되거나, 구독자의 연결이 끊기거나, 서버가 종료되는 경우 구독을 끝낸다. 보내지 못한 이벤트는 버린다.
+     */
+    public synchronized void cancel() {
+      if(!finished) discard();
+      close(null);
+    }
+
+    private boolean accept(long receiverId, long amount) {
+      if(!sentReceiverIds.add(receiverId)) return false;
+      receivedAmount += amount;
+      return true;
+    }
+
+    private void enqueue(Delivery delivery) {
+      if(finished) return;
+      if(outboxSize.incrementAndGet() > BUFFER_SIZE) { // 보내는 속도를 따라오지 못하는 구독자
+        outboxSize.decrementAndGet();
+        slowSubscribers.increment();
+        log.warn("Receipt stream subscriber is too slow and will be closed. key: {}", key);
+        discard();
+        close(new IOException("Receipt stream subscriber is too slow."));
+        return;
+      }
+      outbox.add(delivery);
+      scheduleDrain();
+    }
+
+    private void close(Exception error) {
+      finished = true;
+      if(error != null && closeError == null) closeError = error;
+      closing = true;
+      remove(this);
+      scheduleDrain();
+    }
+
+    private void discard() {
+      outbox.clear();
+      outboxSize.set(0);
+    }
+
+    private void scheduleDrain() {
+      if(listener == null || !draining.compareAndSet(false, true)) return;
+      try {
+        writers.execute(this::drain);
+      } catch (RejectedExecutionException e) { // 전송 스레드가 모두 사용중이거나 종료중인 경우
+        log.warn("No receipt stream writer is available. The stream will be closed. key: {}", key);
+        synchronized(this) {
+          finished = true;
+          closing = true;
+          discard();
+          remove(this);
+        }
+        draining.set(false);
+        notifyClosed(e);
+      }
+    }
+
+    /**
+     * 대기열의 이벤트를 구독자에게 보낸다. 구독 락을 잡지 않으므로 그동안 들어오는 받기는 대기열에 쌓인다.
+     */
+    private void drain() {
+      Delivery delivery;
+      while((delivery = outbox.poll()) != null) {
+        outboxSize.decrementAndGet();
+        try {
+          delivery.deliver(listener);
+        } catch (IOException | RuntimeException e) {
+          log.debug("Receipt stream closed. key: {}", key, e); // 연결이 끊긴 구독자
+          synchronized(this) {
+            finished = true;
+            closing = true;
+            discard();
+            remove(this);
+          }
+          notifyClosed(e);
+          draining.set(false);
+          return;
+        }
+      }
+      if(closing && outbox.isEmpty()) notifyClosed(closeError); // 완료 이벤트는 closing 보다 먼저 대기열에 들어간다.
+      draining.set(false);
+      if(!outbox.isEmpty() || (closing && !closeNotified.get())) scheduleDrain(); // 비우는 사이에 들어온 이벤트
+    }
+
+    private void notifyClosed(Exception error) {
+      if(closeNotified.compareAndSet(false, true)) listener.onClosed(error);
+    }
+  }
+}
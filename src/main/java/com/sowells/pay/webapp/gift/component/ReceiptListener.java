@@ -0,0 +1,21 @@
+package com.sowells.pay.webapp.gift.component;
+
+import java.io.IOException;
+
+/**
+ * 받기 내역 구독자에게 이벤트를 전달하는 쪽 (SSE 응답 등은 컨트롤러가 구현한다)
+ * 전달에 실패하면 예외를 던지고, 구독은 그 자리에서 끝난다.
+ */
+public interface ReceiptListener {
+  void onReceipt(long receiverId, long amount) throws IOException;
+
+  /**
+   * 모두 받아갔거나(FULLY_CONSUMED) 뿌린 건이 만료되어(EXPIRED) 구독이 끝난다. 이후 onClosed 가 호출된다.
+   */
+  void onCompleted(String reason) throws IOException;
+
+  /**
+   * 구독이 끝나 더 이상 이벤트가 없다. 전달 실패로 끝난 경우 error 가 넘어온다.
+   */
+  void onClosed(Exception error);
+}
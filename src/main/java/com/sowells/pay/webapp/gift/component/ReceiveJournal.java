@@ -0,0 +1,247 @@
+package com.sowells.pay.webapp.gift.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 메모리에서 확정된 받기 할당을 로컬 파일에 순서대로 기록하는 저널
+ * 기록 스레드 하나가 대기중인 기록을 모아 한번에 쓰고 fsync 하며 (group commit), 요청 스레드는 fsync 가 끝난 뒤에 반환된다.
+ * 저널은 세그먼트 파일로 나누어 쓰고, DB 반영이 끝난 세그먼트는 삭제한다. 재시작 시 남은 세그먼트의 기록을 다시 반영한다.
+ */
+@Component
+@Slf4j
+public class ReceiveJournal {
+  static final int RECORD_SIZE = 20; // historyId(8) + receiverId(8) + crc32(4)
+  private static final String SEGMENT_PREFIX = "receive-";
+  private static final String SEGMENT_SUFFIX = ".journal";
+  private static final int MAX_GROUP_SIZE = 4096;
+
+  @Value("${gift.dispenser.journal.enabled:false}")
+  boolean enabled;
+
+  @Value("${gift.dispenser.journal.dir:./journal}")
+  String DIRECTORY;
+
+  private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+  private final Object lock = new Object();
+  private Path directory;
+  private FileChannel channel;
+  private long segmentId;
+  private long segmentSize;
+  private Thread writer;
+  private volatile boolean running;
+  volatile long syncCount;
+
+  @PostConstruct
+  void open() throws IOException {
+    if(!enabled) return;
+    directory = Paths.get(DIRECTORY);
+    Files.createDirectories(directory);
+    TreeMap<Long, Path> previousSegments = segments();
+    openSegment(previousSegments.isEmpty() ? 0 : previousSegments.lastKey() + 1); // 이전 실행의 세그먼트는 복구 대상으로 그대로 둔다.
+
+    running = true;
+    writer = new Thread(this::writeLoop, "gift-receive-journal");
+    writer.setDaemon(true);
+    writer.start();
+    log.info("Receive journal opened. directory: {}, segment: {}", directory.toAbsolutePath(), segmentId);
+  }
+
+  @PreDestroy
+  void close() throws IOException, InterruptedException {
+    if(!enabled || !running) return;
+    running = false;
+    writer.join(TimeUnit.SECONDS.toMillis(10));
+    synchronized(lock) {
+      channel.close();
+    }
+    // 기록 스레드가 끝난 뒤에 들어온 기록은 쓰이지 않으므로, 기다리는 요청 스레드를 실패로 깨운다.
+    List<PendingRecord> leftover = new ArrayList<>();
+    queue.drainTo(leftover);
+    for(PendingRecord record : leftover) record.synced.completeExceptionally(new IOException("Receive journal is closed."));
+    if(!leftover.isEmpty()) log.warn("Receive journal closed with {} unwritten records.", leftover.size());
+  }
+
+  /**
+   * 할당을 저널에 기록하고 fsync 될 때까지 기다린다.
+   * afterSync 는 fsync 직후 저널 락을 잡은 상태에서 실행되므로, rotate 이전에 기록된 할당은 모두 afterSync 가 끝난 상태이다.
+   */
+  public void append(long historyId, long receiverId, Runnable afterSync) {
+    if(!enabled) {
+      afterSync.run();
+      return;
+    }
+    if(!running) throw new IllegalStateException("Receive journal is closed.");
+
+    PendingRecord record = new PendingRecord(historyId, receiverId, afterSync);
+    queue.add(record);
+    // 확인과 추가 사이에 닫혔다면 close 가 남은 기록을 비운 뒤일 수 있으므로 직접 꺼내 실패시킨다.
+    if(!running && queue.remove(record)) throw new IllegalStateException("Receive journal is closed.");
+    try {
+      record.synced.join();
+    } catch (CompletionException e) {
+      throw new UncheckedIOException("Failed to write receive journal.", (IOException) e.getCause());
+    }
+  }
+
+  /**
+   * 현재 세그먼트를 닫고 새 세그먼트로 넘어간다.
+   * @return 닫힌 세그먼트 중 가장 마지막 세그먼트 번호 - 이 번호 이하의 기록은 모두 afterSync 가 실행되었다.
+   */
+  public long rotate() {
+    if(!enabled) return -1;
+    synchronized(lock) {
+      if(segmentSize > 0) {
+        try {
+          channel.close();
+          openSegment(segmentId + 1);
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to rotate receive journal.", e);
+        }
+      }
+      return segmentId - 1;
+    }
+  }
+
+  /**
+   * DB 반영이 끝난 세그먼트를 삭제한다.
+   */
+  public void deleteUpTo(long sealedSegmentId) {
+    if(!enabled || sealedSegmentId < 0) return;
+    try {
+      for(Path segment : segments().headMap(sealedSegmentId, true).values()) {
+        Files.deleteIfExists(segment);
+      }
+    } catch (IOException e) {
+      log.warn("Failed to delete receive journal segments up to {}. They will be replayed on restart.", sealedSegmentId, e);
+    }
+  }
+
+  /**
+   * 이전 실행에서 남은 세그먼트의 할당 기록을 읽는다. 마지막에 온전히 기록되지 못한 레코드는 버린다.
+   * @return [historyId, receiverId] 목록
+   */
+  public List<long[]> recover() throws IOException {
+    List<long[]> records = new ArrayList<>();
+    if(!enabled) return records;
+    for(Path segment : segments().headMap(segmentId, false).values()) {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+      while(buffer.remaining() >= RECORD_SIZE) {
+        long historyId = buffer.getLong();
+        long receiverId = buffer.getLong();
+        if(buffer.getInt() != checksum(historyId, receiverId)) {
+          log.warn("Corrupted record found in {} at {}. Remaining records are ignored.", segment, buffer.position() - RECORD_SIZE);
+          break;
+        }
+        records.add(new long[]{historyId, receiverId});
+      }
+    }
+    log.info("Recovered {} assignments from receive journal.", records.size());
+    return records;
+  }
+
+  private void writeLoop() {
+    List<PendingRecord> group = new ArrayList<>();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_GROUP_SIZE * RECORD_SIZE);
+    while(running || !queue.isEmpty()) {
+      try {
+        PendingRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if(first == null) continue;
+        group.add(first);
+        queue.drainTo(group, MAX_GROUP_SIZE - 1);
+
+        buffer.clear();
+        for(PendingRecord record : group) {
+          buffer.putLong(record.historyId).putLong(record.receiverId).putInt(checksum(record.historyId, record.receiverId));
+        }
+        buffer.flip();
+        synchronized(lock) {
+          while(buffer.hasRemaining()) channel.write(buffer);
+          channel.force(false);
+          segmentSize += group.size() * RECORD_SIZE;
+          syncCount++;
+          for(PendingRecord record : group) record.afterSync.run();
+        }
+        for(PendingRecord record : group) record.synced.complete(null);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (IOException e) {
+        log.error("Failed to write {} records to receive journal.", group.size(), e);
+        discardPartialWrite();
+        for(PendingRecord record : group) record.synced.completeExceptionally(e);
+      } finally {
+        group.clear();
+      }
+    }
+  }
+
+  /**
+   * 실패한 그룹의 기록이 일부만 남아 재시작 시 반영되지 않도록 마지막 fsync 지점으로 되돌린다.
+   */
+  private void discardPartialWrite() {
+    synchronized(lock) {
+      try {
+        channel.truncate(segmentSize);
+      } catch (IOException e) {
+        log.error("Failed to truncate receive journal segment {} to {} bytes.", segmentId, segmentSize, e);
+      }
+    }
+  }
+
+  private void openSegment(long id) throws IOException {
+    segmentId = id;
+    segmentSize = 0;
+    channel = FileChannel.open(directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX),
+      StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private TreeMap<Long, Path> segments() throws IOException {
+    TreeMap<Long, Path> segments = new TreeMap<>();
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for(Path segment : stream) {
+        String name = segment.getFileName().toString();
+        segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), segment);
+      }
+    }
+    return segments;
+  }
+
+  private static int checksum(long historyId, long receiverId) {
+    CRC32 crc = new CRC32();
+    for(int i = 0; i < 8; i++) crc.update((int) (historyId >>> (i * 8)));
+    for(int i = 0; i < 8; i++) crc.update((int) (receiverId >>> (i * 8)));
+    return (int) crc.getValue();
+  }
+
+  static class PendingRecord {
+    final long historyId;
+    final long receiverId;
+    final Runnable afterSync;
+    final CompletableFuture<Void> synced = new CompletableFuture<>();
+
+    PendingRecord(long historyId, long receiverId, Runnable afterSync) {
+      this.historyId = historyId;
+      this.receiverId = receiverId;
+      this.afterSync = afterSync;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 여러 API 노드가 함께 사용하는 Redis 뿌리기 상태 저장소 (spring.redis.* 로 연결한다)
+ * 분배건 큐(list)와 받은 사용자 집합(set)은 Lua 스크립트로 한번에 확인/변경하므로, 같은 뿌리기 건을 여러 노드가 받기 처리해도 DB를 거치지 않는다.
+ * 뿌리기 건의 키는 hash tag 로 묶어 클러스터에서도 같은 슬롯에 위치한다.
+ */
+@Component
+@ConditionalOnProperty(name = "gift.state.store", havingValue = "redis")
+public class RedisGiftStateStore implements GiftStateStore {
+  private static final String RECEIVED = "R";
+  private static final String CONSUMED = "C";
+
+  // KEYS: [분배건 큐, 받은 사용자 집합], ARGV: [만료 시각, "historyId:amount"...]
+  // 받은 사용자 집합에는 빈 문자열을 넣어두어, 분배건이 모두 소진된 뒤에도 등록된 건으로 구분한다.
+  private static final RedisScript<Long> REGISTER_SCRIPT = new DefaultRedisScript<>(
+    "redis.call('del', KEYS[1], KEYS[2]) " +
+    "for i = 2, #ARGV do redis.call('rpush', KEYS[1], ARGV[i]) end " +
+    "redis.call('sadd', KEYS[2], '') " +
+    "redis.call('pexpireat', KEYS[1], ARGV[1]) " +
+    "redis.call('pexpireat', KEYS[2], ARGV[1]) " +
+    "return 1", Long.class);
+
+  // KEYS: [분배건 큐, 받은 사용자 집합], ARGV: [사용자 아이디]
+  // 반환 : 등록되지 않은 건이면 nil, 이미 받은 사용자면 R, 모두 소진되었으면 C, 할당되면 "historyId:amount"
+  private static final RedisScript<String> CLAIM_SCRIPT = new DefaultRedisScript<>(
+    "if redis.call('exists', KEYS[2]) == 0 then return false end " +
+    "if redis.call('sadd', KEYS[2], ARGV[1]) == 0 then return '" + RECEIVED + "' end " +
+    "local share = redis.call('lpop', KEYS[1]) " +
+    "if not share then redis.call('srem', KEYS[2], ARGV[1]) return '" + CONSUMED + "' end " +
+    "return share", String.class);
+
+  final StringRedisTemplate redisTemplate;
+
+  @Value("${gift.state.redis.key-prefix:gift:}")
+  String KEY_PREFIX;
+
+  public RedisGiftStateStore(StringRedisTemplate redisTemplate) {
+    this.redisTemplate = redisTemplate;
+  }
+
+  @Override
+  public boolean reserveToken(String roomId, String token, long releaseTime) {
+    long ttl = Math.max(1, releaseTime - System.currentTimeMillis());
+    Boolean reserved = redisTemplate.opsForValue().setIfAbsent(tokenKey(roomId, token), "1", ttl, TimeUnit.MILLISECONDS);
+    return Boolean.TRUE.equals(reserved);
+  }
+
+  @Override
+  public void releaseToken(String roomId, String token) {
+    redisTemplate.delete(tokenKey(roomId, token));
+  }
+
+  @Override
+  public void registerShares(long requestId, long[] historyIds, long[] amounts, long expirationTime) {
+    Object[] args = new Object[historyIds.length + 1];
+    args[0] = String.valueOf(expirationTime);
+    for(int i = 0; i < historyIds.length; i++) args[i + 1] = historyIds[i] + ":" + amounts[i];
+    redisTemplate.execute(REGISTER_SCRIPT, shareKeys(requestId), args);
+  }
+
+  @Override
+  public ClaimedShare claimShare(long requestId, long userId) {
+    String result = redisTemplate.execute(CLAIM_SCRIPT, shareKeys(requestId), String.valueOf(userId));
+    if(result == null) return null;
+    if(RECEIVED.equals(result)) return ClaimedShare.rejected(Errors.ALREADY_RECEIVED); // 뿌리기 당 한 사용자는 한번만 받을 수 있다.
+    if(CONSUMED.equals(result)) return ClaimedShare.rejected(Errors.ALREADY_FULLY_CONSUMED); // 이미 선착순 인원이 다 받아간 경우
+
+    int separator = result.indexOf(':');
+    return ClaimedShare.accepted(Long.parseLong(result.substring(0, separator)), Long.parseLong(result.substring(separator + 1)));
+  }
+
+  @Override
+  public void cancelClaim(long requestId, long userId) {
+    redisTemplate.opsForSet().remove(receiversKey(requestId), String.valueOf(userId));
+  }
+
+  @Override
+  public void evictExpired(long currentTime) {
+    // 키마다 만료 시각을 지정하므로 Redis 가 제거한다.
+  }
+
+  private String tokenKey(String roomId, String token) {
+    return KEY_PREFIX + "token:" + token + ":" + roomId; // 토큰은 고정 길이 영숫자이므로 대화방 아이디와 구분된다.
+  }
+
+  private List<String> shareKeys(long requestId) {
+    return Arrays.asList(KEY_PREFIX + "{" + requestId + "}:shares", receiversKey(requestId));
+  }
+
+  private String receiversKey(long requestId) {
+    return KEY_PREFIX + "{" + requestId + "}:receivers";
+  }
+}
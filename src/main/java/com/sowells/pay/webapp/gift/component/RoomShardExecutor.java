@@ -0,0 +1,97 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * 대화방 단위로 요청을 샤드에 배정하여 같은 대화방의 요청은 한 스레드에서 순서대로, 다른 대화방의 요청은 샤드별로 병렬 처리한다.
+ * 같은 대화방의 생성/받기 요청이 서로 경합하지 않으므로 DB 격리수준이나 재시도에 의존하지 않아도 된다.
+ * 샤드 대기열이 가득 차면 요청을 쌓아두지 않고 ServiceUnavailableException 으로 바로 거절한다.
+ */
+@Component
+@ConditionalOnProperty(name = "gift.api.execution-mode", havingValue = "sharded")
+@Slf4j
+public class RoomShardExecutor implements GiftRequestExecutor {
+  final MeterRegistry meterRegistry;
+
+  // 샤드 하나가 커넥션 하나를 사용하므로 기본값은 커넥션 풀 크기
+  @Value("${gift.room.shard.count:${spring.datasource.hikari.maximum-pool-size:10}}")
+  int SHARD_COUNT;
+
+  @Value("${gift.room.shard.queue-capacity:1000}")
+  int QUEUE_CAPACITY;
+
+  private ThreadPoolExecutor[] shards;
+  private Counter rejections;
+
+  public RoomShardExecutor(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  void start() {
+    shards = new ThreadPoolExecutor[SHARD_COUNT];
+    for(int i = 0; i < SHARD_COUNT; i++) {
+      ThreadPoolExecutor shard = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY), new CustomizableThreadFactory("gift-room-shard-" + i + "-"), new ThreadPoolExecutor.AbortPolicy());
+      Gauge.builder("gift.room.shard.backlog", shard, s -> s.getQueue().size())
+        .description("Number of requests waiting in a room shard").tag("shard", String.valueOf(i)).register(meterRegistry);
+      shards[i] = shard;
+    }
+    rejections = Counter.builder("gift.room.shard.rejected").description("Number of requests rejected because the room shard was full").register(meterRegistry);
+    log.info("Room shard executor started. shards: {}, queueCapacity: {}", SHARD_COUNT, QUEUE_CAPACITY);
+  }
+
+  @Override
+  public boolean isSerializedByRoom() {
+    return true;
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    for(ThreadPoolExecutor shard : shards) shard.shutdown();
+    for(ThreadPoolExecutor shard : shards) shard.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> submit(String roomId, Supplier<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      shards[shardOf(roomId)].execute(() -> {
+        try {
+          future.complete(task.get());
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejections.increment();
+      future.completeExceptionally(new ServiceUnavailableException(Errors.SERVER_BUSY));
+    }
+    return future;
+  }
+
+  int shardOf(String roomId) {
+    return Math.floorMod(roomId.hashCode(), shards.length);
+  }
+
+  /**
+   * 샤드별 대기중인 요청 수
+   */
+  public int backlog(int shard) {
+    return shards[shard].getQueue().size();
+  }
+}
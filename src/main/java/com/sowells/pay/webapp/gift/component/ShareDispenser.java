@@ -0,0 +1,328 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import com.sowells.pay.webapp.gift.entity.GiftHistory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 진행중인 뿌리기 건의 분배건을 상태 저장소(GiftStateStore)에 보관하고 받기 요청에 DB 조회 없이 할당한다.
+ * 할당 결과는 큐에 쌓아두었다가 주기적으로 t_gift_history 에 batch update 한다.
+ * 할당 결과가 DB에 반영되기까지 최대 flush 주기만큼 지연되므로, 조회 API 에도 그만큼 늦게 노출된다.
+ * 저널을 사용하는 경우 할당은 저널에 fsync 된 뒤에 확정되며, 재시작 시 DB에 반영되지 못한 할당을 저널에서 복구한다.
+ * 반영할 수 없는 할당 (다른 노드가 DB 경로로 먼저 할당한 사용자, 이미 정리된 분배건 등) 은 t_gift_dead_letter 에 옮겨 다른 할당의 반영을 막지 않도록 한다.
+ */
+@Component
+@DependsOn("entityManagerFactory") // 복구한 할당은 스키마가 준비된 뒤에 반영한다.
+@Slf4j
+public class ShareDispenser {
+  // 다른 노드가 DB 경로로 먼저 할당한 분배건은 덮어쓰지 않는다. 같은 사용자로 다시 반영하는 것은 허용하여 저널 재반영이 멱등이 되도록 한다.
+  private static final String ASSIGN_SQL = "update t_gift_history set receiver_id = ?, update_time = ? where history_id = ? and (receiver_id is null or receiver_id = ?)";
+  private static final String EXISTS_SQL = "select count(*) from t_gift_history where history_id = ?";
+  private static final String DEAD_LETTER_SQL = "insert into t_gift_dead_letter (history_id, receiver_id, reason, create_time) values (?, ?, ?, ?)";
+
+  final JdbcTemplate jdbcTemplate;
+  final ReceiveJournal journal;
+  final GiftStateStore stateStore;
+  final Counter missingHistories;
+  final Counter alreadyAssigned;
+  final Counter deadLetters;
+
+  @Getter
+  @Value("${gift.dispenser.enabled:false}")
+  boolean enabled;
+
+  @Value("${gift.dispenser.flush.size:1000}")
+  int FLUSH_SIZE;
+
+  // 원인을 알 수 없는 오류로 반영에 실패한 할당을 다시 시도하는 최대 횟수 - 넘으면 한 건씩 나누어 반영하고 그래도 실패하는 건은 dead letter 로 옮긴다.
+  // DB 연결 장애 등 일시적인 오류는 횟수와 관계없이 대기 시간을 늘려가며 계속 다시 시도한다.
+  @Value("${gift.dispenser.flush.max-attempts:10}")
+  int MAX_ATTEMPTS;
+
+  @Value("${gift.dispenser.flush.max-backoff:5000}")
+  long MAX_BACKOFF_MILLIS;
+
+  private static final long BACKOFF_MILLIS = 100;
+
+  private final Queue<Assignment> pendingAssignments = new ConcurrentLinkedQueue<>();
+  private int consecutiveFailures;
+  private long retryNotBefore; // 일시적인 오류 이후 다시 반영을 시도할 시각
+
+  public ShareDispenser(JdbcTemplate jdbcTemplate, ReceiveJournal journal, GiftStateStore stateStore, MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.journal = journal;
+    this.stateStore = stateStore;
+    this.missingHistories = Counter.builder("gift.dispenser.flush.missing")
+      .description("Number of assignments whose share no longer exists in t_gift_history").register(meterRegistry);
+    this.alreadyAssigned = Counter.builder("gift.dispenser.flush.already-assigned")
+      .description("Number of assignments whose share was already assigned to another receiver").register(meterRegistry);
+    this.deadLetters = Counter.builder("gift.dispenser.flush.dead-letter")
+      .description("Number of assignments moved to t_gift_dead_letter instead of t_gift_history").register(meterRegistry);
+  }
+
+  /**
+   * 이전 실행에서 저널에만 기록되고 DB에 반영되지 못한 할당을 반영한다.
+   * 할당 update 는 멱등이므로 이미 반영된 기록이 다시 반영되어도 무방하다.
+   */
+  @PostConstruct
+  public void recover() throws IOException {
+    for(long[] record : journal.recover()) {
+      pendingAssignments.add(new Assignment(record[0], record[1], null, 0));
+    }
+    flush();
+  }
+
+  /**
+   * 뿌리기 건의 분배건을 등록한다. 현재 트랜잭션이 커밋된 이후에 받기 요청에 노출된다.
+   */
+  public void register(Long requestId, List<GiftHistory> histories, Timestamp expirationTime) {
+    if(!enabled) return;
+
+    long[] historyIds = new long[histories.size()];
+    long[] amounts = new long[histories.size()];
+    for(int i = 0; i < histories.size(); i++) {
+      historyIds[i] = histories.get(i).getHistoryId();
+      amounts[i] = histories.get(i).getAmount();
+    }
+    if(TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          stateStore.registerShares(requestId, historyIds, amounts, expirationTime.getTime());
+        }
+      });
+    } else {
+      stateStore.registerShares(requestId, historyIds, amounts, expirationTime.getTime());
+    }
+  }
+
+  /**
+   * 분배건 하나를 사용자에게 할당한다.
+   * @return 등록되지 않은 뿌리기 건이면 null (DB 조회 경로를 사용해야 한다)
+   */
+  public Claim claim(Long requestId, long userId) {
+    if(!enabled) return null;
+    GiftStateStore.ClaimedShare share = stateStore.claimShare(requestId, userId);
+    if(share == null) return null;
+    if(!share.isAccepted()) return Claim.rejected(share.getError());
+
+    Assignment assignment = new Assignment(share.getHistoryId(), userId, requestId, share.getAmount());
+    try {
+      journal.append(assignment.historyId, assignment.receiverId, () -> pendingAssignments.add(assignment));
+    } catch (RuntimeException e) {
+      stateStore.cancelClaim(requestId, userId); // 확정되지 않은 분배건은 재시작 후 DB 조회 경로에서 할당된다.
+      throw e;
+    }
+    return Claim.accepted(share.getAmount());
+  }
+
+  /**
+   * 쌓인 할당 결과를 batch update 로 DB에 반영한다.
+   * DB 장애로 반영하지 못한 할당은 큐에 남겨 다음 주기에 다시 반영하고, 그동안 저널 세그먼트는 지우지 않는다.
+   * 일시적인 오류가 이어지면 다시 시도하기까지의 대기 시간을 MAX_BACKOFF_MILLIS 까지 두 배씩 늘린다.
+   * 종료 시의 flush 와 겹치지 않도록 한번에 하나씩만 실행된다.
+   * @return 큐에 있던 할당을 모두 처리했는지 여부
+   */
+  @Scheduled(fixedDelayString = "${gift.dispenser.flush.interval:100}")
+  public synchronized boolean flush() {
+    if(System.currentTimeMillis() < retryNotBefore) return false;
+    return flushNow();
+  }
+
+  private boolean flushNow() {
+    long sealedSegmentId = journal.rotate(); // 닫힌 세그먼트의 할당은 모두 큐에 들어와 있다.
+    while(!pendingAssignments.isEmpty()) {
+      List<Assignment> batch = new ArrayList<>(Math.min(FLUSH_SIZE, pendingAssignments.size()));
+      Assignment assignment;
+      while(batch.size() < FLUSH_SIZE && (assignment = pendingAssignments.poll()) != null) {
+        batch.add(assignment);
+      }
+
+      List<Assignment> unprocessed = apply(batch, new Timestamp(System.currentTimeMillis()));
+      if(!unprocessed.isEmpty()) {
+        pendingAssignments.addAll(unprocessed);
+        retryNotBefore = System.currentTimeMillis() + Math.min(MAX_BACKOFF_MILLIS, BACKOFF_MILLIS << Math.min(consecutiveFailures++, 16));
+        return false;
+      }
+      log.debug("Flushed {} assignments.", batch.size());
+    }
+    consecutiveFailures = 0;
+    journal.deleteUpTo(sealedSegmentId);
+    return true;
+  }
+
+  /**
+   * 할당을 반영한다. 특정 할당 때문에 batch 가 실패하면 batch 를 반으로 나누어 반영하고, 한 건만으로도 실패하는 할당은 dead letter 로 옮긴다.
+   * DB 연결 장애 등 일시적인 오류는 특정 할당의 문제가 아니므로 나누지 않고 그대로 다시 시도한다.
+   * @return 반영도 dead letter 처리도 하지 못해 다음 주기에 다시 반영해야 하는 할당 (이미 처리한 할당은 포함하지 않는다)
+   */
+  private List<Assignment> apply(List<Assignment> batch, Timestamp now) {
+    int[][] updateCounts;
+    try {
+      updateCounts = jdbcTemplate.batchUpdate(ASSIGN_SQL, batch, batch.size(), (ps, a) -> {
+        ps.setLong(1, a.receiverId);
+        ps.setTimestamp(2, now);
+        ps.setLong(3, a.historyId);
+        ps.setLong(4, a.receiverId);
+      });
+    } catch (RuntimeException e) {
+      boolean rejectedRow = e instanceof DataIntegrityViolationException || (!isTransient(e) && exhausted(batch));
+      if(!rejectedRow) {
+        log.error("Failed to flush {} assignments. They will be retried.", batch.size(), e);
+        for(Assignment a : batch) a.attempts++;
+        return batch;
+      }
+      if(batch.size() == 1) {
+        return deadLetter(batch.get(0), e.getClass().getSimpleName(), e) ? Collections.emptyList() : batch;
+      }
+      int half = batch.size() / 2;
+      List<Assignment> unprocessed = apply(batch.subList(0, half), now);
+      if(unprocessed.isEmpty()) return apply(batch.subList(half, batch.size()), now);
+      List<Assignment> remaining = new ArrayList<>(unprocessed);
+      remaining.addAll(batch.subList(half, batch.size()));
+      return remaining;
+    }
+
+    List<Assignment> notUpdated = new ArrayList<>();
+    int index = 0;
+    for(int[] counts : updateCounts) {
+      for(int count : counts) {
+        if(count == 0 && index < batch.size()) notUpdated.add(batch.get(index)); // 분배건이 이미 정리되었거나 다른 사용자에게 할당된 경우
+        index++;
+      }
+    }
+    for(int i = 0; i < notUpdated.size(); i++) {
+      Assignment assignment = notUpdated.get(i);
+      boolean missing;
+      try {
+        missing = jdbcTemplate.queryForObject(EXISTS_SQL, Long.class, assignment.historyId) == 0;
+      } catch (RuntimeException e) {
+        log.error("Failed to check history of an assignment. It will be retried. historyId: {}", assignment.historyId, e);
+        return notUpdated.subList(i, notUpdated.size()); // 다시 반영해도 update 건수는 0 이다.
+      }
+      if(!deadLetter(assignment, missing ? "HISTORY_NOT_FOUND" : "ALREADY_ASSIGNED", null)) return notUpdated.subList(i, notUpdated.size());
+      (missing ? missingHistories : alreadyAssigned).increment();
+    }
+    return Collections.emptyList();
+  }
+
+  private static boolean isTransient(RuntimeException e) {
+    return e instanceof DataAccessResourceFailureException || e instanceof TransientDataAccessException;
+  }
+
+  private boolean exhausted(List<Assignment> batch) {
+    for(Assignment a : batch) {
+      if(a.attempts >= MAX_ATTEMPTS) return true;
+    }
+    return false;
+  }
+
+  /**
+   * 반영할 수 없는 할당을 dead letter 로 남긴다. 사용자에게는 이미 지급된 금액이므로 운영자가 확인해야 한다.
+   * @return dead letter 에 저장했는지 여부 - 저장하지 못한 할당은 큐와 저널에 남겨 다시 처리해야 한다.
+   */
+  private boolean deadLetter(Assignment assignment, String reason, Exception cause) {
+    try {
+      jdbcTemplate.update(DEAD_LETTER_SQL, assignment.historyId, assignment.receiverId, reason, new Timestamp(System.currentTimeMillis()));
+    } catch (RuntimeException e) {
+      log.error("Failed to store dead letter. It will be retried. historyId: {}, receiverId: {}", assignment.historyId, assignment.receiverId, e);
+      return false;
+    }
+    deadLetters.increment();
+    log.error("Assignment could not be flushed and moved to dead letters. historyId: {}, receiverId: {}, reason: {}",
+      assignment.historyId, assignment.receiverId, reason, cause);
+    return true;
+  }
+
+  /**
+   * 만료된 뿌리기 건은 더 이상 받을 수 없으므로 상태 저장소에서 제거한다.
+   */
+  @Scheduled(fixedDelayString = "${gift.dispenser.evict.interval:60000}")
+  public void evictExpired() {
+    stateStore.evictExpired(System.currentTimeMillis());
+  }
+
+  /**
+   * 할당했지만 아직 DB에 반영하지 않은 받기 내역
+   * 진행중인 flush 가 끝난 뒤에 읽으므로, 이 목록을 읽은 뒤에 DB를 읽으면 호출 시점까지의 할당이 어느 한쪽에는 반드시 포함된다.
+   */
+  public synchronized List<GiftInfoResponse.Receiving> findUnflushedReceivings(Long requestId) {
+    List<GiftInfoResponse.Receiving> receivings = new ArrayList<>();
+    if(!enabled) return receivings;
+    for(Assignment assignment : pendingAssignments) {
+      if(requestId.equals(assignment.requestId)) receivings.add(new GiftInfoResponse.Receiving(assignment.receiverId, assignment.amount));
+    }
+    return receivings;
+  }
+
+  int numOfPendingAssignments() {
+    return pendingAssignments.size();
+  }
+
+  @PreDestroy
+  public synchronized void close() {
+    flushNow();
+  }
+
+  static class Assignment {
+    final long historyId;
+    final long receiverId;
+    final Long requestId; // 저널에서 복구한 할당은 알 수 없다.
+    final long amount;
+    int attempts; // 반영에 실패한 횟수
+
+    Assignment(long historyId, long receiverId, Long requestId, long amount) {
+      this.historyId = historyId;
+      this.receiverId = receiverId;
+      this.requestId = requestId;
+      this.amount = amount;
+    }
+  }
+
+  @Getter
+  public static class Claim {
+    private final Errors error;
+    private final long amount;
+
+    private Claim(Errors error, long amount) {
+      this.error = error;
+      this.amount = amount;
+    }
+
+    static Claim accepted(long amount) {
+      return new Claim(null, amount);
+    }
+
+    static Claim rejected(Errors error) {
+      return new Claim(error, 0);
+    }
+
+    public boolean isAccepted() {
+      return error == null;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import lombok.Getter;
+
+/**
+ * 뿌릴 금액을 분배건 단위로 하나씩 꺼내는 순서
+ * 다음 분배건의 금액은 next() 를 호출할 때 계산하므로 인원 수만큼의 배열을 미리 만들지 않는다.
+ * 모든 분배건을 꺼내면 금액의 합은 뿌린 금액과 같고, 각 분배건의 금액은 [minAmount, maxAmount] 범위에 있다.
+ */
+public abstract class ShareSequence {
+  @Getter private final long totalAmount;
+  @Getter private final int numOfShares;
+  @Getter private final long minAmount;
+  @Getter private final long maxAmount;
+  private long remainingAmount;
+  private int index = 0;
+
+  protected ShareSequence(long totalAmount, int numOfShares, long minAmount, long maxAmount) {
+    if(numOfShares <= 0 || minAmount * numOfShares > totalAmount || capacity(numOfShares, maxAmount, totalAmount) < totalAmount) {
+      throw new IllegalArgumentException(String.format("Cannot divide %d into %d shares within [%d, %d].", totalAmount, numOfShares, minAmount, maxAmount));
+    }
+    this.totalAmount = totalAmount;
+    this.numOfShares = numOfShares;
+    this.minAmount = minAmount;
+    this.maxAmount = maxAmount;
+    this.remainingAmount = totalAmount;
+  }
+
+  public boolean hasNext() {
+    return index < numOfShares;
+  }
+
+  public long next() {
+    if(index >= numOfShares) throw new IndexOutOfBoundsException(Errors.ALREADY_FULLY_CONSUMED.getMessage());
+    int remainingShares = numOfShares - index - 1;
+    long amount;
+    if(remainingShares == 0) {
+      amount = remainingAmount;
+    } else {
+      // 남은 분배건이 모두 최소/최대 금액을 받더라도 남은 금액을 나눌 수 있는 범위 안에서만 고른다.
+      long lower = Math.max(minAmount, remainingAmount - capacity(remainingShares, maxAmount, remainingAmount));
+      long upper = Math.min(maxAmount, remainingAmount - remainingShares * minAmount);
+      amount = nextAmount(index, lower, upper);
+    }
+    remainingAmount -= amount;
+    index++;
+    return amount;
+  }
+
+  /**
+   * index 번째 분배건의 금액을 [lower, upper] 범위에서 정한다. 마지막 분배건은 남은 금액으로 정해지므로 호출되지 않는다.
+   */
+  protected abstract long nextAmount(int index, long lower, long upper);
+
+  /**
+   * shares 개의 분배건이 amount 씩 받을 수 있는 금액의 합 (limit 을 넘으면 limit)
+   */
+  private static long capacity(int shares, long amount, long limit) {
+    return amount != 0 && shares > limit / amount ? limit : shares * amount;
+  }
+}
@@ -0,0 +1,220 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.domain.IssuedToken;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 대화방별 토큰 발급 현황을 비트맵으로 관리하여, DB 조회 없이 사용되지 않은 토큰을 발급한다.
+ * 임의의 위치에서 시작해 가장 가까운 빈 토큰을 고르므로 발급 순서를 예측하기 어렵다.
+ * 발급된 토큰은 조회 가능 기간(gift.order.visible.period)이 지나면 다시 발급할 수 있다.
+ * 발급 현황은 프로세스 내에만 유지되며, 대화방에 처음 접근할 때 DB에서 한번 읽어온다.
+ * 발급할 토큰은 상태 저장소(GiftStateStore)에 예약하여, 여러 API 노드가 같은 대화방에 같은 토큰을 동시에 발급하지 않도록 한다.
+ */
+@Component
+@Slf4j
+public class TokenAllocator {
+  final TokenFactory tokenFactory;
+  final GiftOrderRepository orderRepository;
+  final GiftStateStore stateStore;
+
+  @Value("${gift.order.visible.period}")
+  long VISIBLE_PERIOD_MILLIS;
+
+  private final Map<String, RoomTokens> rooms = new ConcurrentHashMap<>();
+
+  public TokenAllocator(TokenFactory tokenFactory, GiftOrderRepository orderRepository, GiftStateStore stateStore) {
+    this.tokenFactory = tokenFactory;
+    this.orderRepository = orderRepository;
+    this.stateStore = stateStore;
+  }
+
+  /**
+   * 대화방에서 사용되지 않은 토큰 하나를 발급한다.
+   * 현재 트랜잭션이 롤백되면 발급된 토큰은 반납된다.
+   * @return 발급 가능한 토큰이 없으면 null
+   */
+  public Allocation allocate(String roomId) {
+    RoomTokens room = room(roomId);
+    long currentTime = System.currentTimeMillis();
+    long releaseTime = currentTime + VISIBLE_PERIOD_MILLIS;
+    String token;
+    boolean recycled;
+    while(true) {
+      int index;
+      synchronized (room) {
+        room.releaseExpired(currentTime);
+        index = room.allocate(ThreadLocalRandom.current().nextInt(room.size), releaseTime);
+        if(index < 0) return null;
+        recycled = room.recycled.get(index);
+        room.recycled.clear(index);
+      }
+
+      token = tokenFactory.encode(index);
+      if(stateStore.reserveToken(roomId, token, releaseTime)) break;
+      // 다른 노드가 발급한 토큰은 사용중으로 남겨두고, 나중에 재발급할 때 그 노드의 뿌리기 건을 정리하도록 recycled 로 표시한다.
+      synchronized (room) {
+        room.recycled.set(index);
+      }
+    }
+
+    String allocated = token;
+    if(TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          if(status != STATUS_COMMITTED) release(roomId, allocated);
+        }
+      });
+    }
+    return new Allocation(allocated, recycled);
+  }
+
+  /**
+   * 토큰을 반납한다. 반납된 토큰의 이전 뿌리기 건은 DB에 남아있을 수 있으므로 재발급 시 recycled 로 표시된다.
+   */
+  public void release(String roomId, String token) {
+    int index = tokenFactory.decode(token);
+    if(index < 0) return;
+    stateStore.releaseToken(roomId, token);
+    RoomTokens room = rooms.get(roomId);
+    if(room == null) return;
+    synchronized (room) {
+      room.releaseQueue.removeIf(entry -> entry[1] == index); // 반납 주기가 오기 전에 반납되는 경우는 드물다.
+      room.release(index);
+    }
+  }
+
+  /**
+   * 대화방의 토큰 사용률 (0.0 ~ 1.0)
+   */
+  public double occupancy(String roomId) {
+    RoomTokens room = rooms.get(roomId);
+    if(room == null) return 0;
+    synchronized (room) {
+      return (double) room.usedCount / room.size;
+    }
+  }
+
+  /**
+   * 조회 가능 기간이 지난 토큰을 반납하고, 사용중인 토큰이 없는 대화방은 메모리에서 제거한다.
+   */
+  @Scheduled(fixedDelayString = "${gift.token.release.interval:60000}")
+  public void releaseExpired() {
+    long currentTime = System.currentTimeMillis();
+    rooms.entrySet().removeIf(entry -> {
+      RoomTokens room = entry.getValue();
+      synchronized (room) {
+        room.releaseExpired(currentTime);
+        return room.usedCount == 0;
+      }
+    });
+  }
+
+  /**
+   * 아직 읽어오지 않은 대화방들의 토큰 발급 현황을 한번의 조회로 읽어온다. (대량 생성 시 대화방마다 조회하지 않도록)
+   */
+  public void preload(Collection<String> roomIds) {
+    Set<String> missing = new HashSet<>();
+    for(String roomId : roomIds) {
+      if(!rooms.containsKey(roomId)) missing.add(roomId);
+    }
+    if(missing.isEmpty()) return;
+
+    long currentTime = System.currentTimeMillis();
+    Map<String, RoomTokens> loaded = new HashMap<>();
+    for(String roomId : missing) loaded.put(roomId, new RoomTokens(tokenFactory.spaceSize()));
+    for(IssuedToken issued : orderRepository.findTokensByRoomIdInOrderByCreateTime(missing)) {
+      issue(loaded.get(issued.getRoomId()), issued, currentTime);
+    }
+    loaded.forEach(rooms::putIfAbsent);
+  }
+
+  private RoomTokens room(String roomId) {
+    RoomTokens room = rooms.get(roomId);
+    if(room != null) return room;
+
+    RoomTokens loaded = load(roomId);
+    room = rooms.putIfAbsent(roomId, loaded);
+    return room == null ? loaded : room;
+  }
+
+  private RoomTokens load(String roomId) {
+    long currentTime = System.currentTimeMillis();
+    RoomTokens room = new RoomTokens(tokenFactory.spaceSize());
+    for(IssuedToken issued : orderRepository.findTokensByRoomIdOrderByCreateTime(roomId)) {
+      issue(room, issued, currentTime);
+    }
+    log.debug("Loaded tokens of room {}. {} of {} tokens are in use.", roomId, room.usedCount, room.size);
+    return room;
+  }
+
+  private void issue(RoomTokens room, IssuedToken issued, long currentTime) {
+    int index = tokenFactory.decode(issued.getToken());
+    if(index < 0) return;
+    room.recycled.set(index);
+    long releaseTime = issued.getCreateTime().getTime() + VISIBLE_PERIOD_MILLIS;
+    if(releaseTime > currentTime) room.allocate(index, releaseTime);
+  }
+
+  @Getter
+  public static class Allocation {
+    private final String token;
+    private final boolean recycled; // 이전에 발급되었던 토큰인지 여부
+
+    Allocation(String token, boolean recycled) {
+      this.token = token;
+      this.recycled = recycled;
+    }
+  }
+
+  static class RoomTokens {
+    final int size;
+    final BitSet used;
+    final BitSet recycled;
+    final Deque<long[]> releaseQueue = new ArrayDeque<>(); // [반납 시각, 토큰 순번] 을 발급 순서대로 보관한다.
+    int usedCount = 0;
+
+    RoomTokens(int size) {
+      this.size = size;
+      this.used = new BitSet(size);
+      this.recycled = new BitSet(size);
+    }
+
+    /**
+     * from 부터 순환하며 가장 가까운 빈 토큰을 사용 처리한다.
+     */
+    int allocate(int from, long releaseTime) {
+      if(usedCount >= size) return -1;
+      int index = used.nextClearBit(from);
+      if(index >= size) index = used.nextClearBit(0);
+      used.set(index);
+      usedCount++;
+      releaseQueue.addLast(new long[]{releaseTime, index});
+      return index;
+    }
+
+    void release(int index) {
+      if(!used.get(index)) return;
+      used.clear(index);
+      recycled.set(index);
+      usedCount--;
+    }
+
+    void releaseExpired(long currentTime) {
+      while(!releaseQueue.isEmpty() && releaseQueue.peekFirst()[0] <= currentTime) {
+        release((int) releaseQueue.pollFirst()[1]);
+      }
+    }
+  }
+}
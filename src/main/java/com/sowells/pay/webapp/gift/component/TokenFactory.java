@@ -7,6 +7,8 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class TokenFactory {
+  private static final int RADIX = 36; // 숫자 10개 + 소문자 26개
+
   @Getter
   @Value("${gift.token.size}")
   int GIFT_TOKEN_SIZE;
@@ -14,4 +16,43 @@ public class TokenFactory {
   public String create() {
     return RandomStringUtils.randomAlphanumeric(GIFT_TOKEN_SIZE).toLowerCase();
   }
+
+  /**
+   * 발급 가능한 토큰의 개수 (36^토큰 사이즈)
+   */
+  public int spaceSize() {
+    long size = 1;
+    for(int i = 0; i < GIFT_TOKEN_SIZE; i++) size *= RADIX;
+    if(size > Integer.MAX_VALUE) throw new IllegalStateException("Token space is too large. gift.token.size: " + GIFT_TOKEN_SIZE);
+    return (int) size;
+  }
+
+  /**
+   * 토큰 공간 내의 순번을 토큰 문자열로 변환한다.
+   */
+  public String encode(int index) {
+    char[] chars = new char[GIFT_TOKEN_SIZE];
+    for(int i = GIFT_TOKEN_SIZE - 1; i >= 0; i--) {
+      chars[i] = Character.forDigit(index % RADIX, RADIX);
+      index /= RADIX;
+    }
+    return new String(chars);
+  }
+
+  /**
+   * 토큰 문자열을 토큰 공간 내의 순번으로 변환한다.
+   * @return 현재 토큰 규격에 맞지 않는 토큰이면 -1
+   */
+  public int decode(String token) {
+    if(token == null || token.length() != GIFT_TOKEN_SIZE) return -1;
+    int index = 0;
+    for(int i = 0; i < token.length(); i++) {
+      char c = token.charAt(i);
+      if(Character.isUpperCase(c)) return -1;
+      int digit = Character.digit(c, RADIX);
+      if(digit < 0) return -1;
+      index = index * RADIX + digit;
+    }
+    return index;
+  }
 }
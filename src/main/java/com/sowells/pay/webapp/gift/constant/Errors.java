@@ -12,7 +12,13 @@ public enum Errors {
   MUST_BE_POSITIVE("Inputs must be positive."),
   AMOUNT_MUST_GREATER_THAN_RECEIVERS("Amount must be greater than max number of receivers."),
   ALREADY_FULLY_CONSUMED("All money has already consumed."),
-  NO_TOKEN_AVAILABLE("Failed to create token. All tokens have already been taken.");
+  NO_TOKEN_AVAILABLE("Failed to create token. All tokens have already been taken."),
+  SERVER_BUSY("Server is busy. Please try again later."),
+  ROOM_ID_REQUIRED("Room id is required."),
+  TOO_MANY_RECIPIENTS("Max number of receivers is too large."),
+  TOO_MANY_ENTRIES("Too many entries in a bulk request."),
+  INVALID_CURSOR("Invalid cursor."),
+  INTERNAL_ERROR("Internal server error.");
 
   @Getter
   String message;
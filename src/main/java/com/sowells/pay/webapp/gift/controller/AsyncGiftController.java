@@ -0,0 +1,54 @@
+package com.sowells.pay.webapp.gift.controller;
+
+import com.sowells.pay.webapp.gift.component.GiftRequestExecutor;
+import com.sowells.pay.webapp.gift.domain.GiftCreationRequest;
+import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import com.sowells.pay.webapp.gift.service.GiftReceiveCoalescer;
+import com.sowells.pay.webapp.gift.service.GiftService;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 요청을 GiftRequestExecutor 에 넘기고 Tomcat 요청 스레드는 바로 반환하는 모드
+ *  gift.api.execution-mode=async : 커넥션 풀 크기의 공용 스레드 풀 (GiftApiExecutor)
+ *  gift.api.execution-mode=sharded : 대화방별로 순서대로 처리하는 샤드 (RoomShardExecutor)
+ * DB 처리가 느려져도 요청 스레드가 고갈되지 않으며, 처리 한도를 넘은 요청은 503 으로 바로 거절된다.
+ */
+@RestController
+@ConditionalOnExpression("'${gift.api.execution-mode:blocking}' == 'async' or '${gift.api.execution-mode:blocking}' == 'sharded'")
+@Slf4j
+@RequestMapping("/gift")
+@Timed(value = "gift.api", percentiles = {0.5, 0.99})
+public class AsyncGiftController {
+  final GiftService service;
+  final GiftReceiveCoalescer receiveCoalescer;
+  final GiftRequestExecutor executor;
+
+  public AsyncGiftController(GiftService service, GiftReceiveCoalescer receiveCoalescer, GiftRequestExecutor executor) {
+    this.service = service;
+    this.receiveCoalescer = receiveCoalescer;
+    this.executor = executor;
+  }
+
+  @PostMapping
+  public CompletableFuture<String> add(@RequestHeader("X-USER-ID") long userId, @RequestHeader("X-ROOM-ID") String roomId, @RequestBody GiftCreationRequest req) {
+    if(executor.isSerializedByRoom()) {
+      return executor.submit(roomId, () -> service.addInRoomShard(userId, roomId, req.getTotalAmount(), req.getMaxNumOfRecipients()));
+    }
+    return executor.submit(roomId, () -> service.add(userId, roomId, req.getTotalAmount(), req.getMaxNumOfRecipients()));
+  }
+
+  @PutMapping("/{token}")
+  public CompletableFuture<Long> receive(@RequestHeader("X-USER-ID") long userId, @RequestHeader("X-ROOM-ID") String roomId, @PathVariable("token") String token) {
+    return executor.submit(roomId, () -> receiveCoalescer.receive(userId, roomId, token));
+  }
+
+  @GetMapping("/{token}")
+  public CompletableFuture<GiftInfoResponse> list(@RequestHeader("X-USER-ID") long userId, @RequestHeader("X-ROOM-ID") String roomId, @PathVariable("token") String token) {
+    return executor.submit(roomId, () -> service.get(userId, roomId, token));
+  }
+}
@@ -0,0 +1,53 @@
+package com.sowells.pay.webapp.gift.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sowells.pay.webapp.gift.domain.BulkGiftEntry;
+import com.sowells.pay.webapp.gift.domain.BulkGiftResult;
+import com.sowells.pay.webapp.gift.service.GiftBulkService;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * 여러 대화방에 뿌리기 건을 한번에 생성하는 운영용 API (실행 방식과 관계없이 요청 스레드에서 처리한다)
+ * 응답은 대화방별 결과를 한 줄에 하나씩 JSON 으로 (application/x-ndjson) 저장이 끝난 chunk 부터 내려준다.
+ */
+@RestController
+@Slf4j
+@RequestMapping("/gift")
+@Timed(value = "gift.api", percentiles = {0.5, 0.99})
+public class BulkGiftController {
+  static final String NDJSON = "application/x-ndjson";
+  private static final byte[] LINE_SEPARATOR = {'\n'};
+
+  final GiftBulkService service;
+  final ObjectMapper objectMapper;
+
+  public BulkGiftController(GiftBulkService service, ObjectMapper objectMapper) {
+    this.service = service;
+    this.objectMapper = objectMapper;
+  }
+
+  @PostMapping("/bulk")
+  public void addAll(@RequestHeader("X-USER-ID") long userId, @RequestBody List<BulkGiftEntry> entries, HttpServletResponse response) throws IOException {
+    response.setContentType(NDJSON);
+    OutputStream out = response.getOutputStream();
+    service.addAll(userId, entries, results -> {
+      try {
+        for(BulkGiftResult result : results) {
+          out.write(objectMapper.writeValueAsBytes(result));
+          out.write(LINE_SEPARATOR);
+        }
+        out.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to write bulk gift results.", e);
+      }
+    });
+  }
+}
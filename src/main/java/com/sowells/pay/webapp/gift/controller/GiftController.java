@@ -2,18 +2,28 @@ package com.sowells.pay.webapp.gift.controller;
 
 import com.sowells.pay.webapp.gift.domain.GiftCreationRequest;
 import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import com.sowells.pay.webapp.gift.service.GiftReceiveCoalescer;
 import com.sowells.pay.webapp.gift.service.GiftService;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.web.bind.annotation.*;
 
+/**
+ * 요청 스레드에서 바로 처리하는 기본 모드 (gift.api.execution-mode=blocking)
+ */
 @RestController
+@ConditionalOnProperty(name = "gift.api.execution-mode", havingValue = "blocking", matchIfMissing = true)
 @Slf4j
 @RequestMapping("/gift")
+@Timed(value = "gift.api", percentiles = {0.5, 0.99})
 public class GiftController {
   final GiftService service;
+  final GiftReceiveCoalescer receiveCoalescer;
 
-  public GiftController(GiftService service) {
+  public GiftController(GiftService service, GiftReceiveCoalescer receiveCoalescer) {
     this.service = service;
+    this.receiveCoalescer = receiveCoalescer;
   }
 
   @PostMapping
@@ -23,7 +33,7 @@ public class GiftController {
 
   @PutMapping("/{token}")
   public long receive(@RequestHeader("X-USER-ID") long userId, @RequestHeader("X-ROOM-ID") String roomId, @PathVariable("token") String token) {
-    return service.receive(userId, roomId, token);
+    return receiveCoalescer.receive(userId, roomId, token);
   }
 
   @GetMapping("/{token}")
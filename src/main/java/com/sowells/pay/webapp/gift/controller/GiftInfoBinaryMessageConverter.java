@@ -0,0 +1,67 @@
+package com.sowells.pay.webapp.gift.controller;
+
+import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+
+/**
+ * Accept: application/x-gift-info 로 요청한 경우 조회 API 응답을 고정 길이 바이너리로 쓴다. (big-endian)
+ * [뿌린 시각(epoch ms, 8)][뿌린 금액(8)][받기 완료된 금액(8)][받은 건수 n(4)][받은 사용자 아이디(8) x n][받은 금액(8) x n]
+ */
+public class GiftInfoBinaryMessageConverter extends AbstractHttpMessageConverter<GiftInfoResponse> {
+  public static final String MEDIA_TYPE_VALUE = "application/x-gift-info";
+  public static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA_TYPE_VALUE);
+  static final int HEADER_SIZE = 8 + 8 + 8 + 4;
+
+  public GiftInfoBinaryMessageConverter() {
+    super(MEDIA_TYPE);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return GiftInfoResponse.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false; // 응답 전용
+  }
+
+  @Override
+  protected GiftInfoResponse readInternal(Class<? extends GiftInfoResponse> clazz, HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("Reading " + MEDIA_TYPE_VALUE + " is not supported.", inputMessage);
+  }
+
+  @Override
+  protected Long getContentLength(GiftInfoResponse response, MediaType contentType) {
+    return (long) size(response);
+  }
+
+  @Override
+  protected void writeInternal(GiftInfoResponse response, HttpOutputMessage outputMessage) throws IOException {
+    outputMessage.getBody().write(encode(response));
+  }
+
+  public static byte[] encode(GiftInfoResponse response) {
+    ByteBuffer buffer = ByteBuffer.allocate(size(response));
+    Timestamp creationTime = response.getCreationTime();
+    buffer.putLong(creationTime == null ? 0 : creationTime.getTime());
+    buffer.putLong(response.getTotalAmount());
+    buffer.putLong(response.getReceivedAmount());
+    buffer.putInt(response.getNumOfReceivings());
+    for(int i = 0; i < response.getNumOfReceivings(); i++) buffer.putLong(response.getReceiverId(i));
+    for(int i = 0; i < response.getNumOfReceivings(); i++) buffer.putLong(response.getAmount(i));
+    return buffer.array();
+  }
+
+  private static int size(GiftInfoResponse response) {
+    return HEADER_SIZE + response.getNumOfReceivings() * 16;
+  }
+}
@@ -0,0 +1,90 @@
+package com.sowells.pay.webapp.gift.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sowells.pay.webapp.gift.domain.CreatedGift;
+import com.sowells.pay.webapp.gift.service.GiftListService;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * 사용자가 뿌린 건 목록 API (실행 방식과 관계없이 요청 스레드에서 처리한다)
+ * 응답은 { "gifts": [...], "next": "다음 커서" } 형태이며, 페이지를 조회할 때마다 바로 응답 스트림에 쓴다.
+ */
+@RestController
+@Slf4j
+@RequestMapping("/gift")
+@Timed(value = "gift.api", percentiles = {0.5, 0.99})
+public class GiftListController {
+  final GiftListService service;
+  final ObjectMapper objectMapper;
+
+  public GiftListController(GiftListService service, ObjectMapper objectMapper) {
+    this.service = service;
+    this.objectMapper = objectMapper;
+  }
+
+  @GetMapping("/created")
+  public void listCreated(@RequestHeader("X-USER-ID") long userId, @RequestParam(value = "cursor", required = false) String cursor,
+                          @RequestParam(value = "limit", defaultValue = "100") int limit, HttpServletResponse response) throws IOException {
+    CreatedGiftWriter writer = new CreatedGiftWriter(response);
+    String next = service.listCreated(userId, cursor, limit, writer::write);
+    writer.finish(next);
+  }
+
+  /**
+   * 요청 검증이 끝나 첫 페이지가 나온 뒤에 응답을 쓰기 시작하여, 검증 실패는 400 응답으로 내려갈 수 있도록 한다.
+   */
+  class CreatedGiftWriter {
+    final HttpServletResponse response;
+    JsonGenerator generator;
+
+    CreatedGiftWriter(HttpServletResponse response) {
+      this.response = response;
+    }
+
+    void write(List<CreatedGift> gifts) {
+      try {
+        start();
+        for(CreatedGift gift : gifts) {
+          generator.writeStartObject();
+          generator.writeStringField("roomId", gift.getRoomId());
+          generator.writeStringField("token", gift.getToken());
+          generator.writeObjectField("createTime", gift.getCreateTime());
+          generator.writeObjectField("expirationTime", gift.getExpirationTime());
+          generator.writeNumberField("totalAmount", gift.getTotalAmount());
+          generator.writeNumberField("maxNumOfRecipients", gift.getMaxNumOfRecipients());
+          generator.writeNumberField("receivedAmount", gift.getReceivedAmount());
+          generator.writeNumberField("numOfReceived", gift.getNumOfReceived());
+          generator.writeEndObject();
+        }
+        generator.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to write created gifts.", e);
+      }
+    }
+
+    void finish(String next) throws IOException {
+      start();
+      generator.writeEndArray();
+      if(next != null) generator.writeStringField("next", next);
+      generator.writeEndObject();
+      generator.close();
+    }
+
+    private void start() throws IOException {
+      if(generator != null) return;
+      response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+      generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("gifts");
+    }
+  }
+}
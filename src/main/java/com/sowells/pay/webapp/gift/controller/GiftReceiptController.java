@@ -0,0 +1,72 @@
+package com.sowells.pay.webapp.gift.controller;
+
+import com.sowells.pay.webapp.gift.component.ReceiptBroadcaster;
+import com.sowells.pay.webapp.gift.component.ReceiptListener;
+import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import com.sowells.pay.webapp.gift.service.GiftService;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * 뿌린 사용자의 받기 내역 구독 API (실행 방식과 관계없이 요청 스레드에서 처리한다)
+ * 받기 내역마다 receipt 이벤트({ "receiverId": ..., "amount": ... })를 보내고,
+ * 모두 받아가거나 만료되면 completed 이벤트(FULLY_CONSUMED / EXPIRED)를 보낸 뒤 끝난다.
+ */
+@RestController
+@Slf4j
+@RequestMapping("/gift")
+@Timed(value = "gift.api", percentiles = {0.5, 0.99})
+public class GiftReceiptController {
+  static final String RECEIPT_EVENT = "receipt";
+  static final String COMPLETED_EVENT = "completed";
+
+  final GiftService service;
+
+  public GiftReceiptController(GiftService service) {
+    this.service = service;
+  }
+
+  @GetMapping(value = "/{token}/receipts", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter subscribe(@RequestHeader("X-USER-ID") long userId, @RequestHeader("X-ROOM-ID") String roomId, @PathVariable("token") String token) {
+    ReceiptBroadcaster.Subscription subscription = service.subscribeReceipts(userId, roomId, token);
+    long timeout = Math.max(0, subscription.getExpirationTime() - System.currentTimeMillis());
+    SseEmitter emitter = new SseEmitter(timeout + 5000); // 만료는 ReceiptBroadcaster 가 처리한다.
+    emitter.onCompletion(subscription::cancel);
+    emitter.onTimeout(subscription::cancel);
+    emitter.onError(e -> subscription.cancel());
+    subscription.start(new SseReceiptListener(emitter));
+    return emitter;
+  }
+
+  /**
+   * 받기 내역을 SSE 이벤트로 보낸다.
+   */
+  static class SseReceiptListener implements ReceiptListener {
+    final SseEmitter emitter;
+
+    SseReceiptListener(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    @Override
+    public void onReceipt(long receiverId, long amount) throws IOException {
+      emitter.send(SseEmitter.event().name(RECEIPT_EVENT).data(new GiftInfoResponse.Receiving(receiverId, amount), MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void onCompleted(String reason) throws IOException {
+      emitter.send(SseEmitter.event().name(COMPLETED_EVENT).data(reason));
+    }
+
+    @Override
+    public void onClosed(Exception error) {
+      if(error == null) emitter.complete();
+      else emitter.completeWithError(error);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.sowells.pay.webapp.gift.controller;
+
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * 바이너리 응답 변환기는 기본 변환기 뒤에 두어, Accept 헤더로 요청한 경우에만 선택되고 기본 응답은 JSON 으로 남도록 한다.
+ */
+@Component
+public class GiftWebMvcConfigurer implements WebMvcConfigurer {
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(new GiftInfoBinaryMessageConverter());
+  }
+}
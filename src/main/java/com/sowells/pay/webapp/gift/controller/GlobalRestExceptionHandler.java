@@ -1,7 +1,10 @@
 package com.sowells.pay.webapp.gift.controller;
 
+import com.sowells.pay.webapp.gift.constant.Errors;
 import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import com.sowells.pay.webapp.gift.exception.ServiceUnavailableException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
@@ -14,20 +17,70 @@ import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 @ControllerAdvice(annotations = RestController.class)
 @Order(Ordered.HIGHEST_PRECEDENCE)
 @ResponseBody
 @Slf4j
 public class GlobalRestExceptionHandler extends ResponseEntityExceptionHandler {
+  // 거절 응답은 에러 코드별로 미리 만들어 둔다.
+  private static final Map<Errors, ResponseEntity<Object>> BAD_REQUEST_RESPONSES = new EnumMap<>(Errors.class);
+  static {
+    for(Errors error : Errors.values()) {
+      BAD_REQUEST_RESPONSES.put(error, new ResponseEntity<>(error.getMessage(), HttpStatus.BAD_REQUEST));
+    }
+  }
+
+  private static final ResponseEntity<Object> SERVICE_UNAVAILABLE_RESPONSE = new ResponseEntity<>(Errors.SERVER_BUSY.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+
+  // 에러 코드별 마지막 WARN 로그 시각과 그 사이 생략된 건수
+  private final AtomicLongArray lastLoggedTimes = new AtomicLongArray(Errors.values().length);
+  private final AtomicLong[] suppressedCounts = new AtomicLong[Errors.values().length];
+
+  @Value("${gift.error.log.interval:1000}")
+  long LOG_INTERVAL_MILLIS;
+
+  public GlobalRestExceptionHandler() {
+    for(int i = 0; i < suppressedCounts.length; i++) suppressedCounts[i] = new AtomicLong();
+  }
+
   @ExceptionHandler(BadRequestException.class)
-  protected ResponseEntity<Object> handleBadRequest (Exception ex, WebRequest request) {
-    log.warn("Bad request occurred with request - {}", ((ServletWebRequest)request).getRequest().getRequestURI(), ex);
-    return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+  protected ResponseEntity<Object> handleBadRequest (BadRequestException ex, WebRequest request) {
+    Errors error = ex.getError();
+    if(shouldLog(error)) {
+      log.warn("Bad request occurred with request - {} {} (suppressed: {})",
+        ((ServletWebRequest)request).getRequest().getRequestURI(), ex.getMessage(), suppressedCounts[error.ordinal()].getAndSet(0));
+    }
+    return BAD_REQUEST_RESPONSES.get(error);
+  }
+
+  @ExceptionHandler(ServiceUnavailableException.class)
+  protected ResponseEntity<Object> handleServiceUnavailable (ServiceUnavailableException ex, WebRequest request) {
+    if(shouldLog(ex.getError())) {
+      log.warn("Request rejected by admission control - {} (suppressed: {})",
+        ((ServletWebRequest)request).getRequest().getRequestURI(), suppressedCounts[ex.getError().ordinal()].getAndSet(0));
+    }
+    return SERVICE_UNAVAILABLE_RESPONSE;
   }
 
   @ExceptionHandler(Exception.class)
   protected ResponseEntity<Object> handleInternal (Exception ex, WebRequest request) {
     log.error("Internal error occurred with request - {}", ((ServletWebRequest)request).getRequest().getRequestURI(), ex);
-    return new ResponseEntity<>("Internal server error.", HttpStatus.INTERNAL_SERVER_ERROR);
+    return new ResponseEntity<>(Errors.INTERNAL_ERROR.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+  }
+
+  /**
+   * 에러 코드별로 LOG_INTERVAL_MILLIS 당 한 건만 WARN 으로 남기고 나머지는 건수만 센다.
+   */
+  private boolean shouldLog(Errors error) {
+    long now = System.currentTimeMillis();
+    long lastLogged = lastLoggedTimes.get(error.ordinal());
+    if(now - lastLogged >= LOG_INTERVAL_MILLIS && lastLoggedTimes.compareAndSet(error.ordinal(), lastLogged, now)) return true;
+    suppressedCounts[error.ordinal()].incrementAndGet();
+    return false;
   }
-}
\ No newline at end of file
+}
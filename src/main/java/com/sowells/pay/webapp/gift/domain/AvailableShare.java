@@ -0,0 +1,9 @@
+package com.sowells.pay.webapp.gift.domain;
+
+/**
+ * 아직 할당되지 않은 분배건 조회용 projection
+ */
+public interface AvailableShare {
+  Long getHistoryId(); // 분배건 식별값
+  Long getAmount(); // 분배 금액
+}
@@ -0,0 +1,17 @@
+package com.sowells.pay.webapp.gift.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 대량 생성 API 의 대화방별 뿌리기 요청
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkGiftEntry {
+  String roomId; // 뿌릴 대화방
+  long totalAmount; // 뿌린 금액
+  int maxNumOfRecipients; // 뿌릴 인원
+}
@@ -0,0 +1,35 @@
+package com.sowells.pay.webapp.gift.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.sowells.pay.webapp.gift.constant.Errors;
+import lombok.Data;
+
+/**
+ * 대량 생성 API 의 대화방별 처리 결과 - 성공하면 token, 실패하면 error 와 message 가 채워진다.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkGiftResult {
+  int index; // 요청 목록에서의 순번
+  String roomId;
+  String token;
+  Errors error;
+  String message;
+
+  public static BulkGiftResult created(int index, String roomId, String token) {
+    BulkGiftResult result = new BulkGiftResult();
+    result.index = index;
+    result.roomId = roomId;
+    result.token = token;
+    return result;
+  }
+
+  public static BulkGiftResult failed(int index, String roomId, Errors error, String message) {
+    BulkGiftResult result = new BulkGiftResult();
+    result.index = index;
+    result.roomId = roomId;
+    result.error = error;
+    result.message = message;
+    return result;
+  }
+}
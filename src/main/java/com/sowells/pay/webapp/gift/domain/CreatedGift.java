@@ -0,0 +1,34 @@
+package com.sowells.pay.webapp.gift.domain;
+
+import lombok.Data;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * 사용자가 뿌린 건 목록 항목
+ * 뿌리기 건 정보는 목록 조회 쿼리의 생성자 표현식으로 채우고, 받기 완료 금액/인원은 페이지 단위 집계 결과로 채운다.
+ */
+@Data
+public class CreatedGift {
+  final long requestId; // 뿌리기 건 식별값 (목록 커서로만 사용한다)
+  final String roomId; // 뿌린 대화방
+  final String token; // 뿌리기 건 토큰
+  final long totalAmount; // 뿌린 금액
+  final int maxNumOfRecipients; // 뿌린 인원
+  final Timestamp createTime; // 뿌린 시각
+  final Timestamp expirationTime; // 받기 만료 시각
+  long receivedAmount; // 받기 완료된 금액
+  long numOfReceived; // 받은 인원
+
+  // 생성자 표현식에서 Timestamp 속성은 Date 타입으로 검사된다. (조회 결과는 Timestamp 이다)
+  public CreatedGift(long requestId, String roomId, String token, long totalAmount, int maxNumOfRecipients, Date createTime, Date expirationTime) {
+    this.requestId = requestId;
+    this.roomId = roomId;
+    this.token = token;
+    this.totalAmount = totalAmount;
+    this.maxNumOfRecipients = maxNumOfRecipients;
+    this.createTime = (Timestamp) createTime;
+    this.expirationTime = (Timestamp) expirationTime;
+  }
+}
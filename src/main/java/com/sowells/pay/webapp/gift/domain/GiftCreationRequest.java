@@ -7,9 +7,11 @@ import javax.validation.constraints.Positive;
 
 @Data
 public class GiftCreationRequest {
+  public static final int MAX_NUM_OF_RECIPIENTS = 300; // 뿌리기 한 건에 받을 수 있는 최대 인원 - 대량 생성에도 같이 적용한다.
+
   @Positive(message = "Inputs must be positive.")
   long totalAmount; // 뿌린 금액
-  @Max(300L)
+  @Max(MAX_NUM_OF_RECIPIENTS)
   @Positive(message = "Inputs must be positive.")
   int maxNumOfRecipients; // 뿌릴 인원
 }
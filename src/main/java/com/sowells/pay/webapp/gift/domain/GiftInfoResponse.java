@@ -1,20 +1,155 @@
 package com.sowells.pay.webapp.gift.domain;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import lombok.Data;
+import lombok.Getter;
 
+import java.io.IOException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-@Data
+/**
+ * 조회 API 응답
+ * 받기 완료된 정보는 (받은 사용자 아이디, 받은 금액) 병렬 배열로 들고 있으며, JSON 은 JsonWriter 가 기존과 같은 형태로 직접 쓴다.
+ * { "creationTime": ..., "totalAmount": ..., "receivedAmount": ..., "recevings": [{ "receiverId": ..., "amount": ... }, ...] }
+ * 캐시된 응답이 직렬화 중에 바뀌지 않도록 만든 뒤에는 변경하지 않으며, 배열은 밖으로 내주지 않고 인덱스로만 읽는다.
+ */
+@JsonSerialize(using = GiftInfoResponse.JsonWriter.class)
 public class GiftInfoResponse {
-  Timestamp creationTime; // 뿌린 시각
-  long totalAmount; // 뿌린 금액
-  long receivedAmount; // 받기 완료된 금액
-  List<Receiving> recevings; // 받기 완료된 정보
+  private static final long[] EMPTY = new long[0];
+
+  private final Timestamp creationTime; // 뿌린 시각
+  @Getter private final long totalAmount; // 뿌린 금액
+  @Getter private final long receivedAmount; // 받기 완료된 금액
+  private final long[] receiverIds; // 받은 사용자 아이디
+  private final long[] amounts; // 받은 금액
+
+  /**
+   * 넘긴 배열은 응답이 그대로 사용하므로 호출한 쪽에서 더 이상 변경하지 않아야 한다.
+   */
+  public GiftInfoResponse(Timestamp creationTime, long totalAmount, long receivedAmount, long[] receiverIds, long[] amounts) {
+    if(receiverIds.length != amounts.length) throw new IllegalArgumentException("receiverIds and amounts must have the same length.");
+    this.creationTime = creationTime;
+    this.totalAmount = totalAmount;
+    this.receivedAmount = receivedAmount;
+    this.receiverIds = receiverIds;
+    this.amounts = amounts;
+  }
+
+  public GiftInfoResponse(Timestamp creationTime, long totalAmount) {
+    this(creationTime, totalAmount, 0, EMPTY, EMPTY);
+  }
+
+  /**
+   * JSON 응답을 읽는 쪽(테스트, 클라이언트)을 위한 생성자
+   */
+  @JsonCreator
+  GiftInfoResponse(@JsonProperty("creationTime") Timestamp creationTime, @JsonProperty("totalAmount") long totalAmount,
+                   @JsonProperty("receivedAmount") long receivedAmount, @JsonProperty("recevings") List<Receiving> recevings) {
+    this(creationTime, totalAmount, receivedAmount, new long[recevings == null ? 0 : recevings.size()], new long[recevings == null ? 0 : recevings.size()]);
+    for(int i = 0; i < receiverIds.length; i++) {
+      receiverIds[i] = recevings.get(i).getReceiverId();
+      amounts[i] = recevings.get(i).getAmount();
+    }
+  }
+
+  /**
+   * 받은 내역이 하나 추가된 새 응답
+   */
+  public GiftInfoResponse withReceiving(long receiverId, long amount) {
+    long[] updatedReceiverIds = Arrays.copyOf(receiverIds, receiverIds.length + 1);
+    long[] updatedAmounts = Arrays.copyOf(amounts, amounts.length + 1);
+    updatedReceiverIds[receiverIds.length] = receiverId;
+    updatedAmounts[amounts.length] = amount;
+    return new GiftInfoResponse(creationTime, totalAmount, receivedAmount + amount, updatedReceiverIds, updatedAmounts);
+  }
+
+  /**
+   * 받은 내역에 사용자가 있는지 여부
+   */
+  public boolean hasReceiver(long receiverId) {
+    for(long id : receiverIds) {
+      if(id == receiverId) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Timestamp 는 변경 가능하므로 복사해서 돌려준다.
+   */
+  public Timestamp getCreationTime() {
+    return creationTime == null ? null : (Timestamp) creationTime.clone();
+  }
+
+  public int getNumOfReceivings() {
+    return receiverIds.length;
+  }
+
+  /**
+   * index 번째로 받은 사용자 아이디
+   */
+  public long getReceiverId(int index) {
+    return receiverIds[index];
+  }
+
+  /**
+   * index 번째로 받은 금액
+   */
+  public long getAmount(int index) {
+    return amounts[index];
+  }
+
+  /**
+   * 받기 완료된 정보를 객체 리스트로 만들어 돌려준다. (응답을 쓸 때는 사용하지 않는다.)
+   */
+  public List<Receiving> getRecevings() {
+    List<Receiving> recevings = new ArrayList<>(receiverIds.length);
+    for(int i = 0; i < receiverIds.length; i++) recevings.add(new Receiving(receiverIds[i], amounts[i]));
+    return recevings;
+  }
 
   @Data
-  public class Receiving {
-    long receiverId; // 받은 사용자 아이디
-    long amount; // 받은 금액
+  public static class Receiving {
+    final long receiverId; // 받은 사용자 아이디
+    final long amount; // 받은 금액
+
+    @JsonCreator
+    public Receiving(@JsonProperty("receiverId") long receiverId, @JsonProperty("amount") long amount) {
+      this.receiverId = receiverId;
+      this.amount = amount;
+    }
+  }
+
+  /**
+   * 받기 완료된 정보를 객체로 만들지 않고 배열에서 바로 쓴다. 뿌린 시각은 ObjectMapper 의 날짜 설정을 따른다.
+   */
+  public static class JsonWriter extends StdSerializer<GiftInfoResponse> {
+    public JsonWriter() {
+      super(GiftInfoResponse.class);
+    }
+
+    @Override
+    public void serialize(GiftInfoResponse response, JsonGenerator generator, SerializerProvider provider) throws IOException {
+      generator.writeStartObject();
+      provider.defaultSerializeField("creationTime", response.creationTime, generator);
+      generator.writeNumberField("totalAmount", response.totalAmount);
+      generator.writeNumberField("receivedAmount", response.receivedAmount);
+      generator.writeArrayFieldStart("recevings");
+      for(int i = 0; i < response.receiverIds.length; i++) {
+        generator.writeStartObject();
+        generator.writeNumberField("receiverId", response.receiverIds[i]);
+        generator.writeNumberField("amount", response.amounts[i]);
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
   }
 }
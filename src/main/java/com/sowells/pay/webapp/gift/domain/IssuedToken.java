@@ -0,0 +1,12 @@
+package com.sowells.pay.webapp.gift.domain;
+
+import java.sql.Timestamp;
+
+/**
+ * 대화방에 발급된 토큰 조회용 projection
+ */
+public interface IssuedToken {
+  String getRoomId();
+  String getToken();
+  Timestamp getCreateTime();
+}
@@ -0,0 +1,9 @@
+package com.sowells.pay.webapp.gift.domain;
+
+/**
+ * 받기 완료된 분배건 조회용 projection
+ */
+public interface ReceivedShare {
+  Long getReceiverId(); // 받은 사용자 아이디
+  Long getAmount(); // 받은 금액
+}
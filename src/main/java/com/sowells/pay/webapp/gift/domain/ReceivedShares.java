@@ -0,0 +1,10 @@
+package com.sowells.pay.webapp.gift.domain;
+
+/**
+ * 뿌리기 건별 받기 완료된 분배건 합계 조회용 projection
+ */
+public interface ReceivedShares {
+  Long getRequestId(); // 뿌리기 건 식별값
+  Long getAmount(); // 받기 완료된 금액 합계
+  Long getNumOfShares(); // 받기 완료된 분배건 수
+}
@@ -0,0 +1,11 @@
+package com.sowells.pay.webapp.gift.domain;
+
+/**
+ * 뿌리기 건별 미수령 분배건 합계 조회용 projection
+ */
+public interface UnclaimedShares {
+  Long getRequestId(); // 뿌리기 건 식별값
+  Long getCreatorId(); // 뿌린 사용자 아이디
+  Long getAmount(); // 받아가지 않은 금액 합계
+  Long getNumOfShares(); // 받아가지 않은 분배건 수
+}
@@ -0,0 +1,36 @@
+package com.sowells.pay.webapp.gift.entity;
+
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.sql.Timestamp;
+
+/**
+ * 조회 가능 기간이 지나 정리된 뿌리기 건의 보관 기록
+ * 분배건은 행으로 남기지 않고 한 컬럼에 이어붙여 뿌리기 건 당 한 행만 보관한다.
+ */
+@Data
+@Entity
+@Table(name = "t_gift_archive", indexes = @Index(columnList = "requestId"))
+public class GiftArchive {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "giftArchiveSeq")
+  @SequenceGenerator(name = "giftArchiveSeq", sequenceName = "seq_gift_archive", allocationSize = 500)
+  private Long archiveId;
+  private Long requestId;
+  private String roomId;
+  private String token;
+  private long creatorId;
+  private long totalAmount;
+  private long receivedAmount;
+  private int maxNumOfRecipients;
+  private int numOfReceived;
+  private Timestamp createTime;
+  private Timestamp expirationTime;
+  // 분배건 목록 - "금액:받은 사용자" 를 ',' 로 이어붙인다. 받지 않은 분배건은 "금액:" 으로 남긴다.
+  @Lob
+  private String shares;
+  @CreationTimestamp
+  private Timestamp archiveTime;
+}
@@ -0,0 +1,23 @@
+package com.sowells.pay.webapp.gift.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.sql.Timestamp;
+
+/**
+ * 분배기가 사용자에게 할당했지만 분배건에 반영하지 못한 할당 (ShareDispenser 가 기록한다.)
+ * 이미 지급된 금액이므로 환불 대상에서 제외된다.
+ */
+@Data
+@Entity
+@Table(name = "t_gift_dead_letter", indexes = @Index(columnList = "historyId"))
+public class GiftDeadLetter {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long deadLetterId;
+  private long historyId;
+  private long receiverId;
+  private String reason;
+  private Timestamp createTime;
+}
@@ -11,12 +11,14 @@ import java.sql.Timestamp;
 
 @Entity
 @Data
-@Table(name = "t_gift_history")
+@Table(name = "t_gift_history", uniqueConstraints=@UniqueConstraint(columnNames={"requestId", "receiverId"}))
 public class GiftHistory {
+    // IDENTITY 전략은 insert 마다 키를 조회해야 하므로 JDBC batch가 불가능하다. 시퀀스를 미리 할당받아 batch insert 한다.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private String historyId;
-    private String requestId;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "giftHistorySeq")
+    @SequenceGenerator(name = "giftHistorySeq", sequenceName = "seq_gift_history", allocationSize = 300)
+    private Long historyId;
+    private Long requestId;
     private Long amount;
     private Long receiverId;
     @CreationTimestamp
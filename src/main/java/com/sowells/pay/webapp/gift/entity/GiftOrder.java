@@ -10,11 +10,14 @@ import java.util.List;
 
 @Data
 @Entity
-@Table(name = "t_gift_order", uniqueConstraints=@UniqueConstraint(columnNames={"roomId", "token"}))
+@Table(name = "t_gift_order", uniqueConstraints=@UniqueConstraint(columnNames={"roomId", "token"}),
+  indexes = {@Index(columnList = "createTime"), @Index(columnList = "expirationTime"), @Index(columnList = "creatorId, createTime, requestId")}) // 스키마는 db/migration 에서 관리한다.
 public class GiftOrder {
+  // 분배건과 마찬가지로 시퀀스를 미리 할당받아 여러 건을 batch insert 할 수 있도록 한다.
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
-  private String requestId;
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "giftOrderSeq")
+  @SequenceGenerator(name = "giftOrderSeq", sequenceName = "seq_gift_order", allocationSize = 100)
+  private Long requestId;
   private String roomId;
   private String token;
   private long totalAmount;
@@ -23,8 +26,11 @@ public class GiftOrder {
   @CreationTimestamp
   private Timestamp createTime;
   private Timestamp expirationTime;
-  @OneToMany(fetch = FetchType.EAGER)
+  // 분배건 목록은 API 마다 필요한 부분만 GiftHistoryRepository 로 조회한다.
+  @OneToMany(fetch = FetchType.LAZY)
   @JoinColumn(name = "requestId")
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
   private List<GiftHistory> histories;
 
   public boolean isVisible(long currentTime, long visible_period) {
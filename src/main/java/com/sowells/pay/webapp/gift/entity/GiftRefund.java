@@ -0,0 +1,27 @@
+package com.sowells.pay.webapp.gift.entity;
+
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.sql.Timestamp;
+
+/**
+ * 만료된 뿌리기 건에서 받아가지 않은 금액의 환불 기록 (뿌리기 건 당 한 건)
+ */
+@Data
+@Entity
+@Table(name = "t_gift_refund", uniqueConstraints = @UniqueConstraint(columnNames = {"requestId"}),
+  indexes = @Index(columnList = "creatorId"))
+public class GiftRefund {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "giftRefundSeq")
+  @SequenceGenerator(name = "giftRefundSeq", sequenceName = "seq_gift_refund", allocationSize = 500)
+  private Long refundId;
+  private Long requestId;
+  private long creatorId;
+  private long amount;
+  private int numOfShares;
+  @CreationTimestamp
+  private Timestamp createTime;
+}
@@ -1,7 +1,29 @@
 package com.sowells.pay.webapp.gift.exception;
 
+import com.sowells.pay.webapp.gift.constant.Errors;
+import lombok.Getter;
+
+/**
+ * 예상된 요청 거절 (이미 받음, 소진, 만료 등)
+ * 받기 폭주 시 대부분의 요청이 거절되므로 스택 트레이스를 만들지 않고, 메시지는 실제로 필요할 때 만든다.
+ */
 public class BadRequestException extends RuntimeException {
-  public BadRequestException(String message) {
-    super(message);
+  @Getter
+  private final Errors error;
+  private final String paramsFormat;
+  private final Object[] params;
+  private String message;
+
+  public BadRequestException(Errors error, String paramsFormat, Object... params) {
+    super(null, null, false, false);
+    this.error = error;
+    this.paramsFormat = paramsFormat;
+    this.params = params;
+  }
+
+  @Override
+  public String getMessage() {
+    if(message == null) message = error.getMessage() + String.format(paramsFormat, params);
+    return message;
   }
 }
@@ -1,7 +1,14 @@
 package com.sowells.pay.webapp.gift.exception;
 
+import com.sowells.pay.webapp.gift.constant.Errors;
+import lombok.Getter;
+
 public class InternalException extends RuntimeException {
-  public InternalException(String message) {
-    super(message);
+  @Getter
+  private final Errors error;
+
+  public InternalException(Errors error, String params) {
+    super(error.getMessage() + params);
+    this.error = error;
   }
 }
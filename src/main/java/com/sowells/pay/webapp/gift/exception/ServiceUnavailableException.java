@@ -0,0 +1,18 @@
+package com.sowells.pay.webapp.gift.exception;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import lombok.Getter;
+
+/**
+ * 처리 한도를 넘어 받아들이지 않은 요청
+ * 과부하 상황에서 대량으로 발생하므로 스택 트레이스를 만들지 않는다.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+  @Getter
+  private final Errors error;
+
+  public ServiceUnavailableException(Errors error) {
+    super(error.getMessage(), null, false, false);
+    this.error = error;
+  }
+}
@@ -0,0 +1,8 @@
+package com.sowells.pay.webapp.gift.repository;
+
+import com.sowells.pay.webapp.gift.entity.GiftArchive;
+import org.springframework.data.repository.CrudRepository;
+
+public interface GiftArchiveRepository extends CrudRepository<GiftArchive, Long> {
+  GiftArchive findByRequestId(Long requestId);
+}
@@ -1,7 +1,67 @@
 package com.sowells.pay.webapp.gift.repository;
 
+import com.sowells.pay.webapp.gift.domain.AvailableShare;
+import com.sowells.pay.webapp.gift.domain.ReceivedShare;
+import com.sowells.pay.webapp.gift.domain.ReceivedShares;
 import com.sowells.pay.webapp.gift.entity.GiftHistory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface GiftHistoryRepository extends CrudRepository<GiftHistory, String> {
+import java.util.Collection;
+import java.util.List;
+
+public interface GiftHistoryRepository extends CrudRepository<GiftHistory, Long> {
+  boolean existsByRequestIdAndReceiverId(Long requestId, Long receiverId);
+
+  long countByRequestIdAndReceiverIdIsNull(Long requestId);
+
+  List<ReceivedShare> findByRequestIdAndReceiverIdIsNotNull(Long requestId);
+
+  List<GiftHistory> findByRequestIdInOrderByHistoryId(Collection<Long> requestIds);
+
+  /**
+   * 뿌리기 건별 받기 완료된 금액과 분배건 수 (받기 완료된 분배건이 없는 건은 결과에 없다)
+   */
+  @Query("select h.requestId as requestId, sum(h.amount) as amount, count(h) as numOfShares from GiftHistory h " +
+    "where h.requestId in :requestIds and h.receiverId is not null group by h.requestId")
+  List<ReceivedShares> sumReceivedByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
+
+  @Query("select h.receiverId from GiftHistory h where h.requestId = :requestId and h.receiverId in :receiverIds")
+  List<Long> findReceiverIds(@Param("requestId") Long requestId, @Param("receiverIds") Collection<Long> receiverIds);
+
+  /**
+   * 아직 할당되지 않은 분배건을 할당 순서(historyId)대로 조회한다.
+   */
+  @Query("select h.historyId as historyId, h.amount as amount from GiftHistory h where h.requestId = :requestId and h.receiverId is null order by h.historyId")
+  List<AvailableShare> findAvailableShares(@Param("requestId") Long requestId, Pageable pageable);
+
+  @Query("select h.amount from GiftHistory h where h.requestId = :requestId and h.receiverId = :receiverId")
+  Long findReceivedAmount(@Param("requestId") Long requestId, @Param("receiverId") long receiverId);
+
+  long CLAIM_SALT_MODULUS = 1000003; // 소수 - 분배건 키를 salt 와 곱한 나머지로 섞는다.
+
+  /**
+   * 아직 할당되지 않은 분배건 하나를 단일 UPDATE 문으로 사용자에게 할당한다.
+   * 분배건은 salt 로 섞은 순서에서 첫번째 건을 고르므로, 요청마다 다른 salt 를 쓰면 동시 요청이 한 분배건의 락에 몰리지 않는다.
+   * 동시에 같은 분배건을 노린 요청은 receiver_id 조건에 걸려 0건이 갱신된다.
+   * @param salt 1 이상 CLAIM_SALT_MODULUS 미만의 임의의 값
+   * @return 할당된 건수 (0 또는 1)
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "update t_gift_history set receiver_id = :receiverId, update_time = current_timestamp " +
+    "where history_id = (select history_id from t_gift_history where request_id = :requestId and receiver_id is null " +
+    "order by mod(history_id * :salt, " + CLAIM_SALT_MODULUS + ") limit 1) " +
+    "and receiver_id is null", nativeQuery = true)
+  int claim(@Param("requestId") Long requestId, @Param("receiverId") long receiverId, @Param("salt") long salt);
+
+
+  @Modifying
+  @Transactional
+  @Query("delete from GiftHistory h where h.requestId in :requestIds")
+  int deleteByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
 }
@@ -1,8 +1,43 @@
 package com.sowells.pay.webapp.gift.repository;
 
+import com.sowells.pay.webapp.gift.domain.CreatedGift;
+import com.sowells.pay.webapp.gift.domain.IssuedToken;
 import com.sowells.pay.webapp.gift.entity.GiftOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface GiftOrderRepository extends CrudRepository<GiftOrder, String> {
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+public interface GiftOrderRepository extends CrudRepository<GiftOrder, Long> {
   GiftOrder findByRoomIdAndToken(String roomId, String token);
+
+  boolean existsByRoomIdAndToken(String roomId, String token);
+
+  List<IssuedToken> findTokensByRoomIdOrderByCreateTime(String roomId);
+
+  List<IssuedToken> findTokensByRoomIdInOrderByCreateTime(Collection<String> roomIds);
+
+  List<GiftOrder> findByCreateTimeBefore(Timestamp createTime, Pageable pageable);
+
+  /**
+   * 사용자가 visibleFrom 이후에 뿌린 건을 최근 순으로 (beforeTime, beforeId) 다음부터 조회한다. (keyset pagination)
+   * 받기 완료 금액과 인원은 채우지 않는다. (GiftHistoryRepository.sumReceivedByRequestIdIn)
+   */
+  @Query("select new com.sowells.pay.webapp.gift.domain.CreatedGift(o.requestId, o.roomId, o.token, o.totalAmount, o.maxNumOfRecipients, o.createTime, o.expirationTime) " +
+    "from GiftOrder o where o.creatorId = :creatorId and o.createTime >= :visibleFrom " +
+    "and (o.createTime < :beforeTime or (o.createTime = :beforeTime and o.requestId < :beforeId)) " +
+    "order by o.createTime desc, o.requestId desc")
+  List<CreatedGift> findCreatedGifts(@Param("creatorId") long creatorId, @Param("visibleFrom") Timestamp visibleFrom,
+                                     @Param("beforeTime") Timestamp beforeTime, @Param("beforeId") long beforeId, Pageable pageable);
+
+  @Modifying
+  @Transactional
+  @Query("delete from GiftOrder o where o.requestId in :requestIds")
+  int deleteByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
 }
@@ -0,0 +1,46 @@
+package com.sowells.pay.webapp.gift.repository;
+
+import com.sowells.pay.webapp.gift.domain.UnclaimedShares;
+import com.sowells.pay.webapp.gift.entity.GiftRefund;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+public interface GiftRefundRepository extends CrudRepository<GiftRefund, Long> {
+  GiftRefund findByRequestId(Long requestId);
+
+  @Query("select coalesce(sum(r.amount), 0) from GiftRefund r where r.creatorId = :creatorId")
+  long sumAmountByCreatorId(@Param("creatorId") long creatorId);
+
+  /**
+   * 만료되었지만 아직 환불되지 않은 뿌리기 건의 미수령 금액을 requestId 순서로 after 다음부터 조회한다. (keyset pagination)
+   * creatorId 를 partitions 로 나눈 나머지가 partition 인 건만 조회한다.
+   * 분배기가 할당했지만 반영하지 못해 dead letter 로 옮겨진 분배건은 이미 지급된 것이므로 미수령 금액에서 제외한다.
+   */
+  @Query("select o.requestId as requestId, o.creatorId as creatorId, sum(h.amount) as amount, count(h) as numOfShares " +
+    "from GiftOrder o, GiftHistory h " +
+    "where h.requestId = o.requestId and h.receiverId is null " +
+    "and not exists (select d.deadLetterId from GiftDeadLetter d where d.historyId = h.historyId) " +
+    "and o.expirationTime < :cutoff and o.requestId > :after and mod(o.creatorId, :partitions) = :partition " +
+    "and not exists (select r.refundId from GiftRefund r where r.requestId = o.requestId) " +
+    "group by o.requestId, o.creatorId order by o.requestId")
+  List<UnclaimedShares> findUnclaimedShares(@Param("cutoff") Timestamp cutoff, @Param("after") long after,
+                                            @Param("partitions") int partitions, @Param("partition") int partition, Pageable pageable);
+
+  /**
+   * 뿌리기 건 중 아직 환불되지 않은 건의 미수령 금액을 조회한다. 만료 여부는 보지 않는다. (정리 작업이 보관하기 전에 환불하는 용도)
+   */
+  @Query("select o.requestId as requestId, o.creatorId as creatorId, sum(h.amount) as amount, count(h) as numOfShares " +
+    "from GiftOrder o, GiftHistory h " +
+    "where h.requestId = o.requestId and h.receiverId is null " +
+    "and not exists (select d.deadLetterId from GiftDeadLetter d where d.historyId = h.historyId) " +
+    "and o.requestId in :requestIds " +
+    "and not exists (select r.refundId from GiftRefund r where r.requestId = o.requestId) " +
+    "group by o.requestId, o.creatorId")
+  List<UnclaimedShares> findUnclaimedSharesByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
+}
@@ -0,0 +1,246 @@
+package com.sowells.pay.webapp.gift.service;
+
+import com.sowells.pay.webapp.gift.component.GiftOrderCache;
+import com.sowells.pay.webapp.gift.component.ShareDispenser;
+import com.sowells.pay.webapp.gift.component.TokenAllocator;
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.domain.BulkGiftEntry;
+import com.sowells.pay.webapp.gift.domain.BulkGiftResult;
+import com.sowells.pay.webapp.gift.domain.GiftCreationRequest;
+import com.sowells.pay.webapp.gift.entity.GiftHistory;
+import com.sowells.pay.webapp.gift.entity.GiftOrder;
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import com.sowells.pay.webapp.gift.exception.InternalException;
+import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * 여러 대화방에 같은 사용자의 뿌리기 건을 한번에 생성한다. (프로모션 등 운영 용도)
+ * 요청 목록을 chunk 로 나누어, 요청 스레드가 다음 chunk 를 검증하고 토큰 발급 현황을 읽어오는 동안 쓰기 스레드가 이전 chunk 를 저장한다.
+ * chunk 하나는 한 트랜잭션에서 뿌리기 건과 분배건을 모두 batch insert 하며, 결과는 chunk 가 커밋될 때마다 요청 순서대로 내보낸다.
+ * 다른 노드가 먼저 발급한 토큰과 충돌하여 chunk 가 실패하면, 그 chunk 의 요청은 GiftService.add 로 한 건씩 다시 처리한다.
+ */
+@Service
+@Slf4j
+public class GiftBulkService {
+  final GiftService giftService;
+  final GiftOrderRepository orderRepository;
+  final GiftHistoryRepository historyRepository;
+  final TokenAllocator tokenAllocator;
+  final ShareDispenser shareDispenser;
+  final GiftOrderCache orderCache;
+  final TransactionTemplate chunkTx;
+  final Counter createdOrders;
+  final Timer chunkTimer;
+
+  @Value("${gift.order.expire.duration}")
+  long EXPIRE_DURATION;
+
+  @Value("${gift.order.visible.period}")
+  long VISIBLE_PERIOD_MILLIS;
+
+  @Value("${gift.bulk.max-entries:10000}")
+  int MAX_ENTRIES;
+
+  @Value("${gift.bulk.chunk.size:100}")
+  int CHUNK_SIZE;
+
+  // 요청 하나 당 저장을 기다릴 수 있는 chunk 수 - 이보다 앞서 준비하지 않는다.
+  @Value("${gift.bulk.pipeline.depth:2}")
+  int PIPELINE_DEPTH;
+
+  @Value("${gift.bulk.writer.threads:2}")
+  int WRITER_THREADS;
+
+  private ExecutorService writer;
+
+  public GiftBulkService(GiftService giftService, GiftOrderRepository orderRepository, GiftHistoryRepository historyRepository, TokenAllocator tokenAllocator,
+                         ShareDispenser shareDispenser, GiftOrderCache orderCache, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+    this.giftService = giftService;
+    this.orderRepository = orderRepository;
+    this.historyRepository = historyRepository;
+    this.tokenAllocator = tokenAllocator;
+    this.shareDispenser = shareDispenser;
+    this.orderCache = orderCache;
+    this.chunkTx = new TransactionTemplate(transactionManager);
+    this.chunkTx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    this.createdOrders = Counter.builder("gift.bulk.created").description("Number of gifts created by bulk requests").register(meterRegistry);
+    this.chunkTimer = Timer.builder("gift.bulk.chunk").description("Time taken to persist a chunk of bulk gifts").register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    writer = Executors.newFixedThreadPool(WRITER_THREADS, new CustomizableThreadFactory("gift-bulk-writer-"));
+  }
+
+  @PreDestroy
+  void stop() {
+    writer.shutdown();
+  }
+
+  /**
+   * 대화방별 뿌리기 건을 생성하고, chunk 가 처리될 때마다 그 결과를 요청 순서대로 sink 에 넘긴다.
+   * sink 는 쓰기 스레드에서 호출되며, 같은 요청의 chunk 는 순서대로 처리된다.
+   */
+  public void addAll(long userId, List<BulkGiftEntry> entries, Consumer<List<BulkGiftResult>> sink) {
+    if(entries.size() > MAX_ENTRIES) throw new BadRequestException(Errors.TOO_MANY_ENTRIES, " userId: %d, entries: %d", userId, entries.size());
+
+    long started = System.nanoTime();
+    CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+    Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+    for(int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+      List<PreparedEntry> chunk = prepare(userId, entries, from, Math.min(entries.size(), from + CHUNK_SIZE));
+      written = written.thenRunAsync(() -> sink.accept(write(userId, chunk)), writer);
+      inFlight.addLast(written);
+      if(inFlight.size() > PIPELINE_DEPTH) inFlight.pollFirst().join();
+    }
+    written.join();
+    log.info("Bulk gifts processed. userId: {}, entries: {}, elapsed: {} ms", userId, entries.size(), (System.nanoTime() - started) / 1_000_000);
+  }
+
+  /**
+   * 요청 값을 검증하고, chunk 에 포함된 대화방의 토큰 발급 현황을 한번에 읽어둔다.
+   */
+  private List<PreparedEntry> prepare(long userId, List<BulkGiftEntry> entries, int from, int to) {
+    List<PreparedEntry> chunk = new ArrayList<>(to - from);
+    Set<String> roomIds = new HashSet<>();
+    for(int index = from; index < to; index++) {
+      BulkGiftEntry entry = entries.get(index);
+      PreparedEntry prepared = new PreparedEntry(index, entry);
+      if(entry.getRoomId() == null || entry.getRoomId().isEmpty()) prepared.fail(Errors.ROOM_ID_REQUIRED);
+      else if(entry.getTotalAmount() <= 0 || entry.getMaxNumOfRecipients() <= 0) prepared.fail(Errors.MUST_BE_POSITIVE);
+      else if(entry.getMaxNumOfRecipients() > GiftCreationRequest.MAX_NUM_OF_RECIPIENTS) prepared.fail(Errors.TOO_MANY_RECIPIENTS);
+      else if(entry.getTotalAmount() < entry.getMaxNumOfRecipients()) prepared.fail(Errors.AMOUNT_MUST_GREATER_THAN_RECEIVERS);
+      else roomIds.add(entry.getRoomId());
+      chunk.add(prepared);
+    }
+    tokenAllocator.preload(roomIds);
+    return chunk;
+  }
+
+  private List<BulkGiftResult> write(long userId, List<PreparedEntry> chunk) {
+    Timer.Sample sample = Timer.start();
+    try {
+      chunkTx.executeWithoutResult(status -> persist(userId, chunk));
+    } catch (DataIntegrityViolationException e) {
+      log.info("Token conflict while persisting bulk gifts. Retrying {} gifts one by one.", chunk.size());
+      for(PreparedEntry prepared : chunk) {
+        if(prepared.result == null || prepared.result.getToken() != null) prepared.result = addOne(userId, prepared);
+      }
+    } catch (RuntimeException e) {
+      log.error("Failed to persist bulk gifts. userId: {}, from: {}", userId, chunk.get(0).index, e);
+      for(PreparedEntry prepared : chunk) {
+        if(prepared.result == null || prepared.result.getToken() != null) prepared.fail(Errors.INTERNAL_ERROR);
+      }
+    }
+    sample.stop(chunkTimer);
+
+    List<BulkGiftResult> results = new ArrayList<>(chunk.size());
+    for(PreparedEntry prepared : chunk) {
+      if(prepared.result.getToken() != null) createdOrders.increment();
+      results.add(prepared.result);
+    }
+    return results;
+  }
+
+  /**
+   * chunk 의 뿌리기 건과 분배건을 각각 한번에 저장한다. 커밋되지 않으면 발급된 토큰은 TokenAllocator 에 반납된다.
+   */
+  private void persist(long userId, List<PreparedEntry> chunk) {
+    long currentTime = System.currentTimeMillis();
+    Timestamp expirationTime = new Timestamp(currentTime + EXPIRE_DURATION);
+    List<PreparedEntry> created = new ArrayList<>(chunk.size());
+    List<GiftOrder> orders = new ArrayList<>(chunk.size());
+    for(PreparedEntry prepared : chunk) {
+      if(prepared.result != null) continue;
+      BulkGiftEntry entry = prepared.entry;
+      TokenAllocator.Allocation allocation = tokenAllocator.allocate(entry.getRoomId());
+      if(allocation == null) {
+        prepared.fail(Errors.NO_TOKEN_AVAILABLE);
+        continue;
+      }
+      if(allocation.isRecycled()) giftService.archiveStaleOrder(entry.getRoomId(), allocation.getToken());
+
+      GiftOrder order = new GiftOrder();
+      order.setToken(allocation.getToken());
+      order.setRoomId(entry.getRoomId());
+      order.setTotalAmount(entry.getTotalAmount());
+      order.setMaxNumOfRecipients(entry.getMaxNumOfRecipients());
+      order.setCreatorId(userId);
+      order.setExpirationTime(expirationTime);
+      orders.add(order);
+      prepared.order = order;
+      created.add(prepared);
+    }
+    orderRepository.saveAll(orders); // 시퀀스로 키를 미리 할당받으므로 insert 는 커밋 시점에 batch 로 실행된다.
+
+    List<List<GiftHistory>> sharesPerOrder = new ArrayList<>(orders.size());
+    List<GiftHistory> histories = new ArrayList<>();
+    for(GiftOrder order : orders) {
+      List<GiftHistory> shares = giftService.divide(order);
+      sharesPerOrder.add(shares);
+      histories.addAll(shares);
+    }
+    historyRepository.saveAll(histories); // 분배건 키는 저장할 때 할당되므로 분배기 등록보다 먼저 저장한다.
+
+    for(int i = 0; i < orders.size(); i++) {
+      GiftOrder order = orders.get(i);
+      shareDispenser.register(order.getRequestId(), sharesPerOrder.get(i), expirationTime);
+      orderCache.register(order, currentTime + VISIBLE_PERIOD_MILLIS);
+    }
+
+    for(PreparedEntry prepared : created) {
+      prepared.result = BulkGiftResult.created(prepared.index, prepared.entry.getRoomId(), prepared.order.getToken());
+    }
+  }
+
+  private BulkGiftResult addOne(long userId, PreparedEntry prepared) {
+    BulkGiftEntry entry = prepared.entry;
+    try {
+      return BulkGiftResult.created(prepared.index, entry.getRoomId(), giftService.add(userId, entry.getRoomId(), entry.getTotalAmount(), entry.getMaxNumOfRecipients()));
+    } catch (BadRequestException e) {
+      return BulkGiftResult.failed(prepared.index, entry.getRoomId(), e.getError(), e.getMessage());
+    } catch (InternalException e) {
+      return BulkGiftResult.failed(prepared.index, entry.getRoomId(), e.getError(), e.getMessage());
+    } catch (RuntimeException e) {
+      log.error("Failed to create gift. userId: {}, roomId: {}", userId, entry.getRoomId(), e);
+      return BulkGiftResult.failed(prepared.index, entry.getRoomId(), Errors.INTERNAL_ERROR, Errors.INTERNAL_ERROR.getMessage());
+    }
+  }
+
+  static class PreparedEntry {
+    final int index;
+    final BulkGiftEntry entry;
+    GiftOrder order;
+    BulkGiftResult result; // 검증에 실패했거나 처리가 끝난 경우에만 채워진다.
+
+    PreparedEntry(int index, BulkGiftEntry entry) {
+      this.index = index;
+      this.entry = entry;
+    }
+
+    void fail(Errors error) {
+      result = BulkGiftResult.failed(index, entry.getRoomId(), error, error.getMessage());
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.sowells.pay.webapp.gift.service;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.domain.CreatedGift;
+import com.sowells.pay.webapp.gift.domain.ReceivedShares;
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 사용자가 뿌린 건 목록 조회
+ * 최근 순으로 (뿌린 시각, requestId) keyset pagination 하므로 목록이 길어도 페이지 크기만큼만 메모리에 올리며, 페이지마다 짧은 조회로 끝난다.
+ * 받기 완료 금액/인원은 조회한 페이지의 건만 집계한다. (목록 조회에서 join 으로 집계하면 조회 기간의 모든 건을 집계한 뒤에 페이지를 자른다)
+ * 분배기 사용 시(gift.dispenser.enabled) 받기 완료 금액은 할당 결과가 DB에 반영되는 주기만큼 늦게 보일 수 있다.
+ */
+@Service
+public class GiftListService {
+  private static final Timestamp LATEST = new Timestamp(253402300799000L); // 9999-12-31 23:59:59 - 첫 페이지
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  final GiftOrderRepository orderRepository;
+  final GiftHistoryRepository historyRepository;
+
+  @Value("${gift.order.visible.period}")
+  long VISIBLE_PERIOD_MILLIS;
+
+  @Value("${gift.created.page.size:200}")
+  int PAGE_SIZE;
+
+  @Value("${gift.created.max-items:1000}")
+  int MAX_ITEMS;
+
+  public GiftListService(GiftOrderRepository orderRepository, GiftHistoryRepository historyRepository) {
+    this.orderRepository = orderRepository;
+    this.historyRepository = historyRepository;
+  }
+
+  /**
+   * 조회 가능 기간 안에 뿌린 건을 최근 순으로 cursor 다음부터 최대 limit 건(gift.created.max-items 이하) 조회하여 페이지 단위로 sink 에 넘긴다.
+   * 요청 값 검증은 첫 페이지를 넘기기 전에 끝난다.
+   * @param cursor 이전 조회에서 받은 커서 (첫 조회이면 null)
+   * @return 다음 조회에 사용할 커서 (더 조회할 건이 없으면 null)
+   */
+  public String listCreated(long userId, String cursor, int limit, Consumer<List<CreatedGift>> sink) {
+    if(limit <= 0) throw new BadRequestException(Errors.MUST_BE_POSITIVE, " userId: %d, limit: %d", userId, limit);
+    Timestamp beforeTime = LATEST;
+    long beforeId = Long.MAX_VALUE;
+    if(cursor != null) {
+      int separator = cursor.indexOf('-');
+      try {
+        if(separator < 0) throw new NumberFormatException();
+        beforeTime = toTimestamp(Long.parseLong(cursor.substring(0, separator)));
+        beforeId = Long.parseLong(cursor.substring(separator + 1));
+      } catch (NumberFormatException e) {
+        throw new BadRequestException(Errors.INVALID_CURSOR, " userId: %d, cursor: %s", userId, cursor);
+      }
+    }
+
+    Timestamp visibleFrom = new Timestamp(System.currentTimeMillis() - VISIBLE_PERIOD_MILLIS);
+    int remaining = Math.min(limit, MAX_ITEMS);
+    while(remaining > 0) {
+      int size = Math.min(PAGE_SIZE, remaining);
+      List<CreatedGift> page = orderRepository.findCreatedGifts(userId, visibleFrom, beforeTime, beforeId, PageRequest.of(0, size));
+      if(!page.isEmpty()) sink.accept(withReceived(page));
+      if(page.size() < size) return null;
+
+      CreatedGift last = page.get(page.size() - 1);
+      beforeTime = last.getCreateTime();
+      beforeId = last.getRequestId();
+      remaining -= size;
+    }
+    return toEpochNanos(beforeTime) + "-" + beforeId;
+  }
+
+  private List<CreatedGift> withReceived(List<CreatedGift> page) {
+    Map<Long, CreatedGift> gifts = new HashMap<>();
+    for(CreatedGift gift : page) gifts.put(gift.getRequestId(), gift);
+    for(ReceivedShares received : historyRepository.sumReceivedByRequestIdIn(gifts.keySet())) {
+      CreatedGift gift = gifts.get(received.getRequestId());
+      gift.setReceivedAmount(received.getAmount());
+      gift.setNumOfReceived(received.getNumOfShares());
+    }
+    return page;
+  }
+
+  private static long toEpochNanos(Timestamp timestamp) {
+    return Math.floorDiv(timestamp.getTime(), 1000) * NANOS_PER_SECOND + timestamp.getNanos();
+  }
+
+  private static Timestamp toTimestamp(long epochNanos) {
+    Timestamp timestamp = new Timestamp(Math.floorDiv(epochNanos, NANOS_PER_SECOND) * 1000);
+    timestamp.setNanos((int) Math.floorMod(epochNanos, NANOS_PER_SECOND));
+    return timestamp;
+  }
+}
@@ -0,0 +1,295 @@
+package com.sowells.pay.webapp.gift.service;
+
+import com.sowells.pay.webapp.gift.component.GiftInfoCache;
+import com.sowells.pay.webapp.gift.component.ReceiptBroadcaster;
+import com.sowells.pay.webapp.gift.component.GiftOrderCache;
+import com.sowells.pay.webapp.gift.component.ShareDispenser;
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.domain.AvailableShare;
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 같은 뿌리기 건(대화방, 토큰)에 동시에 들어온 받기 요청을 짧은 시간(gift.receive.coalesce.window) 동안 모아 한번에 처리한다.
+ * 먼저 도착한 요청의 스레드가 모인 요청을 대신 처리하며, 뿌리기 건 정보와 남은 분배건 조회를 한번씩만 하고 도착 순서대로 분배건을 할당한다.
+ * 할당은 조건부 update 를 batch 로 실행하고, 사용자별 결과(받은 금액 또는 거절)는 커밋된 뒤에 각 요청에 돌려준다.
+ * 같은 대화방의 요청을 한 스레드에서 순서대로 처리하는 sharded 모드에서는 모을 요청이 없으므로 사용하지 않는다.
+ */
+@Service
+@Slf4j
+public class GiftReceiveCoalescer {
+  private static final String ASSIGN_SQL = "update t_gift_history set receiver_id = ?, update_time = ? where history_id = ? and receiver_id is null";
+  private static final String TOKEN_PARAMS = " userId: %d, roomId: %s, token: %s";
+
+  final GiftService giftService;
+  final GiftHistoryRepository historyRepository;
+  final ShareDispenser shareDispenser;
+  final GiftInfoCache infoCache;
+  final ReceiptBroadcaster receiptBroadcaster;
+  final JdbcTemplate jdbcTemplate;
+  final TransactionTemplate claimTx;
+  final DistributionSummary batchSizes;
+
+  // 요청을 모으는 시간 (마이크로초, 0 이면 모으지 않고 GiftService.receive 로 바로 처리한다)
+  @Value("${gift.receive.coalesce.window:0}")
+  long WINDOW_MICROS;
+
+  @Value("${gift.receive.coalesce.max-batch:100}")
+  int MAX_BATCH;
+
+  @Value("${gift.api.execution-mode:blocking}")
+  String EXECUTION_MODE;
+
+  private boolean enabled;
+  private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+  public GiftReceiveCoalescer(GiftService giftService, GiftHistoryRepository historyRepository, ShareDispenser shareDispenser,
+                              GiftInfoCache infoCache, ReceiptBroadcaster receiptBroadcaster, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+    this.giftService = giftService;
+    this.historyRepository = historyRepository;
+    this.shareDispenser = shareDispenser;
+    this.infoCache = infoCache;
+    this.receiptBroadcaster = receiptBroadcaster;
+    this.jdbcTemplate = jdbcTemplate;
+    this.claimTx = new TransactionTemplate(transactionManager);
+    this.claimTx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    this.batchSizes = DistributionSummary.builder("gift.receive.batch.size")
+      .description("Number of receive requests handled together").maximumExpectedValue(100.0).register(meterRegistry);
+  }
+
+  @PostConstruct
+  void init() {
+    enabled = WINDOW_MICROS > 0 && !GiftService.EXECUTION_MODE_SHARDED.equals(EXECUTION_MODE);
+    if(WINDOW_MICROS > 0 && !enabled) log.info("Receive coalescing is disabled in sharded execution mode.");
+  }
+
+  /**
+   * GiftService.receive 와 같은 결과를 돌려준다. 같은 뿌리기 건에 대한 요청이 모이는 동안 최대 window 만큼 지연될 수 있다.
+   */
+  public long receive(long userId, String roomId, String token) {
+    if(!enabled) return giftService.receive(userId, roomId, token);
+
+    String key = roomId + ':' + token; // token 에는 ':' 가 포함되지 않는다.
+    Receiver receiver = new Receiver(userId);
+    Batch created = new Batch();
+    Batch batch;
+    while(true) {
+      Batch existing = batches.putIfAbsent(key, created);
+      batch = existing == null ? created : existing;
+      if(batch.add(receiver)) break;
+      batches.remove(key, batch); // 처리가 시작된 batch 에는 더 넣지 않는다.
+    }
+
+    if(batch == created) {
+      List<Receiver> receivers = batch.await(TimeUnit.MICROSECONDS.toNanos(WINDOW_MICROS));
+      batches.remove(key, batch);
+      process(roomId, token, receivers);
+    }
+    return receiver.await();
+  }
+
+  private void process(String roomId, String token, List<Receiver> receivers) {
+    batchSizes.record(receivers.size());
+    try {
+      receiveAll(roomId, token, receivers);
+    } catch (RuntimeException e) {
+      log.error("Failed to process {} receive requests. roomId: {}, token: {}", receivers.size(), roomId, token, e);
+      for(Receiver receiver : receivers) receiver.reject(e);
+    }
+  }
+
+  /**
+   * 뿌리기 건 정보를 한번 찾아 요청별로 검증하고, 남은 분배건을 도착 순서대로 할당한다.
+   */
+  private void receiveAll(String roomId, String token, List<Receiver> receivers) {
+    long currentTime = System.currentTimeMillis();
+    GiftOrderCache.Header order = giftService.findHeader(roomId, token);
+    Set<Long> userIds = new HashSet<>();
+    List<Receiver> claiming = new ArrayList<>(receivers.size());
+    for(Receiver receiver : receivers) {
+      long userId = receiver.userId;
+      if(order == null) receiver.reject(Errors.INVALID_TOKEN, roomId, token); // 뿌리기가 호출된 대화방과 동일한 대화방에 속한 사용자만이 받을 수 있다.
+      else if(order.getCreatorId() == userId) receiver.reject(Errors.NOT_ALLOWED_TO_CREATOR, roomId, token); // 자신이 뿌리기한 건은 자신이 받을 수 없다
+      else if(order.hasExpired(currentTime)) receiver.reject(Errors.EXPIRED, roomId, token); // 10분이 지난 요청에 대해서는 받기 실패 응답이 내려져야 한다.
+      else if(!userIds.add(userId)) receiver.reject(Errors.ALREADY_RECEIVED, roomId, token); // 같은 사용자의 동시 요청은 먼저 도착한 요청만 처리한다.
+      else {
+        // 메모리에 분배건이 올라와 있는 경우 DB 조회 없이 할당한다.
+        ShareDispenser.Claim claim = shareDispenser.claim(order.getRequestId(), userId);
+        if(claim == null) claiming.add(receiver);
+        else if(claim.isAccepted()) accept(receiver, claim.getAmount(), roomId, token);
+        else receiver.reject(claim.getError(), roomId, token);
+      }
+    }
+    if(!claiming.isEmpty()) claimAll(order, claiming, roomId, token);
+  }
+
+  /**
+   * 이미 받은 사용자와 남은 분배건을 한번씩 조회하여 도착 순서대로 짝지은 뒤, 조건부 update 를 batch 로 실행한다.
+   * 다른 노드나 모이지 않은 요청이 먼저 가져간 분배건에 짝지어진 요청은 GiftService.receive 로 다시 처리한다.
+   * 같은 사용자가 다른 batch 에서 동시에 받아 유니크 제약에 걸리면, 모든 요청을 한 건씩 다시 처리한다.
+   */
+  private void claimAll(GiftOrderCache.Header order, List<Receiver> receivers, String roomId, String token) {
+    List<Receiver> retries = new ArrayList<>();
+    Map<Receiver, Long> accepted = new HashMap<>();
+    try {
+      claimTx.executeWithoutResult(status -> {
+        List<Long> userIds = new ArrayList<>(receivers.size());
+        for(Receiver receiver : receivers) userIds.add(receiver.userId);
+        Set<Long> received = new HashSet<>(historyRepository.findReceiverIds(order.getRequestId(), userIds));
+
+        List<Receiver> claiming = new ArrayList<>(receivers.size());
+        for(Receiver receiver : receivers) {
+          if(received.contains(receiver.userId)) receiver.reject(Errors.ALREADY_RECEIVED, roomId, token); // 뿌리기 당 한 사용자는 한번만 받을 수 있다.
+          else claiming.add(receiver);
+        }
+        if(claiming.isEmpty()) return;
+
+        List<AvailableShare> shares = historyRepository.findAvailableShares(order.getRequestId(), PageRequest.of(0, claiming.size()));
+        List<Receiver> assigned = claiming.subList(0, shares.size());
+        for(Receiver receiver : claiming.subList(shares.size(), claiming.size())) {
+          receiver.reject(Errors.ALREADY_FULLY_CONSUMED, roomId, token); // 이미 선착순 인원이 다 받아간 경우 실패 응답이 내려져야 한다.
+        }
+        if(assigned.isEmpty()) return;
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int[] updated = jdbcTemplate.batchUpdate(ASSIGN_SQL, new BatchPreparedStatementSetter() {
+          @Override
+          public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setLong(1, assigned.get(i).userId);
+            ps.setTimestamp(2, now);
+            ps.setLong(3, shares.get(i).getHistoryId());
+          }
+
+          @Override
+          public int getBatchSize() {
+            return assigned.size();
+          }
+        });
+        for(int i = 0; i < assigned.size(); i++) {
+          if(updated[i] > 0) accepted.put(assigned.get(i), shares.get(i).getAmount());
+          else retries.add(assigned.get(i));
+        }
+      });
+    } catch (DataIntegrityViolationException e) {
+      log.info("Receiver conflict while claiming shares of request {}. Retrying {} requests one by one.", order.getRequestId(), receivers.size());
+      accepted.clear();
+      retries.clear();
+      for(Receiver receiver : receivers) {
+        if(!receiver.isDone()) retries.add(receiver);
+      }
+    }
+
+    accepted.forEach((receiver, amount) -> accept(receiver, amount, roomId, token)); // 커밋된 뒤에 결과를 돌려준다.
+    for(Receiver receiver : retries) {
+      try {
+        receiver.accept(giftService.receive(receiver.userId, roomId, token));
+      } catch (RuntimeException e) {
+        receiver.reject(e);
+      }
+    }
+  }
+
+  private void accept(Receiver receiver, long amount, String roomId, String token) {
+    infoCache.addReceiving(roomId, token, receiver.userId, amount); // 조회 API 캐시에 받은 내역을 반영한다.
+    receiptBroadcaster.publish(roomId, token, receiver.userId, amount); // 받기 내역 구독자에게 보낸다.
+    receiver.accept(amount);
+  }
+
+  /**
+   * 같은 뿌리기 건에 대해 모인 요청 목록. 처음 요청을 넣은 스레드가 기다렸다가 닫고 처리한다.
+   */
+  class Batch {
+    final Thread leader = Thread.currentThread();
+    final List<Receiver> receivers = new ArrayList<>();
+    boolean closed;
+
+    synchronized boolean add(Receiver receiver) {
+      if(closed) return false;
+      receivers.add(receiver);
+      if(receivers.size() >= MAX_BATCH) {
+        closed = true;
+        LockSupport.unpark(leader);
+      }
+      return true;
+    }
+
+    /**
+     * window 가 지나거나 batch 가 가득 찰 때까지 기다린 뒤 닫는다.
+     */
+    List<Receiver> await(long windowNanos) {
+      long deadline = System.nanoTime() + windowNanos;
+      long remaining;
+      while(!isClosed() && (remaining = deadline - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(this, remaining);
+      }
+      synchronized (this) {
+        closed = true;
+        return receivers;
+      }
+    }
+
+    synchronized boolean isClosed() {
+      return closed;
+    }
+  }
+
+  static class Receiver {
+    final long userId;
+    final CompletableFuture<Long> result = new CompletableFuture<>();
+
+    Receiver(long userId) {
+      this.userId = userId;
+    }
+
+    void accept(long amount) {
+      result.complete(amount);
+    }
+
+    void reject(Errors error, String roomId, String token) {
+      reject(new BadRequestException(error, TOKEN_PARAMS, userId, roomId, token));
+    }
+
+    void reject(RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+
+    boolean isDone() {
+      return result.isDone();
+    }
+
+    /**
+     * 처리 결과를 기다린다. 거절된 경우 거절 예외를 그대로 던진다.
+     */
+    long await() {
+      try {
+        return result.join();
+      } catch (CompletionException e) {
+        if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+        throw e;
+      }
+    }
+  }
+}
@@ -1,29 +1,41 @@
 package com.sowells.pay.webapp.gift.service;
 
-import com.sowells.pay.webapp.gift.component.TokenFactory;
+import com.sowells.pay.webapp.gift.component.GiftInfoCache;
+import com.sowells.pay.webapp.gift.component.GiftOrderCache;
+import com.sowells.pay.webapp.gift.component.GiftSweeper;
+import com.sowells.pay.webapp.gift.component.MoneyDivider;
+import com.sowells.pay.webapp.gift.component.ReceiptBroadcaster;
+import com.sowells.pay.webapp.gift.component.ShareDispenser;
+import com.sowells.pay.webapp.gift.component.ShareSequence;
+import com.sowells.pay.webapp.gift.component.TokenAllocator;
 import com.sowells.pay.webapp.gift.constant.Errors;
 import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import com.sowells.pay.webapp.gift.domain.ReceivedShare;
 import com.sowells.pay.webapp.gift.entity.GiftHistory;
 import com.sowells.pay.webapp.gift.entity.GiftOrder;
 import com.sowells.pay.webapp.gift.exception.BadRequestException;
 import com.sowells.pay.webapp.gift.exception.InternalException;
+import com.sowells.pay.webapp.gift.exception.ServiceUnavailableException;
 import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
 import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
-import lombok.Getter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.RandomUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.validation.constraints.Positive;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
 
 @Service
 @Slf4j
@@ -31,7 +43,15 @@ public class GiftService {
 
   final GiftOrderRepository orderRepository;
   final GiftHistoryRepository historyRepository;
-  final TokenFactory tokenFactory;
+  final TokenAllocator tokenAllocator;
+  final ShareDispenser shareDispenser;
+  final GiftInfoCache infoCache;
+  final GiftOrderCache orderCache;
+  final ReceiptBroadcaster receiptBroadcaster;
+  final GiftSweeper sweeper;
+  final MoneyDivider moneyDivider;
+  final DistributionSummary tokenAttempts;
+  final DistributionSummary claimAttempts;
 
   @Value("${gift.order.expire.duration}")
   long EXPIRE_DURATION;
@@ -39,11 +59,45 @@ public class GiftService {
   @Value("${gift.order.visible.period}")
   private long VISIBLE_PERIOD_MILLIS;
 
+  static final String CREATION_MODE_OPTIMISTIC = "optimistic";
 
-  public GiftService(GiftOrderRepository orderRepository, GiftHistoryRepository historyRepository, TokenFactory tokenFactory) {
+  // 거절 메시지의 요청 정보 형식 (메시지가 실제로 필요할 때만 포맷한다)
+  private static final String ADD_PARAMS = " userId: %d, roomId: %s";
+  private static final String TOKEN_PARAMS = " userId: %d, roomId: %s, token: %s";
+  private static final String CLAIM_PARAMS = " userId: %d, requestId: %d";
+
+  // 분배건 할당 경합 시 재시도 횟수와 재시도 전 대기 시간 (시도할 때마다 두 배까지 늘어나는 범위의 임의 시간)
+  static final int MAX_CLAIM_ATTEMPTS = 10;
+  private static final long CLAIM_BACKOFF_NANOS = 50_000;
+
+  @Value("${gift.order.creation.mode:serializable}")
+  String CREATION_MODE;
+
+  static final String EXECUTION_MODE_SHARDED = "sharded";
+
+  final TransactionTemplate serializableTx;
+  final TransactionTemplate optimisticTx;
+
+  public GiftService(GiftOrderRepository orderRepository, GiftHistoryRepository historyRepository, TokenAllocator tokenAllocator, ShareDispenser shareDispenser,
+                     GiftInfoCache infoCache, GiftOrderCache orderCache, ReceiptBroadcaster receiptBroadcaster, GiftSweeper sweeper, MoneyDivider moneyDivider, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
     this.orderRepository = orderRepository;
     this.historyRepository = historyRepository;
-    this.tokenFactory = tokenFactory;
+    this.tokenAllocator = tokenAllocator;
+    this.shareDispenser = shareDispenser;
+    this.infoCache = infoCache;
+    this.orderCache = orderCache;
+    this.receiptBroadcaster = receiptBroadcaster;
+    this.sweeper = sweeper;
+    this.moneyDivider = moneyDivider;
+    this.tokenAttempts = DistributionSummary.builder("gift.token.attempts")
+      .description("Number of tokens tried to create a gift").maximumExpectedValue(10.0).register(meterRegistry);
+    this.claimAttempts = DistributionSummary.builder("gift.receive.claim.attempts")
+      .description("Number of conditional updates run to claim a share").maximumExpectedValue((double) MAX_CLAIM_ATTEMPTS).register(meterRegistry);
+
+    this.serializableTx = new TransactionTemplate(transactionManager);
+    this.serializableTx.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+    this.optimisticTx = new TransactionTemplate(transactionManager);
+    this.optimisticTx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
   }
 
   /**
@@ -58,17 +112,62 @@ public class GiftService {
    * @param maxNumOfReceivers 뿌릴 인원
    * @return 뿌리기 요청건에 발급된 고유 token (RoomId내에서 고유하다)
    */
-  @Transactional(isolation = Isolation.SERIALIZABLE) // 가용 토큰 조회 ~ 데이터 저장 사이의 Phantom Read 방지
   public String add(@Positive long userId, @NonNull String roomId, @Positive long totalAmount, @Positive int maxNumOfReceivers) {
-    String params = String.format(" userId: %d, roomId: %s", userId, roomId);
-    if(totalAmount <= 0 || maxNumOfReceivers <= 0) throw new BadRequestException(Errors.MUST_BE_POSITIVE.getMessage()+params); // 금액과 인원 모두 양수여야 한다.
-    if(totalAmount < maxNumOfReceivers) throw new BadRequestException(Errors.AMOUNT_MUST_GREATER_THAN_RECEIVERS.getMessage()+params); // 인원 수 보다 많은 금액을 입력해야 한다.
+    validateAdd(userId, roomId, totalAmount, maxNumOfReceivers);
+    if(CREATION_MODE_OPTIMISTIC.equals(CREATION_MODE)) return addOptimistically(userId, roomId, totalAmount, maxNumOfReceivers);
+
+    // 가용 토큰 조회 ~ 데이터 저장 사이의 Phantom Read 방지
+    tokenAttempts.record(1);
+    return serializableTx.execute(status -> createOrder(userId, roomId, totalAmount, maxNumOfReceivers, allocateToken(roomId)));
+  }
+
+  /**
+   * 같은 대화방의 요청이 한 스레드에서 순서대로 처리될 때 (RoomShardExecutor) 의 생성.
+   * 토큰 발급 ~ 저장 사이에 같은 대화방의 다른 요청이 끼어들지 않으므로 SERIALIZABLE 없이 저장하고, 다른 노드가 발급한 토큰과 충돌하면 재시도한다.
+   * 대화방 단위로 직렬화되지 않은 호출자는 add 를 사용한다.
+   */
+  public String addInRoomShard(@Positive long userId, @NonNull String roomId, @Positive long totalAmount, @Positive int maxNumOfReceivers) {
+    validateAdd(userId, roomId, totalAmount, maxNumOfReceivers);
+    return addOptimistically(userId, roomId, totalAmount, maxNumOfReceivers);
+  }
+
+  private static void validateAdd(long userId, String roomId, long totalAmount, int maxNumOfReceivers) {
+    if(totalAmount <= 0 || maxNumOfReceivers <= 0) throw new BadRequestException(Errors.MUST_BE_POSITIVE, ADD_PARAMS, userId, roomId); // 금액과 인원 모두 양수여야 한다.
+    if(totalAmount < maxNumOfReceivers) throw new BadRequestException(Errors.AMOUNT_MUST_GREATER_THAN_RECEIVERS, ADD_PARAMS, userId, roomId); // 인원 수 보다 많은 금액을 입력해야 한다.
+  }
+
+  /**
+   * 토큰 중복 확인 없이 바로 저장하고, (roomId, token) 유니크 제약에 걸리면 새 토큰으로 재시도한다.
+   * 다른 노드가 먼저 발급한 토큰과 충돌한 경우에만 재시도가 발생하므로 READ_COMMITTED 로 충분하다.
+   */
+  private String addOptimistically(long userId, String roomId, long totalAmount, int maxNumOfReceivers) {
+    final int MAX_RETRY = 10;
+    for(int retry = 0; retry < MAX_RETRY; retry++) {
+      // 트랜잭션 밖에서 발급하여, 충돌한 토큰은 반납하지 않고 사용중으로 남겨둔다.
+      TokenAllocator.Allocation allocation = allocateToken(roomId);
+      try {
+        String token = optimisticTx.execute(status -> createOrder(userId, roomId, totalAmount, maxNumOfReceivers, allocation));
+        tokenAttempts.record(retry + 1);
+        return token;
+      } catch (DataIntegrityViolationException e) {
+        log.debug("Token {} of room {} has already been taken. Retrying with another token.", allocation.getToken(), roomId);
+      } catch (RuntimeException e) {
+        tokenAllocator.release(roomId, allocation.getToken());
+        throw e;
+      }
+    }
 
+    tokenAttempts.record(MAX_RETRY);
+    throw new InternalException(Errors.NO_TOKEN_AVAILABLE, String.format(" roomId: %s, retryCount: %d", roomId, MAX_RETRY));
+  }
 
-    Timestamp expirationTime = new Timestamp(System.currentTimeMillis()+EXPIRE_DURATION);
-    String token = createToken(roomId);
+  private String createOrder(long userId, String roomId, long totalAmount, int maxNumOfReceivers, TokenAllocator.Allocation allocation) {
+    if(allocation.isRecycled()) archiveStaleOrder(roomId, allocation.getToken());
+
+    long currentTime = System.currentTimeMillis();
+    Timestamp expirationTime = new Timestamp(currentTime+EXPIRE_DURATION);
     GiftOrder order = new GiftOrder();
-    order.setToken(token);
+    order.setToken(allocation.getToken());
     order.setRoomId(roomId);
     order.setTotalAmount(totalAmount);
     order.setMaxNumOfRecipients(maxNumOfReceivers);
@@ -76,30 +175,45 @@ public class GiftService {
     order.setExpirationTime(expirationTime);
     orderRepository.save(order);
 
-    // 금액 분배하기
-    MoneyDivider divider = new MoneyDivider(totalAmount, maxNumOfReceivers);
-    for(int i = 0; i < maxNumOfReceivers; i++) {
-      GiftHistory history = new GiftHistory();
-      history.setRequestId(order.getRequestId());
-      history.setAmount(divider.next());
-      historyRepository.save(history);
-    }
+    // 분배건은 한번에 저장하여 JDBC batch insert 되도록 한다.
+    List<GiftHistory> histories = divide(order);
+    historyRepository.saveAll(histories);
+    shareDispenser.register(order.getRequestId(), histories, expirationTime);
+    orderCache.register(order, currentTime + VISIBLE_PERIOD_MILLIS);
 
     return order.getToken();
   }
 
-  protected String createToken(String roomId) {
-    final int MAX_RETRY = 10;
-    int retry = 0;
-    while(retry++ < MAX_RETRY) {
-      String token = tokenFactory.create();
-      GiftOrder duplicateTokenReq = orderRepository.findByRoomIdAndToken(roomId, token);
-      if(duplicateTokenReq == null) {
-        return token;
-      }
+  /**
+   * 뿌리기 건의 금액을 인원 수에 맞게 분배한 분배건 목록을 만든다. (저장은 호출하는 쪽에서 한다.)
+   */
+  List<GiftHistory> divide(GiftOrder order) {
+    ShareSequence shares = moneyDivider.divide(order.getTotalAmount(), order.getMaxNumOfRecipients());
+    List<GiftHistory> histories = new ArrayList<>(order.getMaxNumOfRecipients());
+    while(shares.hasNext()) {
+      GiftHistory history = new GiftHistory();
+      history.setRequestId(order.getRequestId());
+      history.setAmount(shares.next());
+      histories.add(history);
     }
+    return histories;
+  }
 
-    throw new InternalException(String.format(Errors.NO_TOKEN_AVAILABLE.getMessage()+" roomId: %s, retryCount: %d",roomId, MAX_RETRY));
+  /**
+   * 대화방에서 사용되지 않은 토큰을 발급한다.
+   */
+  protected TokenAllocator.Allocation allocateToken(String roomId) {
+    TokenAllocator.Allocation allocation = tokenAllocator.allocate(roomId);
+    if(allocation == null) throw new InternalException(Errors.NO_TOKEN_AVAILABLE, String.format(" roomId: %s", roomId));
+    return allocation;
+  }
+
+  /**
+   * 조회 가능 기간이 지나 반납된 토큰을 재발급하는 경우, 같은 토큰의 이전 뿌리기 건이 아직 정리되지 않았으면 보관 테이블로 옮긴다.
+   */
+  void archiveStaleOrder(String roomId, String token) {
+    int archived = sweeper.archiveToken(roomId, token);
+    if(archived > 0) log.debug("Archived stale order of recycled token {} in room {}.", token, roomId);
   }
 
   /**
@@ -118,24 +232,68 @@ public class GiftService {
   @Transactional
   public long receive(@Positive long userId, @NonNull String roomId, @NonNull String token) {
     long currentTime = System.currentTimeMillis();
-    GiftOrder order = orderRepository.findByRoomIdAndToken(roomId, token);
-    String params = String.format(" userId: %d, roomId: %s, token: %s", userId, roomId, token);
-    if(order == null) throw new BadRequestException(Errors.INVALID_TOKEN.getMessage()+params); // 뿌리기가 호출된 대화방과 동일한 대화방에 속한 사용자만이 받을 수 있다.
-    if(order.getCreatorId() == userId) throw new BadRequestException(Errors.NOT_ALLOWED_TO_CREATOR.getMessage()+params); // 자신이 뿌리기한 건은 자신이 받을 수 없다
-    if(order.hasExpired(currentTime)) throw new BadRequestException(Errors.EXPIRED.getMessage()+params); // 뿌린 건은 10분만 유효하고, 10분이 지난 요청에 대해서는 받기 실패 응답이 내려져야 한다.
+    GiftOrderCache.Header order = findHeader(roomId, token);
+    if(order == null) throw new BadRequestException(Errors.INVALID_TOKEN, TOKEN_PARAMS, userId, roomId, token); // 뿌리기가 호출된 대화방과 동일한 대화방에 속한 사용자만이 받을 수 있다.
+    if(order.getCreatorId() == userId) throw new BadRequestException(Errors.NOT_ALLOWED_TO_CREATOR, TOKEN_PARAMS, userId, roomId, token); // 자신이 뿌리기한 건은 자신이 받을 수 없다
+    if(order.hasExpired(currentTime)) throw new BadRequestException(Errors.EXPIRED, TOKEN_PARAMS, userId, roomId, token); // 뿌린 건은 10분만 유효하고, 10분이 지난 요청에 대해서는 받기 실패 응답이 내려져야 한다.
 
-    List<GiftHistory> histories = order.getHistories();
-    boolean isAlreadyReceivedUser = histories.stream().filter(h ->h.getReceiverId() != null && userId == h.getReceiverId()).findAny().isPresent();
-    if(isAlreadyReceivedUser) throw new BadRequestException(Errors.ALREADY_RECEIVED.getMessage()+params); // 뿌리기 당 한 사용자는 한번만 받을 수 있다.
+    // 메모리에 분배건이 올라와 있는 경우 목록 탐색 없이 할당한다.
+    ShareDispenser.Claim claim = shareDispenser.claim(order.getRequestId(), userId);
+    long amount;
+    if(claim != null) {
+      if(!claim.isAccepted()) throw new BadRequestException(claim.getError(), TOKEN_PARAMS, userId, roomId, token);
+      amount = claim.getAmount();
+    } else {
+      if(historyRepository.existsByRequestIdAndReceiverId(order.getRequestId(), userId)) throw new BadRequestException(Errors.ALREADY_RECEIVED, TOKEN_PARAMS, userId, roomId, token); // 뿌리기 당 한 사용자는 한번만 받을 수 있다.
+      if(!claimShare(order.getRequestId(), userId)) throw new BadRequestException(Errors.ALREADY_FULLY_CONSUMED, TOKEN_PARAMS, userId, roomId, token); // 이미 선착순 인원이 다 받아간 경우 실패 응답이 내려져야 한다.
+      amount = historyRepository.findReceivedAmount(order.getRequestId(), userId);
+    }
 
-    Optional<GiftHistory> optionalGiftHistory = histories.stream().filter(h -> h.getReceiverId() == null).findAny();
-    if(!optionalGiftHistory.isPresent()) throw new BadRequestException(Errors.ALREADY_FULLY_CONSUMED.getMessage()+params); // 이미 선착순 인원이 다 받아간 경우 실패 응답이 내려져야 한다.
-    GiftHistory unreceived = histories.stream().filter(h -> h.getReceiverId() == null).findAny().get();
+    infoCache.addReceiving(roomId, token, userId, amount); // 조회 API 캐시에 받은 내역을 반영한다.
+    receiptBroadcaster.publish(roomId, token, userId, amount); // 받기 내역 구독자에게 보낸다.
+    return amount;
+  }
 
-    unreceived.setReceiverId(userId);
-    historyRepository.save(unreceived);
+  /**
+   * 받기 요청 검증에 필요한 뿌리기 건 정보를 캐시에서 찾고, 없으면 DB에서 읽어 캐시한다.
+   * 최근에 DB에서 찾지 못한 토큰은 다시 조회하지 않는다.
+   * @return 뿌리기 건이 없으면 null
+   */
+  GiftOrderCache.Header findHeader(String roomId, String token) {
+    GiftOrderCache.Header header = orderCache.get(roomId, token);
+    if(header != null || orderCache.isUnknown(roomId, token)) return header;
 
-    return unreceived.getAmount();
+    GiftOrder order = orderRepository.findByRoomIdAndToken(roomId, token);
+    if(order == null) {
+      orderCache.putUnknown(roomId, token);
+      return null;
+    }
+    return orderCache.put(order, order.getCreateTime().getTime() + VISIBLE_PERIOD_MILLIS);
+  }
+
+  /**
+   * 남은 분배건 하나를 사용자에게 할당한다.
+   * 요청마다 남은 분배건 중 임의의 건을 골라, 동시 요청이 같은 분배건의 락을 두고 줄서지 않도록 한다.
+   * 다른 요청과 같은 분배건을 두고 경합하여 할당에 실패한 경우, 남은 분배건이 있는 동안 잠시 기다렸다가 재시도한다.
+   * 같은 사용자의 동시 요청은 (requestId, receiverId) 유니크 제약에 의해 한 건만 성공한다.
+   * @return 할당 성공 여부 (남은 분배건이 없으면 false)
+   */
+  private boolean claimShare(Long requestId, long userId) {
+    int attempts = 0;
+    try {
+      while(attempts < MAX_CLAIM_ATTEMPTS) {
+        attempts++;
+        long salt = ThreadLocalRandom.current().nextLong(1, GiftHistoryRepository.CLAIM_SALT_MODULUS);
+        if(historyRepository.claim(requestId, userId, salt) > 0) return true;
+        if(historyRepository.countByRequestIdAndReceiverIdIsNull(requestId) == 0) return false;
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(CLAIM_BACKOFF_NANOS << Math.min(attempts, 5)));
+      }
+      throw new ServiceUnavailableException(Errors.SERVER_BUSY); // 경합이 심해 할당하지 못한 경우 잠시 후 다시 요청하도록 한다.
+    } catch (DataIntegrityViolationException e) {
+      throw new BadRequestException(Errors.ALREADY_RECEIVED, CLAIM_PARAMS, userId, requestId);
+    } finally {
+      claimAttempts.record(attempts);
+    }
   }
 
   /**
@@ -151,71 +309,63 @@ public class GiftService {
    */
   public GiftInfoResponse get(@Positive long userId, @NonNull String roomId, @NonNull String token) {
     long currentTime = System.currentTimeMillis();
+    // 캐시에 없으면 DB에서 읽어 캐시한다. 읽는 동안 커밋된 받기는 읽기가 끝난 뒤 캐시된 응답에 반영된다.
+    GiftInfoCache.Entry cached = infoCache.get(roomId, token, () -> load(userId, roomId, token));
+    if(cached.getCreatorId() != userId) throw new BadRequestException(Errors.ONLY_ALLOWED_TO_CREATOR, TOKEN_PARAMS, userId, roomId, token); // 뿌린 사람 자신만 조회할 수 있다.
+    if(cached.getVisibleUntil() < currentTime) throw new BadRequestException(Errors.QUERY_PERIOD_PASSED, TOKEN_PARAMS, userId, roomId, token); // 뿌린 건에 대한 조회는 7일 동안 할 수 있다.
+    return cached.getResponse();
+  }
+
+  /**
+   * 조회 API 응답을 DB에서 읽는다. 조회 가능 여부는 호출자가 캐시 항목으로 확인한다.
+   */
+  private GiftInfoCache.Entry load(long userId, String roomId, String token) {
     GiftOrder order = orderRepository.findByRoomIdAndToken(roomId, token);
-    String params = String.format(" userId: %d, roomId: %s, token: %s", userId, roomId, token);
-    if(order == null) throw new BadRequestException(Errors.INVALID_TOKEN.getMessage()+params); // 유효하지 않은 토큰은 실패 응답이 내려간다.
-    if(order.getCreatorId() != userId) throw new BadRequestException(Errors.ONLY_ALLOWED_TO_CREATOR.getMessage()+params); // 뿌린 사람 자신만 조회할 수 있다.
-    if(!order.isVisible(currentTime, VISIBLE_PERIOD_MILLIS)) throw new BadRequestException(Errors.QUERY_PERIOD_PASSED.getMessage()+params); // 뿌린 건에 대한 조회는 7일 동안 할 수 있다.
-
-    GiftInfoResponse response = new GiftInfoResponse();
-    response.setCreationTime(order.getCreateTime()); // 뿌린 시각
-    response.setTotalAmount(order.getTotalAmount()); // 뿌린 금액
-    List<GiftInfoResponse.Receiving> receivings = new ArrayList<>();
-    long receivedAmount = 0;
+    if(order == null) throw new BadRequestException(Errors.INVALID_TOKEN, TOKEN_PARAMS, userId, roomId, token); // 유효하지 않은 토큰은 실패 응답이 내려간다.
 
-    List<GiftHistory> receivedHistories = order.getHistories().stream().filter(h -> h.getReceiverId() != null).collect(Collectors.toList());
-    for(GiftHistory history : receivedHistories) {
-      GiftInfoResponse.Receiving receiving = response.new Receiving();
-      receiving.setAmount(history.getAmount()); // 받은 금액
-      receiving.setReceiverId(history.getReceiverId());  // 받은 사용자 아이디
-      receivings.add(receiving);
-      receivedAmount += history.getAmount();
+    List<ReceivedShare> receivedShares = historyRepository.findByRequestIdAndReceiverIdIsNotNull(order.getRequestId());
+    long[] receiverIds = new long[receivedShares.size()];
+    long[] amounts = new long[receivedShares.size()];
+    long receivedAmount = 0;
+    for(int i = 0; i < receiverIds.length; i++) {
+      ReceivedShare share = receivedShares.get(i);
+      receiverIds[i] = share.getReceiverId(); // 받은 사용자 아이디
+      amounts[i] = share.getAmount(); // 받은 금액
+      receivedAmount += share.getAmount();
     }
 
-    response.setReceivedAmount(receivedAmount); // 받기 완료된 금액
-    response.setRecevings(receivings);
-    return response;
+    // 뿌린 시각, 뿌린 금액, 받기 완료된 금액, 받기 완료된 정보
+    GiftInfoResponse response = new GiftInfoResponse(order.getCreateTime(), order.getTotalAmount(), receivedAmount, receiverIds, amounts);
+    return new GiftInfoCache.Entry(order.getCreatorId(), order.getCreateTime().getTime() + VISIBLE_PERIOD_MILLIS, response);
   }
 
   /**
-   * 주어진 금액을 주어진 인원 수에 분배한다.
-   * 한 사람이 얻을 수 잇는 최소 금액은 n등분 한 금액의 0.5배이다.
-   * ex) 10000원을 4명이 나눠갖는 경우, 1250원 ~ 6250원 사이의 금액을 얻는다.
+   * 뿌린 사용자가 받기 내역을 구독한다. 구독 시점까지의 받기 내역을 먼저 보내고, 이후 받기가 커밋될 때마다 보낸다.
+   * 조회 API 와 같은 제약조건을 가지며, 모두 받아가거나 뿌린 건이 만료되면 끝난다.
+   * @param userId, 구독 요청한 사용자 식별값
+   * @param roomId, 사용자가 속한 대화방 식별값
+   * @param token, 뿌리기 시 발급된 token
+   * @return 구독 시점의 받기 내역을 담은 구독. 호출자가 Subscription.start 로 구독자를 넘기거나 cancel 해야 한다.
    */
-  class MoneyDivider {
-    private final int numOfReceivers;
-    @Getter private final long minAmount;
-    @Getter private final long maxAmount;
-    private long[] amounts;
-    private int index = 0;
-
-    public MoneyDivider(long totalAmount, int numOfReceivers) {
-      this.numOfReceivers = numOfReceivers;
-
-      minAmount = totalAmount / numOfReceivers / 2; // 한 사람이 얻을 수 잇는 최소 금액은 n등분 한 금액의 0.5배이다.
-      maxAmount = totalAmount / 2 + minAmount; // 한 사람당 얻을 수 있는 최소금액에 따라 얻을 수 있는 최대 금액이 계산된다.
-      long remainingAmount = totalAmount;
-      amounts = new long[numOfReceivers];
-
-      for(int i = 0; i < numOfReceivers; i++) {
-        long nextMax = nextMaxAmount(numOfReceivers - i - 1, remainingAmount);
-        if(i < numOfReceivers - 1)
-          amounts[i] = RandomUtils.nextLong(minAmount, Math.min(maxAmount+1, nextMax));
-        else
-          amounts[i] = remainingAmount;
-
-        remainingAmount -= amounts[i];
-      }
-      log.debug("Money divided into {}.", amounts);
-    }
-
-    private long nextMaxAmount(int numOfRemainingReceivers, long remainingAmount) {
-      return remainingAmount - numOfRemainingReceivers * minAmount;
-    }
+  public ReceiptBroadcaster.Subscription subscribeReceipts(@Positive long userId, @NonNull String roomId, @NonNull String token) {
+    GiftOrderCache.Header order = findHeader(roomId, token);
+    if(order == null) throw new BadRequestException(Errors.INVALID_TOKEN, TOKEN_PARAMS, userId, roomId, token); // 유효하지 않은 토큰은 실패 응답이 내려간다.
+    if(order.getCreatorId() != userId) throw new BadRequestException(Errors.ONLY_ALLOWED_TO_CREATOR, TOKEN_PARAMS, userId, roomId, token); // 뿌린 사람 자신만 조회할 수 있다.
 
-    public long next() {
-      if(index >= numOfReceivers) throw new IndexOutOfBoundsException(Errors.ALREADY_FULLY_CONSUMED.getMessage());
-      return amounts[index++];
+    // 구독을 먼저 등록한 뒤 받기 내역을 읽어, 그 사이에 커밋된 받기가 빠지지 않도록 한다.
+    // 분배기가 할당했지만 아직 DB에 반영하지 않은 받기는 조회 결과에 없으므로 DB를 읽기 전에 따로 읽어 합친다.
+    ReceiptBroadcaster.Subscription subscription = receiptBroadcaster.subscribe(roomId, token, order.getExpirationTime());
+    try {
+      List<GiftInfoResponse.Receiving> unflushed = shareDispenser.findUnflushedReceivings(order.getRequestId());
+      GiftInfoResponse snapshot = get(userId, roomId, token);
+      for(GiftInfoResponse.Receiving receiving : unflushed) {
+        if(!snapshot.hasReceiver(receiving.getReceiverId())) snapshot = snapshot.withReceiving(receiving.getReceiverId(), receiving.getAmount());
+      }
+      subscription.setSnapshot(snapshot);
+    } catch (RuntimeException e) {
+      subscription.cancel();
+      throw e;
     }
+    return subscription;
   }
 }
@@ -0,0 +1,27 @@
+-- 뿌리기 건
+create table t_gift_order (
+  request_id bigint generated by default as identity,
+  room_id varchar(255),
+  token varchar(255),
+  creator_id bigint not null,
+  total_amount bigint not null,
+  max_num_of_recipients integer not null,
+  create_time timestamp,
+  expiration_time timestamp,
+  primary key (request_id)
+);
+alter table t_gift_order add constraint uk_gift_order_room_token unique (room_id, token);
+
+-- 분배건 (receiver_id 가 null 이면 아직 받아가지 않은 분배건)
+create sequence seq_gift_history start with 1 increment by 300;
+create table t_gift_history (
+  history_id bigint not null,
+  request_id bigint,
+  amount bigint,
+  receiver_id bigint,
+  creation_time timestamp,
+  update_time timestamp,
+  primary key (history_id)
+);
+alter table t_gift_history add constraint uk_gift_history_request_receiver unique (request_id, receiver_id);
+alter table t_gift_history add constraint fk_gift_history_order foreign key (request_id) references t_gift_order;
@@ -0,0 +1,7 @@
+-- 분배건의 requestId 단독 조회는 uk_gift_history_request_receiver (request_id, receiver_id) 인덱스의 선두 컬럼으로 처리되므로
+-- request_id 단독 인덱스는 따로 만들지 않는다. (받기마다 갱신되는 테이블에 중복 인덱스 유지 비용만 늘어난다.)
+
+-- 만료된 뿌리기 건 조회 (환불 작업)
+create index idx_gift_order_expiration_time on t_gift_order (expiration_time);
+-- 조회 가능 기간이 지난 뿌리기 건 정리
+create index idx_gift_order_create_time on t_gift_order (create_time);
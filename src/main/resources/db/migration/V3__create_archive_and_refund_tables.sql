@@ -0,0 +1,33 @@
+-- 조회 가능 기간이 지난 뿌리기 건 보관 (분배건은 "금액:받은 사용자" 목록으로 함께 보관)
+create sequence seq_gift_archive start with 1 increment by 500;
+create table t_gift_archive (
+  archive_id bigint not null,
+  request_id bigint,
+  room_id varchar(255),
+  token varchar(255),
+  creator_id bigint not null,
+  total_amount bigint not null,
+  received_amount bigint not null,
+  max_num_of_recipients integer not null,
+  num_of_received integer not null,
+  create_time timestamp,
+  expiration_time timestamp,
+  shares clob,
+  archive_time timestamp,
+  primary key (archive_id)
+);
+create index idx_gift_archive_request_id on t_gift_archive (request_id);
+
+-- 만료된 뿌리기 건의 미수령 금액 환불 기록
+create sequence seq_gift_refund start with 1 increment by 500;
+create table t_gift_refund (
+  refund_id bigint not null,
+  request_id bigint,
+  creator_id bigint not null,
+  amount bigint not null,
+  num_of_shares integer not null,
+  create_time timestamp,
+  primary key (refund_id)
+);
+alter table t_gift_refund add constraint uk_gift_refund_request unique (request_id);
+create index idx_gift_refund_creator_id on t_gift_refund (creator_id);
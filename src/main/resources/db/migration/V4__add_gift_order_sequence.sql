@@ -0,0 +1,4 @@
+-- 뿌리기 건도 시퀀스를 미리 할당받아 batch insert 한다. (대량 생성 API)
+-- Hibernate pooled optimizer 는 시퀀스 값을 할당 구간의 끝으로 사용하므로, 기존 최대값 + 할당 크기에서 시작해야 기존 키와 겹치지 않는다.
+create sequence seq_gift_order start with 1 increment by 100;
+alter sequence seq_gift_order restart with (select coalesce(max(request_id), 0) + 100 from t_gift_order);
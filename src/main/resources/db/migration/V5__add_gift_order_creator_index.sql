@@ -0,0 +1,2 @@
+-- 사용자가 뿌린 건 목록 조회 - (create_time, request_id) 역순 keyset pagination
+create index idx_gift_order_creator_create_time on t_gift_order (creator_id, create_time, request_id);
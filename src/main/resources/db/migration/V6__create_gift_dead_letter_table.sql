@@ -0,0 +1,10 @@
+-- 분배기가 사용자에게 할당했지만 t_gift_history 에 반영하지 못한 할당 (운영자 확인 대상)
+create table t_gift_dead_letter (
+  dead_letter_id bigint generated by default as identity,
+  history_id bigint not null,
+  receiver_id bigint not null,
+  reason varchar(255),
+  create_time timestamp,
+  primary key (dead_letter_id)
+);
+create index idx_gift_dead_letter_history_id on t_gift_dead_letter (history_id);
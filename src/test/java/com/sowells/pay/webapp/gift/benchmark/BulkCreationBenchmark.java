@@ -0,0 +1,107 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.domain.BulkGiftEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 10,000 개 대화방에 뿌리기 건을 만들 때 POST /gift 를 대화방마다 호출하는 경우와 POST /gift/bulk 한번으로 만드는 경우의 처리량 비교
+ * 실행 : ./mvnw test -Dtest=BulkCreationBenchmark -Dbenchmark=true -DargLine=-Xmx3g
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BulkCreationBenchmark {
+  static final int ROOMS = 10_000;
+  static final int NUM_OF_RECEIVERS = 100;
+  static final int CLIENTS = 16;
+
+  final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void compareSingleAndBulkCreation() throws Exception {
+    try(ConfigurableApplicationContext context = new SpringApplicationBuilder(PayWebApplication.class)
+      .profiles("test")
+      .run("--server.port=0",
+        "--gift.token.size=3",
+        "--gift.order.expire.duration=600000",
+        "--logging.level.org.hibernate.SQL=WARN",
+        "--logging.level.com.sowells=WARN")) {
+      String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/gift";
+      for(int round = 0; round < 2; round++) {
+        measureSingle(baseUrl, "single-" + round + "-");
+        measureBulk(baseUrl, "bulk-" + round + "-");
+      }
+    }
+  }
+
+  private void measureSingle(String baseUrl, String roomPrefix) throws Exception {
+    String body = "{\"totalAmount\":1000000,\"maxNumOfRecipients\":" + NUM_OF_RECEIVERS + "}";
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger created = new AtomicInteger();
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    long started = System.nanoTime();
+    for(int c = 0; c < CLIENTS; c++) {
+      clients.execute(() -> {
+        for(int room = next.getAndIncrement(); room < ROOMS; room = next.getAndIncrement()) {
+          try {
+            if(LoadClient.request("POST", baseUrl, 0, roomPrefix + room, body).status == 200) created.incrementAndGet();
+          } catch (IOException e) {
+            log.warn("Failed to create gift.", e);
+          }
+        }
+      });
+    }
+    clients.shutdown();
+    clients.awaitTermination(30, TimeUnit.MINUTES);
+    long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+    log.warn("[single] clients: {}, rooms: {}, created: {}, elapsed: {} ms, throughput: {} rooms/s",
+      CLIENTS, ROOMS, created.get(), elapsedMillis, ROOMS * 1000L / elapsedMillis);
+  }
+
+  private void measureBulk(String baseUrl, String roomPrefix) throws Exception {
+    List<BulkGiftEntry> entries = new ArrayList<>(ROOMS);
+    for(int room = 0; room < ROOMS; room++) entries.add(new BulkGiftEntry(roomPrefix + room, 1_000_000, NUM_OF_RECEIVERS));
+
+    long started = System.nanoTime();
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/bulk").openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty(LoadClient.HEADER_USER_ID, "0");
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setDoOutput(true);
+    try(OutputStream out = connection.getOutputStream()) {
+      objectMapper.writeValue(out, entries);
+    }
+
+    int created = 0;
+    long firstResultNanos = 0;
+    try(BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while((line = reader.readLine()) != null) {
+        if(firstResultNanos == 0) firstResultNanos = System.nanoTime() - started;
+        if(objectMapper.readTree(line).has("token")) created++;
+      }
+    }
+    long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+    log.warn("[bulk] rooms: {}, created: {}, first result: {} ms, elapsed: {} ms, throughput: {} rooms/s",
+      ROOMS, created, firstResultNanos / 1_000_000, elapsedMillis, ROOMS * 1000L / elapsedMillis);
+  }
+}
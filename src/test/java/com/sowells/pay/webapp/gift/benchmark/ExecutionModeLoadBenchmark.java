@@ -0,0 +1,85 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 받기 요청 폭주 시 실행 방식(blocking / async / sharded) 별 처리량과 응답 시간을 비교한다.
+ * 모드마다 서버를 새로 띄우며, 커넥션 풀보다 많은 Tomcat 스레드와 그보다 많은 동시 클라이언트로 부하를 준다.
+ * 실행 : ./mvnw test -Dtest=ExecutionModeLoadBenchmark -Dbenchmark=true
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExecutionModeLoadBenchmark {
+  static final int CLIENTS = 128;
+  static final int REQUESTS_PER_CLIENT = 200;
+  static final int ROOMS = 50;
+  static final int NUM_OF_RECEIVERS = 100;
+  static final int CONNECTION_POOL_SIZE = 8;
+  static final int TOMCAT_THREADS = 64;
+  static final String RECEIVE = "RECEIVE";
+
+  @Test
+  void compareExecutionModes() throws Exception {
+    for(String mode : new String[]{"blocking", "async", "sharded", "blocking", "async", "sharded"}) {
+      measure(mode);
+    }
+  }
+
+  private void measure(String mode) throws Exception {
+    try(ConfigurableApplicationContext context = new SpringApplicationBuilder(PayWebApplication.class)
+      .profiles("test")
+      .run("--server.port=0",
+        "--gift.token.size=3",
+        "--gift.order.expire.duration=600000",
+        "--gift.api.execution-mode=" + mode,
+        "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+        "--spring.datasource.hikari.maximum-pool-size=" + CONNECTION_POOL_SIZE,
+        "--logging.level.org.hibernate.SQL=WARN",
+        "--logging.level.com.sowells=WARN")) {
+      String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/gift";
+
+      String[] tokens = new String[ROOMS];
+      for(int i = 0; i < ROOMS; i++) {
+        tokens[i] = LoadClient.request("POST", baseUrl, 0, "room-" + i, "{\"totalAmount\":1000000,\"maxNumOfRecipients\":" + NUM_OF_RECEIVERS + "}").body;
+      }
+
+      ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+      CountDownLatch start = new CountDownLatch(1);
+      List<LoadRecorder> recorders = new ArrayList<>();
+      for(int c = 0; c < CLIENTS; c++) {
+        final int client = c;
+        LoadRecorder recorder = new LoadRecorder();
+        recorders.add(recorder);
+        clients.execute(() -> {
+          try { start.await(); } catch (InterruptedException e) { return; }
+          for(int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+            int seq = client * REQUESTS_PER_CLIENT + i;
+            int room = seq % ROOMS;
+            recorder.call(RECEIVE, "PUT", baseUrl + "/" + tokens[room], seq + 1, "room-" + room, null);
+          }
+        });
+      }
+
+      long started = System.nanoTime();
+      start.countDown();
+      clients.shutdown();
+      clients.awaitTermination(10, TimeUnit.MINUTES);
+      long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+
+      // 503 은 SERVER_BUSY, 400 은 에러 코드별로 집계된다.
+      log.warn("[{}] clients: {}, elapsed: {} ms, receive: {}", mode, CLIENTS, elapsedMillis, LoadRecorder.merge(recorders).summary(RECEIVE, elapsedMillis));
+    }
+  }
+}
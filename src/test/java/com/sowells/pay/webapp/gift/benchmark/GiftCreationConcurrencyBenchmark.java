@@ -0,0 +1,76 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.service.GiftService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 여러 대화방에서 동시에 뿌리기를 생성할 때의 처리량을 생성 모드(serializable / optimistic) 별로 비교한다.
+ * 실행 : ./mvnw test -Dtest=GiftCreationConcurrencyBenchmark -Dbenchmark=true
+ */
+@Slf4j
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(classes = PayWebApplication.class, properties = {"gift.token.size=3", "logging.level.org.hibernate.SQL=INFO", "logging.level.com.sowells=INFO"})
+class GiftCreationConcurrencyBenchmark {
+  static final int THREADS = 16;
+  static final int ROOMS = 1000;
+  static final int GIFTS_PER_THREAD = 500;
+  static final int NUM_OF_RECEIVERS = 10;
+
+  @Autowired GiftService giftService;
+
+  @Test
+  void compareCreationModes() throws InterruptedException {
+    for(String mode : new String[]{"serializable", "optimistic", "serializable", "optimistic"}) {
+      measure(mode);
+    }
+  }
+
+  private void measure(String mode) throws InterruptedException {
+    GiftService target = AopTestUtils.getTargetObject(giftService);
+    ReflectionTestUtils.setField(target, "CREATION_MODE", mode);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger created = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    for(int t = 0; t < THREADS; t++) {
+      final int thread = t;
+      executor.execute(() -> {
+        try { start.await(); } catch (InterruptedException e) { return; }
+        for(int i = 0; i < GIFTS_PER_THREAD; i++) {
+          String roomId = mode + "-room-" + ((thread * GIFTS_PER_THREAD + i) % ROOMS);
+          try {
+            giftService.add(thread, roomId, 10000, NUM_OF_RECEIVERS);
+            created.incrementAndGet();
+          } catch (RuntimeException e) {
+            failed.incrementAndGet();
+          }
+        }
+      });
+    }
+
+    long started = System.nanoTime();
+    start.countDown();
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.MINUTES);
+    long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+    log.info("[{}] threads: {}, rooms: {}, created: {}, failed: {}, elapsed: {} ms, throughput: {} gifts/s",
+      mode, THREADS, ROOMS, created.get(), failed.get(), elapsedMillis, created.get() * 1000L / Math.max(1, elapsedMillis));
+  }
+}
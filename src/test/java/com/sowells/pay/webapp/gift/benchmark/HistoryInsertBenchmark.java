@@ -0,0 +1,100 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.domain.GiftCreationRequest;
+import com.sowells.pay.webapp.gift.entity.GiftHistory;
+import com.sowells.pay.webapp.gift.entity.GiftOrder;
+import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 분배건 저장 방식에 따른 뿌리기 생성 지연시간 비교.
+ * 건별 save + flush (IDENTITY 전략에서 발생하던 insert 당 1회 왕복) 와 saveAll batch insert 를 비교한다.
+ * 실행 : ./mvnw test -Dtest=HistoryInsertBenchmark -Dbenchmark=true
+ */
+@Slf4j
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(classes = PayWebApplication.class, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class HistoryInsertBenchmark {
+  static final int NUM_OF_RECEIVERS = GiftCreationRequest.MAX_NUM_OF_RECIPIENTS;
+  static final int WARMUP = 20;
+  static final int ITERATIONS = 100;
+
+  @Autowired GiftOrderRepository orderRepository;
+  @Autowired GiftHistoryRepository historyRepository;
+  @Autowired EntityManager entityManager;
+  @Autowired EntityManagerFactory entityManagerFactory;
+  @Autowired PlatformTransactionManager transactionManager;
+
+  Long requestId;
+
+  @BeforeEach
+  void setUp() {
+    GiftOrder order = new GiftOrder();
+    order.setRoomId("benchmark");
+    order.setToken("bench");
+    order.setTotalAmount(NUM_OF_RECEIVERS * 100L);
+    order.setMaxNumOfRecipients(NUM_OF_RECEIVERS);
+    order.setExpirationTime(new Timestamp(System.currentTimeMillis()));
+    orderRepository.save(order);
+    requestId = order.getRequestId();
+  }
+
+  @Test
+  void compareInsertStrategies() {
+    measure("per-row", histories -> histories.forEach(h -> {
+      historyRepository.save(h);
+      entityManager.flush();
+    }));
+    measure("batched", histories -> historyRepository.saveAll(histories));
+  }
+
+  private void measure(String name, Consumer<List<GiftHistory>> writer) {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    for(int i = 0; i < WARMUP; i++) {
+      tx.executeWithoutResult(status -> writer.accept(newHistories()));
+    }
+
+    statistics.clear();
+    long started = System.nanoTime();
+    for(int i = 0; i < ITERATIONS; i++) {
+      tx.executeWithoutResult(status -> writer.accept(newHistories()));
+    }
+    long elapsed = System.nanoTime() - started;
+
+    log.info("[{}] receivers: {}, avg latency: {} us, statements per gift: {}", name, NUM_OF_RECEIVERS,
+      elapsed / ITERATIONS / 1000, statistics.getPrepareStatementCount() / ITERATIONS);
+  }
+
+  private List<GiftHistory> newHistories() {
+    List<GiftHistory> histories = new ArrayList<>(NUM_OF_RECEIVERS);
+    for(int i = 0; i < NUM_OF_RECEIVERS; i++) {
+      GiftHistory history = new GiftHistory();
+      history.setRequestId(requestId);
+      history.setAmount(100L);
+      histories.add(history);
+    }
+    return histories;
+  }
+}
@@ -0,0 +1,46 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * 부하 측정용 HTTP 클라이언트 - 사용자/대화방 헤더를 붙여 요청하고, 상태 코드와 응답 본문(에러 메시지)을 돌려준다.
+ */
+class LoadClient {
+  static final String HEADER_USER_ID = "X-USER-ID";
+  static final String HEADER_ROOM_ID = "X-ROOM-ID";
+
+  private LoadClient() {
+  }
+
+  static Response request(String method, String url, long userId, String roomId, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setRequestMethod(method);
+    connection.setRequestProperty(HEADER_USER_ID, String.valueOf(userId));
+    if(roomId != null) connection.setRequestProperty(HEADER_ROOM_ID, roomId);
+    if(body != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try(OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    Response response = new Response();
+    response.status = connection.getResponseCode();
+    try(InputStream in = response.status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      Scanner scanner = in == null ? null : new Scanner(in, "UTF-8").useDelimiter("\\A");
+      response.body = scanner != null && scanner.hasNext() ? scanner.next() : "";
+    }
+    return response;
+  }
+
+  static class Response {
+    int status;
+    String body;
+  }
+}
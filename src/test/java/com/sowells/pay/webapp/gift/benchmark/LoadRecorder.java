@@ -0,0 +1,96 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 클라이언트별 동작 단위 응답 시간과 결과(OK, 에러 코드, HTTP 상태, IO_ERROR)별 건수
+ * 클라이언트 스레드마다 하나씩 사용하고, 측정이 끝나면 merge 로 합쳐 요약한다.
+ */
+class LoadRecorder {
+  // 응답 본문(에러 메시지)으로 에러 코드를 찾는다.
+  static final Map<String, Errors> ERRORS_BY_MESSAGE = new HashMap<>();
+  static {
+    for(Errors error : Errors.values()) ERRORS_BY_MESSAGE.put(error.getMessage(), error);
+  }
+
+  final Map<String, long[]> latencies = new LinkedHashMap<>();
+  final Map<String, Integer> sizes = new HashMap<>();
+  final Map<String, Map<String, Integer>> outcomes = new HashMap<>();
+
+  /**
+   * 요청하고 응답 시간과 결과를 기록한다. 응답을 받지 못하면 null 을 돌려준다.
+   */
+  String call(String operation, String method, String url, long userId, String roomId, String body) {
+    long started = System.nanoTime();
+    String outcome;
+    String responseBody = null;
+    try {
+      LoadClient.Response response = LoadClient.request(method, url, userId, roomId, body);
+      responseBody = response.body;
+      outcome = outcome(response);
+    } catch (IOException e) {
+      outcome = "IO_ERROR";
+    }
+    record(operation, System.nanoTime() - started, outcome, 1);
+    return responseBody;
+  }
+
+  void record(String operation, long latency, String outcome, int count) {
+    int size = sizes.getOrDefault(operation, 0);
+    long[] values = latencies.computeIfAbsent(operation, key -> new long[1024]);
+    if(size == values.length) latencies.put(operation, values = Arrays.copyOf(values, size * 2));
+    values[size] = latency;
+    sizes.put(operation, size + 1);
+    if(outcome != null) outcomes(operation).merge(outcome, count, Integer::sum);
+  }
+
+  long[] latencies(String operation) {
+    return Arrays.copyOf(latencies.getOrDefault(operation, new long[0]), sizes.getOrDefault(operation, 0));
+  }
+
+  Map<String, Integer> outcomes(String operation) {
+    return outcomes.computeIfAbsent(operation, key -> new TreeMap<>());
+  }
+
+  /**
+   * 동작의 요청 수, 처리량, 응답 시간(p50/p99/p999)과 결과별 건수
+   */
+  Map<String, Object> summary(String operation, long elapsedMillis) {
+    long[] sorted = latencies(operation);
+    Arrays.sort(sorted);
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("requests", sorted.length);
+    summary.put("throughput", sorted.length * 1000L / Math.max(1, elapsedMillis));
+    summary.put("p50Millis", percentile(sorted, 0.5));
+    summary.put("p99Millis", percentile(sorted, 0.99));
+    summary.put("p999Millis", percentile(sorted, 0.999));
+    summary.put("outcomes", outcomes(operation));
+    return summary;
+  }
+
+  static String outcome(LoadClient.Response response) {
+    if(response.status == 200) return "OK";
+    Errors error = ERRORS_BY_MESSAGE.get(response.body);
+    return error != null ? error.name() : "HTTP_" + response.status;
+  }
+
+  static double percentile(long[] sortedLatencies, double percentile) {
+    if(sortedLatencies.length == 0) return 0;
+    int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(sortedLatencies.length * percentile) - 1);
+    return sortedLatencies[Math.max(0, index)] / 1_000_000.0;
+  }
+
+  static LoadRecorder merge(List<LoadRecorder> recorders) {
+    LoadRecorder merged = new LoadRecorder();
+    for(LoadRecorder recorder : recorders) {
+      for(String operation : recorder.latencies.keySet()) {
+        for(long latency : recorder.latencies(operation)) merged.record(operation, latency, null, 0);
+      }
+      recorder.outcomes.forEach((operation, counts) -> counts.forEach((outcome, count) -> merged.outcomes(operation).merge(outcome, count, Integer::sum)));
+    }
+    return merged;
+  }
+}
@@ -0,0 +1,139 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * 뿌리기 건 수에 따른 받기/조회 쿼리의 실행 계획과 지연시간을 확인한다.
+ * 마이그레이션으로 만든 스키마에 건수만큼 데이터를 채운 뒤, 각 쿼리가 인덱스를 타는지와 건수가 늘어도 지연시간이 유지되는지 본다.
+ * 데이터가 메모리에 다 올라가지 않도록 파일 DB(target/query-plan)를 사용한다.
+ * 10,000,000 건은 적재에만 수십 분과 20GB 가량의 디스크가 필요하다. (측정이 끝나면 삭제한다.)
+ * 실행 : ./mvnw test -Dtest=QueryPlanBenchmark -Dbenchmark=true [-Dbenchmark.orders=1000000,10000000]
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class QueryPlanBenchmark {
+  static final int SHARES_PER_ORDER = 3;
+  static final int ROOMS = 100_000;
+  static final int WARMUP = 2_000;
+  static final int ITERATIONS = 10_000;
+  static final Path DATA_DIRECTORY = Paths.get("target", "query-plan");
+
+  @Test
+  void compareQueryPlansByDataSize() throws IOException {
+    for(String orders : System.getProperty("benchmark.orders", "1000000,10000000").split(",")) {
+      measure(Integer.parseInt(orders.trim()));
+    }
+  }
+
+  private void measure(int numOfOrders) throws IOException {
+    Path database = DATA_DIRECTORY.resolve("orders-" + numOfOrders);
+    FileSystemUtils.deleteRecursively(database);
+    try(ConfigurableApplicationContext context = new SpringApplicationBuilder(PayWebApplication.class)
+      .profiles("test")
+      .web(WebApplicationType.NONE)
+      .run("--spring.datasource.url=jdbc:h2:file:" + database.toAbsolutePath().resolve("gift"),
+        "--logging.level.org.hibernate.SQL=WARN",
+        "--logging.level.com.sowells=WARN",
+        "--logging.level.com.sowells.pay.webapp.gift.benchmark=INFO")) {
+      JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+      load(jdbcTemplate, numOfOrders);
+
+      long now = System.currentTimeMillis();
+      // 조회 (GiftService.getGiftInfo)
+      run(jdbcTemplate, numOfOrders, "order by room/token",
+        "select request_id, creator_id, total_amount, expiration_time from t_gift_order where room_id = ? and token = ?",
+        id -> new Object[]{roomOf(id), tokenOf(id)});
+      run(jdbcTemplate, numOfOrders, "received shares",
+        "select amount, receiver_id, update_time from t_gift_history where request_id = ? and receiver_id is not null",
+        id -> new Object[]{id});
+      // 받기 (GiftService.receiveGift)
+      run(jdbcTemplate, numOfOrders, "already received",
+        "select history_id from t_gift_history where request_id = ? and receiver_id = ? limit 1",
+        id -> new Object[]{id, id * SHARES_PER_ORDER});
+      run(jdbcTemplate, numOfOrders, "claim target",
+        "select min(history_id) from t_gift_history where request_id = ? and receiver_id is null",
+        id -> new Object[]{id});
+      run(jdbcTemplate, numOfOrders, "remaining shares",
+        "select count(*) from t_gift_history where request_id = ? and receiver_id is null",
+        id -> new Object[]{id});
+      // 뿌린 건 목록 (GiftListService.listCreated) 첫 페이지
+      run(jdbcTemplate, numOfOrders, "created gifts page",
+        "select request_id, room_id, token, create_time from t_gift_order " +
+          "where creator_id = ? and create_time >= ? and (create_time < ? or (create_time = ? and request_id < ?)) " +
+          "order by create_time desc, request_id desc limit 20",
+        id -> new Object[]{id % 10000, new Timestamp(0), new Timestamp(now + 1000), new Timestamp(now + 1000), Long.MAX_VALUE});
+      run(jdbcTemplate, numOfOrders, "created gifts received totals",
+        "select request_id, sum(amount), count(*) from t_gift_history where request_id in (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) and receiver_id is not null group by request_id",
+        id -> { Object[] ids = new Object[20]; for(int i = 0; i < 20; i++) ids[i] = Math.max(1, id - i * 10000); return ids; });
+      // 정리/환불 작업의 chunk 조회
+      run(jdbcTemplate, numOfOrders, "sweeper chunk",
+        "select request_id from t_gift_order where create_time < ? order by create_time limit 500",
+        id -> new Object[]{new Timestamp(now - (numOfOrders - id))});
+      run(jdbcTemplate, numOfOrders, "expired orders",
+        "select request_id from t_gift_order where expiration_time between ? and ?",
+        id -> new Object[]{new Timestamp(now - (numOfOrders - id)), new Timestamp(now - (numOfOrders - id) + 1000)});
+    } finally {
+      FileSystemUtils.deleteRecursively(database);
+    }
+  }
+
+  /**
+   * 뿌리기 건 당 SHARES_PER_ORDER 개의 분배건을 만들고, 마지막 분배건만 받지 않은 상태로 둔다.
+   * 생성 시각은 1ms 간격, 만료 시각은 생성 10분 후로 채운다.
+   */
+  private void load(JdbcTemplate jdbcTemplate, int numOfOrders) {
+    long started = System.nanoTime();
+    long baseTime = System.currentTimeMillis() - numOfOrders;
+    jdbcTemplate.update("insert into t_gift_order (request_id, room_id, token, creator_id, total_amount, max_num_of_recipients, create_time, expiration_time) " +
+      "select x, 'room-' || mod(x, " + ROOMS + "), cast(x / " + ROOMS + " as varchar), mod(x, 10000), " + SHARES_PER_ORDER * 100 + ", " + SHARES_PER_ORDER + ", " +
+      "dateadd('MILLISECOND', x, ?), dateadd('MILLISECOND', x + 600000, ?) from system_range(1, ?)",
+      new Timestamp(baseTime), new Timestamp(baseTime), numOfOrders);
+    jdbcTemplate.update("insert into t_gift_history (history_id, request_id, amount, receiver_id, creation_time, update_time) " +
+      "select x, (x - 1) / " + SHARES_PER_ORDER + " + 1, 100, case when mod(x, " + SHARES_PER_ORDER + ") = 0 then null else x end, current_timestamp, current_timestamp " +
+      "from system_range(1, ?)", (long) numOfOrders * SHARES_PER_ORDER);
+    jdbcTemplate.execute("alter sequence seq_gift_order restart with " + (numOfOrders + 100));
+    jdbcTemplate.execute("alter sequence seq_gift_history restart with " + ((long) numOfOrders * SHARES_PER_ORDER + 1));
+    jdbcTemplate.execute("analyze");
+    log.info("[{} orders] loaded {} histories in {} s", numOfOrders, (long) numOfOrders * SHARES_PER_ORDER, (System.nanoTime() - started) / 1_000_000_000);
+  }
+
+  private void run(JdbcTemplate jdbcTemplate, int numOfOrders, String name, String sql, Function<Long, Object[]> params) {
+    String plan = jdbcTemplate.queryForObject("explain " + sql, String.class, params.apply((long) numOfOrders / 2));
+    for(int i = 0; i < WARMUP; i++) {
+      jdbcTemplate.queryForList(sql, params.apply(randomRequestId(numOfOrders)));
+    }
+    long started = System.nanoTime();
+    for(int i = 0; i < ITERATIONS; i++) {
+      jdbcTemplate.queryForList(sql, params.apply(randomRequestId(numOfOrders)));
+    }
+    long elapsed = System.nanoTime() - started;
+    log.info("[{} orders] {}: avg latency: {} us\n{}", numOfOrders, name, elapsed / ITERATIONS / 1000, plan);
+  }
+
+  private static long randomRequestId(int numOfOrders) {
+    return ThreadLocalRandom.current().nextLong(1, numOfOrders + 1);
+  }
+
+  private static String roomOf(long requestId) {
+    return "room-" + requestId % ROOMS;
+  }
+
+  private static String tokenOf(long requestId) {
+    return String.valueOf(requestId / ROOMS);
+  }
+}
@@ -0,0 +1,139 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 같은 토큰에 받기 요청이 몰릴 때 요청 모으기 시간(gift.receive.coalesce.window)별 요청 당 실행된 SQL 수와 처리량 비교
+ * SQL 수는 DataSource 를 감싸 statement 실행(execute*, executeBatch 는 한번) 횟수로 센다.
+ * 실행 : ./mvnw test -Dtest=ReceiveCoalescingBenchmark -Dbenchmark=true
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ReceiveCoalescingBenchmark {
+  static final int CLIENTS = 64;
+  static final int REQUESTS_PER_CLIENT = 200;
+  static final int ROOMS = 50;
+  static final int NUM_OF_RECEIVERS = 100;
+  static final String RECEIVE = "RECEIVE";
+  static final AtomicLong EXECUTED_STATEMENTS = new AtomicLong();
+
+  @Test
+  void compareCoalescingWindows() throws Exception {
+    for(long window : new long[]{0, 200, 1000, 5000, 0, 200, 1000, 5000}) {
+      measure(window);
+    }
+  }
+
+  private void measure(long windowMicros) throws Exception {
+    try(ConfigurableApplicationContext context = new SpringApplicationBuilder(PayWebApplication.class, StatementCounter.class)
+      .profiles("test")
+      .run("--server.port=0",
+        "--gift.token.size=3",
+        "--gift.order.expire.duration=600000",
+        "--gift.receive.coalesce.window=" + windowMicros,
+        "--logging.level.org.hibernate.SQL=WARN",
+        "--logging.level.com.sowells=WARN")) {
+      String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/gift";
+
+      String[] tokens = new String[ROOMS];
+      for(int i = 0; i < ROOMS; i++) {
+        tokens[i] = LoadClient.request("POST", baseUrl, 0, "room-" + i, "{\"totalAmount\":1000000,\"maxNumOfRecipients\":" + NUM_OF_RECEIVERS + "}").body;
+      }
+
+      ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+      CountDownLatch start = new CountDownLatch(1);
+      int requests = CLIENTS * REQUESTS_PER_CLIENT;
+      AtomicInteger next = new AtomicInteger();
+      List<LoadRecorder> recorders = new ArrayList<>();
+      for(int c = 0; c < CLIENTS; c++) {
+        LoadRecorder recorder = new LoadRecorder();
+        recorders.add(recorder);
+        clients.execute(() -> {
+          try { start.await(); } catch (InterruptedException e) { return; }
+          // 토큰 순서대로 요청하여 같은 토큰에 대한 요청이 동시에 몰리도록 한다.
+          for(int seq = next.getAndIncrement(); seq < requests; seq = next.getAndIncrement()) {
+            int room = seq * ROOMS / requests;
+            recorder.call(RECEIVE, "PUT", baseUrl + "/" + tokens[room], seq + 1, "room-" + room, null);
+          }
+        });
+      }
+
+      EXECUTED_STATEMENTS.set(0);
+      long started = System.nanoTime();
+      start.countDown();
+      clients.shutdown();
+      clients.awaitTermination(10, TimeUnit.MINUTES);
+      long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+      long statements = EXECUTED_STATEMENTS.get();
+
+      log.warn("[window {} us] statements: {}, statements/request: {}, elapsed: {} ms, receive: {}",
+        windowMicros, statements, String.format("%.2f", (double) statements / requests), elapsedMillis,
+        LoadRecorder.merge(recorders).summary(RECEIVE, elapsedMillis));
+    }
+  }
+
+  /**
+   * DataSource 에서 얻은 statement 의 실행 횟수를 센다.
+   */
+  static class StatementCounter implements BeanPostProcessor {
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+      if(!(bean instanceof DataSource)) return bean;
+      return wrap(bean, DataSource.class, (target, method, args) -> {
+        Object result = invoke(target, method, args);
+        return result instanceof Connection ? wrap(result, Connection.class, ReceiveCoalescingBenchmark::countStatements) : result;
+      });
+    }
+  }
+
+  private static Object countStatements(Object target, Method method, Object[] args) throws Throwable {
+    Object result = invoke(target, method, args);
+    if(!(result instanceof Statement)) return result;
+    Class<?> type = result instanceof CallableStatement ? CallableStatement.class : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+    return wrap(result, type, (statement, call, callArgs) -> {
+      if(call.getName().startsWith("execute")) EXECUTED_STATEMENTS.incrementAndGet();
+      return invoke(statement, call, callArgs);
+    });
+  }
+
+  private static Object wrap(Object target, Class<?> type, TargetHandler handler) {
+    InvocationHandler invocationHandler = (proxy, method, args) -> handler.invoke(target, method, args);
+    return Proxy.newProxyInstance(ReceiveCoalescingBenchmark.class.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  interface TargetHandler {
+    Object invoke(Object target, Method method, Object[] args) throws Throwable;
+  }
+}
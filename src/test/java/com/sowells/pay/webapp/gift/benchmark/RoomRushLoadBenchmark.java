@@ -0,0 +1,172 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sowells.pay.webapp.PayWebApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 대화방에 받기 요청이 몰리는 트래픽을 재현하여 API 별 처리량, 응답 시간(p50/p99/p999)과 에러 코드별 건수를 측정한다.
+ * - 여러 대화방에 뿌리기 건을 만든 뒤, 클라이언트마다 Zipf 분포로 인기 대화방을 골라 받기 요청을 연달아 보낸다.
+ * - 뿌린 사용자는 조회 API 를 주기적으로 호출하거나 새로 뿌리고, 일부는 다른 사용자의 조회나 잘못된 토큰으로 요청한다.
+ * 결과는 빌드 간 비교할 수 있도록 JSON 으로 남긴다. (기본 경로 target/load-reports/room-rush-{시각}.json)
+ * 실행 : ./mvnw test -Dtest=RoomRushLoadBenchmark -Dbenchmark=true [-Dload.clients=64 -Dload.steps=300 -Dload.rooms=200 -Dload.zipf=1.1 -Dload.report=파일 경로]
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RoomRushLoadBenchmark {
+  static final int CLIENTS = Integer.getInteger("load.clients", 64);
+  static final int STEPS_PER_CLIENT = Integer.getInteger("load.steps", 300);
+  static final int ROOMS = Integer.getInteger("load.rooms", 200);
+  static final double ZIPF_EXPONENT = Double.parseDouble(System.getProperty("load.zipf", "1.1"));
+  static final int NUM_OF_RECEIVERS = 50;
+  static final int MAX_BURST = 10;
+  static final int USERS_PER_ROOM = NUM_OF_RECEIVERS * 3; // 같은 사용자의 중복 요청이 섞이도록 한다.
+  static final String CREATION_BODY = "{\"totalAmount\":100000,\"maxNumOfRecipients\":" + NUM_OF_RECEIVERS + "}";
+  static final long SEED = Long.getLong("load.seed", 20200627L);
+
+  // 한 단계에서 수행할 동작의 비율
+  static final double CREATOR_POLL_RATIO = 0.10;
+  static final double OTHER_POLL_RATIO = 0.02;
+  static final double INVALID_TOKEN_RATIO = 0.01;
+  static final double CREATE_RATIO = 0.01;
+
+  enum Operation { CREATE, RECEIVE, GET }
+
+  @Test
+  void replayRoomRush() throws Exception {
+    try(ConfigurableApplicationContext context = new SpringApplicationBuilder(PayWebApplication.class)
+      .profiles("test")
+      .run("--server.port=0",
+        "--gift.token.size=3",
+        "--gift.order.expire.duration=600000",
+        "--gift.order.visible.period=600000",
+        "--logging.level.org.hibernate.SQL=WARN",
+        "--logging.level.com.sowells=WARN")) {
+      String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/gift";
+
+      LoadRecorder setup = new LoadRecorder(); // 준비 단계는 결과에 포함하지 않는다.
+      String[] tokens = new String[ROOMS];
+      for(int room = 0; room < ROOMS; room++) {
+        tokens[room] = setup.call(Operation.CREATE.name(), "POST", baseUrl, creatorId(room), roomId(room), CREATION_BODY);
+      }
+
+      double[] cumulative = zipf(ROOMS, ZIPF_EXPONENT);
+      ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+      CountDownLatch start = new CountDownLatch(1);
+      List<LoadRecorder> recorders = new ArrayList<>();
+      for(int c = 0; c < CLIENTS; c++) {
+        LoadRecorder recorder = new LoadRecorder();
+        recorders.add(recorder);
+        Random random = new Random(SEED + c);
+        executor.execute(() -> {
+          try { start.await(); } catch (InterruptedException e) { return; }
+          for(int step = 0; step < STEPS_PER_CLIENT; step++) {
+            int room = Arrays.binarySearch(cumulative, random.nextDouble());
+            room = room < 0 ? Math.min(-room - 1, ROOMS - 1) : room;
+            String url = baseUrl + "/" + tokens[room];
+            double action = random.nextDouble();
+            if(action < CREATOR_POLL_RATIO) {
+              recorder.call(Operation.GET.name(), "GET", url, creatorId(room), roomId(room), null);
+            } else if(action < CREATOR_POLL_RATIO + OTHER_POLL_RATIO) {
+              recorder.call(Operation.GET.name(), "GET", url, receiverId(room, random), roomId(room), null);
+            } else if(action < CREATOR_POLL_RATIO + OTHER_POLL_RATIO + INVALID_TOKEN_RATIO) {
+              recorder.call(Operation.RECEIVE.name(), "PUT", url + "-", receiverId(room, random), roomId(room), null);
+            } else if(action < CREATOR_POLL_RATIO + OTHER_POLL_RATIO + INVALID_TOKEN_RATIO + CREATE_RATIO) {
+              recorder.call(Operation.CREATE.name(), "POST", baseUrl, creatorId(room), roomId(room), CREATION_BODY);
+            } else {
+              // 같은 대화방에 받기 요청을 연달아 보낸다. 뿌린 사용자도 섞여 있다.
+              for(int burst = 1 + random.nextInt(MAX_BURST); burst > 0; burst--) {
+                recorder.call(Operation.RECEIVE.name(), "PUT", url, receiverId(room, random), roomId(room), null);
+              }
+            }
+          }
+        });
+      }
+
+      long started = System.nanoTime();
+      start.countDown();
+      executor.shutdown();
+      executor.awaitTermination(30, TimeUnit.MINUTES);
+      long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+
+      Map<String, Object> report = report(LoadRecorder.merge(recorders), elapsedMillis);
+      File file = new File(System.getProperty("load.report",
+        "target/load-reports/room-rush-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json"));
+      if(file.getParentFile() != null) file.getParentFile().mkdirs();
+      ObjectMapper objectMapper = new ObjectMapper();
+      objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+      log.warn("room rush report ({}): {}", file.getAbsolutePath(), objectMapper.writeValueAsString(report.get("operations")));
+    }
+  }
+
+  private Map<String, Object> report(LoadRecorder recorder, long elapsedMillis) {
+    Map<String, Object> parameters = new LinkedHashMap<>();
+    parameters.put("clients", CLIENTS);
+    parameters.put("stepsPerClient", STEPS_PER_CLIENT);
+    parameters.put("rooms", ROOMS);
+    parameters.put("zipfExponent", ZIPF_EXPONENT);
+    parameters.put("numOfReceivers", NUM_OF_RECEIVERS);
+    parameters.put("maxBurst", MAX_BURST);
+    parameters.put("creatorPollRatio", CREATOR_POLL_RATIO);
+    parameters.put("otherPollRatio", OTHER_POLL_RATIO);
+    parameters.put("invalidTokenRatio", INVALID_TOKEN_RATIO);
+    parameters.put("createRatio", CREATE_RATIO);
+    parameters.put("seed", SEED);
+
+    Map<String, Object> operations = new LinkedHashMap<>();
+    long total = 0;
+    for(Operation operation : Operation.values()) {
+      Map<String, Object> summary = recorder.summary(operation.name(), elapsedMillis);
+      total += (int) summary.get("requests");
+      operations.put(operation.name(), summary);
+    }
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("timestamp", System.currentTimeMillis());
+    report.put("javaVersion", System.getProperty("java.version"));
+    report.put("parameters", parameters);
+    report.put("elapsedMillis", elapsedMillis);
+    report.put("requests", total);
+    report.put("throughput", total * 1000L / elapsedMillis);
+    report.put("operations", operations);
+    return report;
+  }
+
+  /**
+   * 순위 k 의 대화방이 선택될 확률이 1/k^s 에 비례하는 누적 분포
+   */
+  private static double[] zipf(int size, double exponent) {
+    double[] cumulative = new double[size];
+    double sum = 0;
+    for(int k = 0; k < size; k++) {
+      sum += 1 / Math.pow(k + 1, exponent);
+      cumulative[k] = sum;
+    }
+    for(int k = 0; k < size; k++) cumulative[k] /= sum;
+    return cumulative;
+  }
+
+  private static String roomId(int room) {
+    return "rush-room-" + room;
+  }
+
+  private static long creatorId(int room) {
+    return (long) room * (USERS_PER_ROOM + 1);
+  }
+
+  private static long receiverId(int room, Random random) {
+    return creatorId(room) + random.nextInt(USERS_PER_ROOM + 1);
+  }
+}
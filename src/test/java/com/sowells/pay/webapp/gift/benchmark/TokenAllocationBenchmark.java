@@ -0,0 +1,60 @@
+package com.sowells.pay.webapp.gift.benchmark;
+
+import com.sowells.pay.webapp.gift.component.InMemoryGiftStateStore;
+import com.sowells.pay.webapp.gift.component.TokenAllocator;
+import com.sowells.pay.webapp.gift.component.TokenFactory;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * 대화방 토큰 사용률에 따른 토큰 발급 지연시간.
+ * 매 라운드마다 대화방을 목표 사용률까지 채운 뒤, 사용률이 거의 변하지 않는 범위에서 발급 시간을 측정한다.
+ * 비교를 위해 기존 방식(임의 토큰 생성 후 중복 확인 재시도)의 평균 시도 횟수도 함께 출력한다. 기존 방식은 시도마다 DB 조회가 1회 발생한다.
+ * 실행 : ./mvnw test -Dtest=TokenAllocationBenchmark -Dbenchmark=true
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TokenAllocationBenchmark {
+  static final int TOKEN_SIZE = 3;
+  static final int ROUNDS = 300;
+  static final int ALLOCATIONS_PER_ROUND = 100;
+
+  @Test
+  void allocationLatencyByOccupancy() {
+    for(double occupancy : new double[]{0.1, 0.5, 0.9}) {
+      measure(occupancy); // warm up
+      measure(occupancy);
+    }
+  }
+
+  private void measure(double occupancy) {
+    GiftOrderRepository orderRepository = mock(GiftOrderRepository.class);
+    when(orderRepository.findTokensByRoomIdOrderByCreateTime(anyString())).thenReturn(Collections.emptyList());
+    TokenFactory tokenFactory = new TokenFactory();
+    ReflectionTestUtils.setField(tokenFactory, "GIFT_TOKEN_SIZE", TOKEN_SIZE);
+    int prefill = (int) (tokenFactory.spaceSize() * occupancy);
+
+    long elapsed = 0;
+    for(int round = 0; round < ROUNDS; round++) {
+      TokenAllocator allocator = new TokenAllocator(tokenFactory, orderRepository, new InMemoryGiftStateStore());
+      ReflectionTestUtils.setField(allocator, "VISIBLE_PERIOD_MILLIS", Long.MAX_VALUE / 2);
+      final String roomId = "room-" + round;
+      for(int i = 0; i < prefill; i++) allocator.allocate(roomId);
+
+      long started = System.nanoTime();
+      for(int i = 0; i < ALLOCATIONS_PER_ROUND; i++) allocator.allocate(roomId);
+      elapsed += System.nanoTime() - started;
+    }
+
+    log.info("[occupancy {}%] avg allocation: {} ns, legacy expected attempts per token: {}, legacy NO_TOKEN_AVAILABLE rate: {}",
+      (int) (occupancy * 100), elapsed / ((long) ROUNDS * ALLOCATIONS_PER_ROUND),
+      String.format("%.2f", 1 / (1 - occupancy)), String.format("%.6f", Math.pow(occupancy, 10)));
+  }
+}
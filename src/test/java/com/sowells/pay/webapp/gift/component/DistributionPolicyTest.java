@@ -0,0 +1,93 @@
+package com.sowells.pay.webapp.gift.component;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 임의의 금액과 인원 수로 분배 방식의 불변식을 확인한다.
+ * 실패한 경우 메시지의 seed 로 같은 입력을 재현할 수 있다.
+ */
+class DistributionPolicyTest {
+  static final long SEED = 20200701L;
+  static final int CASES = 20_000;
+
+  @Test
+  void testBoundedRandomInvariants() {
+    checkInvariants(new BoundedRandomDistribution());
+  }
+
+  @Test
+  void testEvenInvariants() {
+    checkInvariants(new EvenDistribution());
+  }
+
+  // 남은 금액이 최소 금액 위주로 분배되어도 마지막 분배건이 최대 금액을 넘지 않는다.
+  @Test
+  void testBoundedRandomLastShareStaysWithinMaxAmount() {
+    for(int i = 0; i < CASES; i++) {
+      assertValid(new BoundedRandomDistribution().divide(10000, 3), "10000 / 3");
+    }
+  }
+
+  @Test
+  void testEvenDistributesRemainderToFirstShares() {
+    ShareSequence shares = new EvenDistribution().divide(10, 4);
+    assertThat(new long[]{shares.next(), shares.next(), shares.next(), shares.next()}).containsExactly(3, 3, 2, 2);
+  }
+
+  @Test
+  void testFixedReplaysAmounts() {
+    SplittableRandom random = new SplittableRandom(SEED);
+    for(int c = 0; c < CASES; c++) {
+      long[] amounts = random.longs(random.nextInt(1, 100), 1, 1_000_000).toArray();
+      long totalAmount = 0;
+      for(long amount : amounts) totalAmount += amount;
+
+      ShareSequence shares = new FixedDistribution(amounts).divide(totalAmount, amounts.length);
+      for(long amount : amounts) assertThat(shares.next()).isEqualTo(amount);
+      assertThat(shares.hasNext()).isFalse();
+    }
+  }
+
+  @Test
+  void testFixedRejectsMismatchedTotal() {
+    FixedDistribution fixed = new FixedDistribution(100, 200);
+    assertThatIllegalArgumentException().isThrownBy(() -> fixed.divide(301, 2));
+    assertThatIllegalArgumentException().isThrownBy(() -> fixed.divide(300, 3));
+  }
+
+  @Test
+  void testUnknownPolicyIsRejected() {
+    assertThat(MoneyDivider.policyOf("even")).isInstanceOf(EvenDistribution.class);
+    assertThatIllegalArgumentException().isThrownBy(() -> MoneyDivider.policyOf("lottery"));
+  }
+
+  private void checkInvariants(DistributionPolicy policy) {
+    SplittableRandom random = new SplittableRandom(SEED);
+    for(int c = 0; c < CASES; c++) {
+      // 작은 금액(인원 수와 비슷한 금액)과 큰 금액이 모두 나오도록 자릿수를 먼저 고른다.
+      int numOfShares = random.nextInt(1, 1000);
+      long totalAmount = numOfShares + random.nextLong(0, 1L << random.nextInt(1, 50));
+      assertValid(policy.divide(totalAmount, numOfShares), String.format("seed: %d, case: %d, %d / %d", SEED, c, totalAmount, numOfShares));
+    }
+  }
+
+  private void assertValid(ShareSequence shares, String description) {
+    long sumAmount = 0;
+    int count = 0;
+    while(shares.hasNext()) {
+      long amount = shares.next();
+      if(amount < shares.getMinAmount() || amount > shares.getMaxAmount()) { // 분배건마다 assertThat 을 만들지 않는다.
+        fail("%s: share %d is out of [%d, %d]", description, amount, shares.getMinAmount(), shares.getMaxAmount());
+      }
+      sumAmount += amount;
+      count++;
+    }
+    assertThat(count).as(description).isEqualTo(shares.getNumOfShares());
+    assertThat(sumAmount).as(description).isEqualTo(shares.getTotalAmount());
+    assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(shares::next);
+  }
+}
@@ -0,0 +1,67 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import com.sowells.pay.webapp.gift.service.GiftService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class GiftMetricsAspectTest {
+  SimpleMeterRegistry meterRegistry;
+  GiftService target;
+  GiftService service;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    target = mock(GiftService.class);
+    AspectJProxyFactory factory = new AspectJProxyFactory(target);
+    factory.setProxyTargetClass(true);
+    factory.addAspect(new GiftMetricsAspect(meterRegistry));
+    service = factory.getProxy();
+  }
+
+  // 서비스 메소드가 성공하면 처리 시간과 결과 건수가 SUCCESS 로 기록된다.
+  @Test
+  void testSuccessIsMeasured() {
+    when(target.receive(1, "room-metrics", "abc")).thenReturn(100L);
+
+    assertThat(service.receive(1, "room-metrics", "abc")).isEqualTo(100L);
+
+    Timer timer = meterRegistry.find("gift.service").tag("operation", "receive").tag("outcome", "SUCCESS").timer();
+    assertThat(timer).isNotNull();
+    assertThat(timer.count()).isEqualTo(1);
+    assertThat(meterRegistry.find("gift.outcome").tag("operation", "receive").tag("outcome", "SUCCESS").counter().count()).isEqualTo(1);
+    assertThat(meterRegistry.find("gift.service.cpu").tag("operation", "receive").timer().count()).isEqualTo(1);
+  }
+
+  // 요청이 거절되면 예외는 그대로 전달되고, 결과는 에러 코드로 기록된다.
+  @Test
+  void testErrorIsTaggedWithErrorCode() {
+    when(target.receive(1, "room-metrics", "abc")).thenThrow(new BadRequestException(Errors.ALREADY_RECEIVED, " userId: %d", 1));
+
+    assertThatThrownBy(() -> service.receive(1, "room-metrics", "abc")).isInstanceOf(BadRequestException.class);
+    assertThatThrownBy(() -> service.receive(1, "room-metrics", "abc")).isInstanceOf(BadRequestException.class);
+
+    String outcome = Errors.ALREADY_RECEIVED.name();
+    assertThat(meterRegistry.find("gift.service").tag("operation", "receive").tag("outcome", outcome).timer().count()).isEqualTo(2);
+    assertThat(meterRegistry.find("gift.outcome").tag("operation", "receive").tag("outcome", outcome).counter().count()).isEqualTo(2);
+    assertThat(meterRegistry.find("gift.outcome").tag("outcome", "SUCCESS").counter()).isNull();
+  }
+
+  // 에러 코드가 없는 예외는 예외 클래스 이름으로 기록된다.
+  @Test
+  void testUnexpectedErrorIsTaggedWithExceptionName() {
+    when(target.get(0, "room-metrics", "abc")).thenThrow(new IllegalStateException("boom"));
+
+    assertThatThrownBy(() -> service.get(0, "room-metrics", "abc")).isInstanceOf(IllegalStateException.class);
+
+    assertThat(meterRegistry.find("gift.outcome").tag("operation", "get").tag("outcome", "IllegalStateException").counter().count()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,127 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.entity.GiftHistory;
+import com.sowells.pay.webapp.gift.entity.GiftRefund;
+import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import com.sowells.pay.webapp.gift.repository.GiftRefundRepository;
+import com.sowells.pay.webapp.gift.service.GiftService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(classes = PayWebApplication.class)
+class GiftRefundJobTest {
+  @Autowired GiftRefundJob refundJob;
+  @Autowired GiftService giftService;
+  @Autowired GiftOrderRepository orderRepository;
+  @Autowired GiftRefundRepository refundRepository;
+  @Autowired GiftHistoryRepository historyRepository;
+  @Autowired ShareDispenser shareDispenser;
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  int chunkSize;
+
+  @BeforeEach
+  void setUp() {
+    chunkSize = refundJob.CHUNK_SIZE;
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.setField(refundJob, "CHUNK_SIZE", chunkSize);
+  }
+
+  // 만료된 뿌리기 건의 미수령 금액이 환불되고, 다시 실행해도 중복 환불되지 않는다.
+  @Test
+  void testUnclaimedAmountIsRefundedOnce() {
+    String roomId = "room-refund";
+    String token = giftService.add(100, roomId, 1000, 4);
+    long received = giftService.receive(101, roomId, token);
+    Long requestId = orderRepository.findByRoomIdAndToken(roomId, token).getRequestId();
+
+    long expiredAfter = System.currentTimeMillis() + 60000;
+    assertThat(refundJob.refund(expiredAfter)).isGreaterThanOrEqualTo(1);
+    GiftRefund refund = refundRepository.findByRequestId(requestId);
+    assertThat(refund.getCreatorId()).isEqualTo(100);
+    assertThat(refund.getAmount()).isEqualTo(1000 - received);
+    assertThat(refund.getNumOfShares()).isEqualTo(3);
+
+    assertThat(refundJob.refund(expiredAfter)).isZero();
+    assertThat(refundRepository.sumAmountByCreatorId(100)).isEqualTo(1000 - received);
+  }
+
+  // 여러 chunk, 여러 파티션에 걸친 건도 모두 뿌린 사용자별로 합산되어 환불된다.
+  @Test
+  void testRefundAcrossPartitionsAndChunks() {
+    ReflectionTestUtils.setField(refundJob, "CHUNK_SIZE", 2);
+    for(long creatorId = 200; creatorId < 205; creatorId++) {
+      for(int i = 0; i < 3; i++) giftService.add(creatorId, "room-refund-" + creatorId, 500, 5);
+    }
+    // 모두 받아간 건은 환불 대상이 아니다.
+    String token = giftService.add(299, "room-refund-299", 10, 1);
+    giftService.receive(300, "room-refund-299", token);
+
+    refundJob.refund(System.currentTimeMillis() + 60000);
+
+    for(long creatorId = 200; creatorId < 205; creatorId++) {
+      assertThat(refundRepository.sumAmountByCreatorId(creatorId)).isEqualTo(1500);
+    }
+    assertThat(refundRepository.sumAmountByCreatorId(299)).isZero();
+  }
+
+  // 분배기가 할당했지만 아직 DB에 반영하지 않은 분배건은 환불하지 않는다.
+  @Test
+  void testDispensedShareIsNotRefunded() {
+    ReflectionTestUtils.setField(shareDispenser, "enabled", true);
+    try {
+      String roomId = "room-refund-dispenser";
+      String token = giftService.add(500, roomId, 1000, 4);
+      long received = giftService.receive(501, roomId, token);
+      Long requestId = orderRepository.findByRoomIdAndToken(roomId, token).getRequestId();
+
+      refundJob.refund(System.currentTimeMillis() + 60000);
+
+      assertThat(refundRepository.findByRequestId(requestId).getAmount()).isEqualTo(1000 - received);
+    } finally {
+      ReflectionTestUtils.setField(shareDispenser, "enabled", false);
+    }
+  }
+
+  // 반영하지 못해 dead letter 로 옮겨진 분배건은 이미 지급된 것이므로 환불하지 않는다.
+  @Test
+  void testDeadLetteredShareIsNotRefunded() {
+    String roomId = "room-refund-dead-letter";
+    String token = giftService.add(600, roomId, 1000, 4);
+    Long requestId = orderRepository.findByRoomIdAndToken(roomId, token).getRequestId();
+    GiftHistory deadLettered = historyRepository.findByRequestIdInOrderByHistoryId(Collections.singletonList(requestId)).get(0);
+    jdbcTemplate.update("insert into t_gift_dead_letter (history_id, receiver_id, reason, create_time) values (?, ?, ?, ?)",
+      deadLettered.getHistoryId(), 601L, "HISTORY_NOT_FOUND", new Timestamp(System.currentTimeMillis()));
+
+    refundJob.refund(System.currentTimeMillis() + 60000);
+
+    GiftRefund refund = refundRepository.findByRequestId(requestId);
+    assertThat(refund.getAmount()).isEqualTo(1000 - deadLettered.getAmount());
+    assertThat(refund.getNumOfShares()).isEqualTo(3);
+  }
+
+  // 만료되지 않은 건은 환불하지 않는다.
+  @Test
+  void testLiveOrderIsNotRefunded() {
+    giftService.add(400, "room-refund-live", 100, 2);
+    refundJob.refund(System.currentTimeMillis() - 60000);
+    assertThat(refundRepository.sumAmountByCreatorId(400)).isZero();
+  }
+}
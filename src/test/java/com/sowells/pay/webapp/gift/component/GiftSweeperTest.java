@@ -0,0 +1,140 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.entity.GiftArchive;
+import com.sowells.pay.webapp.gift.entity.GiftRefund;
+import com.sowells.pay.webapp.gift.repository.GiftArchiveRepository;
+import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import com.sowells.pay.webapp.gift.repository.GiftRefundRepository;
+import com.sowells.pay.webapp.gift.service.GiftService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(classes = PayWebApplication.class)
+class GiftSweeperTest {
+  @Autowired GiftSweeper sweeper;
+  @Autowired GiftService giftService;
+  @Autowired GiftOrderRepository orderRepository;
+  @Autowired GiftHistoryRepository historyRepository;
+  @Autowired GiftArchiveRepository archiveRepository;
+  @Autowired GiftRefundRepository refundRepository;
+  @Autowired MeterRegistry meterRegistry;
+  @Autowired TokenAllocator tokenAllocator;
+
+  int chunkSize;
+
+  @BeforeEach
+  void setUp() {
+    chunkSize = sweeper.CHUNK_SIZE;
+    ReflectionTestUtils.setField(sweeper, "CHUNK_PAUSE_MILLIS", 0L);
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.setField(sweeper, "CHUNK_SIZE", chunkSize);
+  }
+
+  // 기간이 지난 뿌리기 건은 분배 내역과 함께 보관 테이블로 옮겨지고 원본은 삭제된다.
+  @Test
+  void testSweptOrderIsArchived() {
+    String roomId = "room-sweep";
+    String token = giftService.add(1, roomId, 1000, 3);
+    long received = giftService.receive(2, roomId, token) + giftService.receive(3, roomId, token);
+    Long requestId = orderRepository.findByRoomIdAndToken(roomId, token).getRequestId();
+
+    assertThat(sweeper.sweep(System.currentTimeMillis() + 1000)).isGreaterThanOrEqualTo(1);
+
+    assertThat(orderRepository.findByRoomIdAndToken(roomId, token)).isNull();
+    assertThat(historyRepository.countByRequestIdAndReceiverIdIsNull(requestId)).isZero();
+    assertThat(historyRepository.findByRequestIdAndReceiverIdIsNotNull(requestId)).isEmpty();
+
+    GiftArchive archive = archiveRepository.findByRequestId(requestId);
+    assertThat(archive.getRoomId()).isEqualTo(roomId);
+    assertThat(archive.getToken()).isEqualTo(token);
+    assertThat(archive.getTotalAmount()).isEqualTo(1000);
+    assertThat(archive.getReceivedAmount()).isEqualTo(received);
+    assertThat(archive.getNumOfReceived()).isEqualTo(2);
+    assertThat(archive.getShares().split(",")).hasSize(3);
+  }
+
+  // 환불되지 않은 미수령 금액은 정리하면서 환불 기록으로 남기고, 이미 환불된 건은 다시 환불하지 않는다.
+  @Test
+  void testUnclaimedSharesAreRefundedBeforeSweep() {
+    String roomId = "room-sweep-refund";
+    String unrefunded = giftService.add(3, roomId, 1000, 3);
+    long received = giftService.receive(4, roomId, unrefunded);
+    String refunded = giftService.add(5, roomId, 500, 2);
+    Long unrefundedId = orderRepository.findByRoomIdAndToken(roomId, unrefunded).getRequestId();
+    Long refundedId = orderRepository.findByRoomIdAndToken(roomId, refunded).getRequestId();
+    GiftRefund refund = new GiftRefund();
+    refund.setRequestId(refundedId);
+    refund.setCreatorId(5);
+    refund.setAmount(500);
+    refund.setNumOfShares(2);
+    refundRepository.save(refund);
+
+    assertThat(sweeper.sweep(System.currentTimeMillis() + 1000)).isGreaterThanOrEqualTo(2);
+
+    assertThat(orderRepository.findByRoomIdAndToken(roomId, unrefunded)).isNull();
+    GiftRefund swept = refundRepository.findByRequestId(unrefundedId);
+    assertThat(swept.getCreatorId()).isEqualTo(3);
+    assertThat(swept.getAmount()).isEqualTo(1000 - received);
+    assertThat(swept.getNumOfShares()).isEqualTo(2);
+    assertThat(refundRepository.findByRequestId(refundedId).getRefundId()).isEqualTo(refund.getRefundId());
+  }
+
+  // 정리 대상이 많으면 chunk 단위 트랜잭션으로 나누어 처리한다.
+  @Test
+  void testSweepRunsInChunks() {
+    ReflectionTestUtils.setField(sweeper, "CHUNK_SIZE", 2);
+    List<String> tokens = new ArrayList<>();
+    for(int i = 0; i < 5; i++) tokens.add(giftService.add(1, "room-sweep-chunk", 100, 2));
+    long chunksBefore = meterRegistry.get("gift.sweeper.chunk").timer().count();
+
+    assertThat(sweeper.sweep(System.currentTimeMillis() + 1000)).isGreaterThanOrEqualTo(5);
+
+    assertThat(meterRegistry.get("gift.sweeper.chunk").timer().count() - chunksBefore).isGreaterThanOrEqualTo(3);
+    for(String token : tokens) assertThat(orderRepository.findByRoomIdAndToken("room-sweep-chunk", token)).isNull();
+    assertThat(sweeper.sweep(System.currentTimeMillis() + 1000)).isZero();
+  }
+
+  // 정리되기 전에 토큰이 재발급되면 이전 뿌리기 건은 삭제되지 않고 보관 테이블로 옮겨진다. (테스트 토큰 크기 1 - 36개)
+  @Test
+  void testRecycledTokenArchivesStaleOrder() {
+    String roomId = "room-sweep-recycle";
+    List<String> tokens = new ArrayList<>();
+    for(int i = 0; i < 36; i++) tokens.add(giftService.add(1, roomId, 100, 2));
+    String token = tokens.get(0);
+    Long staleRequestId = orderRepository.findByRoomIdAndToken(roomId, token).getRequestId();
+
+    tokenAllocator.release(roomId, token); // 조회 가능 기간이 지나 반납된 상황
+    assertThat(giftService.add(2, roomId, 300, 3)).isEqualTo(token);
+
+    assertThat(orderRepository.findByRoomIdAndToken(roomId, token).getCreatorId()).isEqualTo(2);
+    GiftArchive archive = archiveRepository.findByRequestId(staleRequestId);
+    assertThat(archive.getToken()).isEqualTo(token);
+    assertThat(archive.getTotalAmount()).isEqualTo(100);
+    assertThat(historyRepository.countByRequestIdAndReceiverIdIsNull(staleRequestId)).isZero();
+  }
+
+  // 기간이 지나지 않은 뿌리기 건은 정리하지 않는다.
+  @Test
+  void testLiveOrderIsKept() {
+    String token = giftService.add(1, "room-sweep-live", 100, 2);
+    sweeper.sweep(System.currentTimeMillis() - 60000);
+    assertThat(orderRepository.findByRoomIdAndToken("room-sweep-live", token)).isNotNull();
+  }
+}
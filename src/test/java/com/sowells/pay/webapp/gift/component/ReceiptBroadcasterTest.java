@@ -0,0 +1,122 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ReceiptBroadcasterTest {
+  SimpleMeterRegistry meterRegistry;
+  ReceiptBroadcaster broadcaster;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    broadcaster = new ReceiptBroadcaster(meterRegistry);
+    ReflectionTestUtils.setField(broadcaster, "THREADS", 1);
+    ReflectionTestUtils.setField(broadcaster, "BUFFER_SIZE", 3);
+    ReflectionTestUtils.setField(broadcaster, "MAX_WRITERS", 4);
+    broadcaster.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    broadcaster.stop();
+  }
+
+  // 받지 못하고 멈춘 구독자가 있어도 다른 구독자에게는 바로 보내고, 대기열이 가득 찬 구독자는 끊는다.
+  @Test
+  void testSlowSubscriberDoesNotDelayOthers() throws Exception {
+    CountDownLatch stalled = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingListener slow = new RecordingListener() {
+      @Override
+      public void onReceipt(long receiverId, long amount) throws IOException {
+        super.onReceipt(receiverId, amount);
+        stalled.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    RecordingListener fast = new RecordingListener();
+    subscribe("room-slow", "a", slow);
+    subscribe("room-fast", "b", fast);
+
+    broadcaster.publish("room-slow", "a", 1, 10);
+    assertThat(stalled.await(5, TimeUnit.SECONDS)).isTrue();
+    for(long receiverId = 2; receiverId <= 6; receiverId++) broadcaster.publish("room-slow", "a", receiverId, 10);
+
+    broadcaster.publish("room-fast", "b", 1, 10);
+    assertThat(fast.received.await(5, TimeUnit.SECONDS)).isTrue();
+
+    release.countDown();
+    assertThat(slow.closed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(slow.error).isInstanceOf(IOException.class);
+    assertThat(slow.completed).isEmpty();
+    assertThat(meterRegistry.find("gift.receipt.slow-subscribers").counter().count()).isEqualTo(1.0);
+    assertThat(broadcaster.numOfSubscriptions()).isEqualTo(1);
+  }
+
+  // 구독 시점의 받기 내역과 이후의 받기 내역을 순서대로 보내고, 모두 받아가면 완료를 알린 뒤 끝낸다.
+  @Test
+  void testStreamCompletesAfterAllReceipts() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    ReceiptBroadcaster.Subscription subscription = broadcaster.subscribe("room-done", "c", System.currentTimeMillis() + 60000);
+    subscription.setSnapshot(new GiftInfoResponse(new Timestamp(0), 30, 10, new long[]{1}, new long[]{10}));
+    broadcaster.publish("room-done", "c", 2, 10);
+    subscription.start(listener);
+    broadcaster.publish("room-done", "c", 2, 10);
+    broadcaster.publish("room-done", "c", 3, 10);
+
+    assertThat(listener.closed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(listener.receiverIds).containsExactly(1L, 2L, 3L);
+    assertThat(listener.completed).containsExactly(ReceiptBroadcaster.FULLY_CONSUMED);
+    assertThat(listener.error).isNull();
+    assertThat(broadcaster.numOfSubscriptions()).isZero();
+  }
+
+  private void subscribe(String roomId, String token, ReceiptListener listener) {
+    ReceiptBroadcaster.Subscription subscription = broadcaster.subscribe(roomId, token, System.currentTimeMillis() + 60000);
+    subscription.setSnapshot(new GiftInfoResponse(new Timestamp(0), 1000));
+    subscription.start(listener);
+  }
+
+  static class RecordingListener implements ReceiptListener {
+    final List<Long> receiverIds = new CopyOnWriteArrayList<>();
+    final List<String> completed = new CopyOnWriteArrayList<>();
+    final CountDownLatch received = new CountDownLatch(1);
+    final CountDownLatch closed = new CountDownLatch(1);
+    volatile Exception error;
+
+    @Override
+    public void onReceipt(long receiverId, long amount) throws IOException {
+      receiverIds.add(receiverId);
+      received.countDown();
+    }
+
+    @Override
+    public void onCompleted(String reason) {
+      completed.add(reason);
+    }
+
+    @Override
+    public void onClosed(Exception error) {
+      this.error = error;
+      closed.countDown();
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.entity.GiftHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReceiveJournalTest {
+  @TempDir
+  Path directory;
+
+  final List<ReceiveJournal> openedJournals = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() throws Exception {
+    for(ReceiveJournal journal : openedJournals) journal.close();
+  }
+
+  // 정상 종료 없이 재시작해도 fsync 가 끝난 기록은 모두 복구된다.
+  @Test
+  void testSyncedRecordsAreRecoveredAfterCrash() throws IOException {
+    ReceiveJournal journal = openJournal();
+    List<Long> afterSync = new ArrayList<>();
+    for(long i = 0; i < 10; i++) {
+      final long historyId = i;
+      journal.append(historyId, 100 + i, () -> afterSync.add(historyId));
+    }
+    assertThat(afterSync).hasSize(10);
+
+    ReceiveJournal restarted = openJournal(); // close() 없이 다시 연다.
+    List<long[]> records = restarted.recover();
+    assertThat(records).hasSize(10);
+    for(int i = 0; i < 10; i++) {
+      assertThat(records.get(i)).containsExactly(i, 100 + i);
+    }
+  }
+
+  // 기록 도중 중단되어 일부만 남은 마지막 레코드는 버리고 그 이전 기록만 복구한다.
+  @Test
+  void testTornRecordIsIgnored() throws IOException {
+    ReceiveJournal journal = openJournal();
+    for(long i = 0; i < 3; i++) journal.append(i, i, () -> {});
+    try(Stream<Path> segments = Files.list(directory)) {
+      Path segment = segments.findFirst().get();
+      Files.write(segment, new byte[ReceiveJournal.RECORD_SIZE - 3], StandardOpenOption.APPEND);
+    }
+
+    assertThat(openJournal().recover()).hasSize(3);
+  }
+
+  // 손상된 레코드 이후의 기록은 신뢰할 수 없으므로 복구하지 않는다.
+  @Test
+  void testCorruptedRecordStopsRecoveryOfSegment() throws IOException {
+    ReceiveJournal journal = openJournal();
+    for(long i = 0; i < 3; i++) journal.append(i, i, () -> {});
+    try(Stream<Path> segments = Files.list(directory)) {
+      Path segment = segments.findFirst().get();
+      byte[] bytes = Files.readAllBytes(segment);
+      bytes[ReceiveJournal.RECORD_SIZE + 1] ^= 0xFF;
+      Files.write(segment, bytes);
+    }
+
+    assertThat(openJournal().recover()).hasSize(1);
+  }
+
+  // 동시 요청의 기록은 묶어서 fsync 된다.
+  @Test
+  void testConcurrentAppendsAreGroupCommitted() throws Exception {
+    final int threads = 16;
+    final int appendsPerThread = 200;
+    ReceiveJournal journal = openJournal();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    for(int t = 0; t < threads; t++) {
+      final long thread = t;
+      executor.execute(() -> {
+        try { start.await(); } catch (InterruptedException e) { return; }
+        for(long i = 0; i < appendsPerThread; i++) journal.append(thread * appendsPerThread + i, thread, () -> {});
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(journal.syncCount).isLessThan(threads * appendsPerThread);
+    Set<Long> historyIds = openJournal().recover().stream().map(r -> r[0]).collect(Collectors.toSet());
+    assertThat(historyIds).hasSize(threads * appendsPerThread);
+  }
+
+  // 기록 스레드가 끝난 뒤에 들어온 기록은 닫을 때 실패로 끝나, 요청 스레드가 계속 기다리지 않는다.
+  @Test
+  void testPendingAppendFailsWhenJournalIsClosed() throws Exception {
+    ReceiveJournal journal = openJournal();
+    Thread writer = (Thread) ReflectionTestUtils.getField(journal, "writer");
+    writer.interrupt();
+    writer.join(5000);
+
+    List<Long> afterSync = new CopyOnWriteArrayList<>();
+    CompletableFuture<Void> appended = CompletableFuture.runAsync(() -> journal.append(1, 1, () -> afterSync.add(1L)));
+    BlockingQueue<?> queue = (BlockingQueue<?>) ReflectionTestUtils.getField(journal, "queue");
+    long deadline = System.currentTimeMillis() + 5000;
+    while(queue.isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+    journal.close();
+
+    assertThatThrownBy(() -> appended.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+      .hasCauseInstanceOf(UncheckedIOException.class);
+    assertThat(afterSync).isEmpty();
+    assertThatIllegalStateException().isThrownBy(() -> journal.append(2, 2, () -> {}));
+  }
+
+  // 분배기가 DB 반영 전에 중단되면, 재시작 시 저널의 할당을 DB에 반영하고 반영된 세그먼트는 삭제한다.
+  @Test
+  void testDispenserReplaysUnflushedAssignmentsOnRestart() throws IOException {
+    ShareDispenser dispenser = newDispenser(mock(JdbcTemplate.class));
+    dispenser.register(0L, histories(5, 10), new Timestamp(System.currentTimeMillis() + 60000));
+    for(long userId = 1; userId <= 3; userId++) {
+      assertThat(dispenser.claim(0L, userId).isAccepted()).isTrue();
+    }
+    // flush 없이 중단
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    List<long[]> flushed = captureFlushes(jdbcTemplate);
+    ShareDispenser restarted = newDispenser(jdbcTemplate);
+    restarted.recover();
+    assertThat(flushed).extracting(a -> a[0] + ":" + a[1]).containsExactlyInAnyOrder("0:1", "1:2", "2:3");
+
+    // 반영이 끝난 기록은 다음 재시작 때 다시 복구되지 않는다.
+    assertThat(openJournal().recover()).isEmpty();
+  }
+
+  // DB 반영에 실패하면 세그먼트를 지우지 않고 남겨 재시작 시 다시 반영한다.
+  @Test
+  void testSegmentsAreKeptWhenFlushFails() throws IOException {
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenThrow(new RuntimeException("db down"));
+    ShareDispenser dispenser = newDispenser(jdbcTemplate);
+    dispenser.register(0L, histories(2, 10), new Timestamp(System.currentTimeMillis() + 60000));
+    dispenser.claim(0L, 1);
+    dispenser.flush();
+
+    assertThat(openJournal().recover()).hasSize(1);
+  }
+
+  private ReceiveJournal openJournal() throws IOException {
+    ReceiveJournal journal = new ReceiveJournal();
+    ReflectionTestUtils.setField(journal, "enabled", true);
+    ReflectionTestUtils.setField(journal, "DIRECTORY", directory.toString());
+    journal.open();
+    openedJournals.add(journal);
+    return journal;
+  }
+
+  private ShareDispenser newDispenser(JdbcTemplate jdbcTemplate) throws IOException {
+    ShareDispenser dispenser = new ShareDispenser(jdbcTemplate, openJournal(), new InMemoryGiftStateStore(), new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(dispenser, "enabled", true);
+    ReflectionTestUtils.setField(dispenser, "FLUSH_SIZE", 1000);
+    ReflectionTestUtils.setField(dispenser, "MAX_ATTEMPTS", 10);
+    return dispenser;
+  }
+
+  private List<long[]> captureFlushes(JdbcTemplate jdbcTemplate) {
+    List<long[]> flushed = new ArrayList<>();
+    when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenAnswer(invocation -> {
+      List<ShareDispenser.Assignment> batch = invocation.getArgument(1);
+      for(ShareDispenser.Assignment assignment : batch) flushed.add(new long[]{assignment.historyId, assignment.receiverId});
+      return new int[][]{};
+    });
+    return flushed;
+  }
+
+  private List<GiftHistory> histories(int size, long amount) {
+    List<GiftHistory> histories = new ArrayList<>();
+    for(int i = 0; i < size; i++) {
+      GiftHistory history = new GiftHistory();
+      history.setHistoryId((long) i);
+      history.setAmount(amount);
+      histories.add(history);
+    }
+    return histories;
+  }
+}
@@ -0,0 +1,150 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 내장 Redis 서버에 각자 연결한 두 노드의 저장소로 여러 노드가 같은 뿌리기 건을 처리하는 경우를 확인한다.
+ */
+class RedisGiftStateStoreTest {
+  static RedisServer server;
+  static List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+
+  RedisGiftStateStore node1;
+  RedisGiftStateStore node2;
+
+  @BeforeAll
+  static void startServer() throws IOException {
+    int port;
+    try(ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    server = RedisServer.builder().port(port).setting("bind 127.0.0.1").build();
+    server.start();
+  }
+
+  @AfterAll
+  static void stopServer() {
+    connectionFactories.forEach(LettuceConnectionFactory::destroy);
+    server.stop();
+  }
+
+  @BeforeEach
+  void setUp() {
+    String keyPrefix = "gift:" + System.nanoTime() + ":"; // 테스트마다 다른 키를 사용한다.
+    node1 = connect(keyPrefix);
+    node2 = connect(keyPrefix);
+  }
+
+  // 여러 노드에서 동시에 받기 요청이 몰려도 분배건은 한번씩만 할당되어야 한다.
+  @Test
+  void testConcurrentClaimsAcrossNodesNeverShareAHistory() throws InterruptedException {
+    final int numOfShares = 100;
+    final int numOfReceivers = 500;
+    node1.registerShares(1L, historyIds(numOfShares), amounts(numOfShares, 10), System.currentTimeMillis() + 60000);
+
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    CountDownLatch start = new CountDownLatch(1);
+    Set<Long> historyIds = ConcurrentHashMap.newKeySet();
+    AtomicInteger unexpected = new AtomicInteger();
+    AtomicLong sumAmount = new AtomicLong();
+    for(int i = 0; i < numOfReceivers; i++) {
+      final long userId = i + 1;
+      final GiftStateStore node = i % 2 == 0 ? node1 : node2;
+      executor.execute(() -> {
+        try { start.await(); } catch (InterruptedException e) { return; }
+        GiftStateStore.ClaimedShare share = node.claimShare(1L, userId);
+        if(share.isAccepted()) {
+          if(!historyIds.add(share.getHistoryId())) unexpected.incrementAndGet();
+          sumAmount.addAndGet(share.getAmount());
+        } else if(share.getError() != Errors.ALREADY_FULLY_CONSUMED) {
+          unexpected.incrementAndGet();
+        }
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(historyIds).hasSize(numOfShares);
+    assertThat(unexpected.get()).isZero();
+    assertThat(sumAmount.get()).isEqualTo(numOfShares * 10L);
+  }
+
+  @Test
+  void testOneCanClaimOnlyOnceAcrossNodes() {
+    node1.registerShares(2L, historyIds(2), amounts(2, 10), System.currentTimeMillis() + 60000);
+
+    GiftStateStore.ClaimedShare share = node1.claimShare(2L, 1);
+    assertThat(share.isAccepted()).isTrue();
+    assertThat(share.getHistoryId()).isEqualTo(0);
+    assertThat(share.getAmount()).isEqualTo(10);
+    assertThat(node2.claimShare(2L, 1).getError()).isEqualTo(Errors.ALREADY_RECEIVED);
+
+    // 확정하지 못해 취소된 사용자는 남은 분배건을 다시 받을 수 있다.
+    node1.cancelClaim(2L, 1);
+    assertThat(node2.claimShare(2L, 1).getHistoryId()).isEqualTo(1);
+    // 모두 소진된 뒤에도 등록된 건으로 남는다.
+    assertThat(node2.claimShare(2L, 2).getError()).isEqualTo(Errors.ALREADY_FULLY_CONSUMED);
+  }
+
+  @Test
+  void testUnregisteredOrExpiredRequestFallsBack() throws InterruptedException {
+    assertThat(node1.claimShare(999L, 1)).isNull();
+
+    node1.registerShares(3L, historyIds(1), amounts(1, 10), System.currentTimeMillis() + 50);
+    Thread.sleep(100);
+    assertThat(node2.claimShare(3L, 1)).isNull();
+  }
+
+  @Test
+  void testTokenIsReservedByOneNode() {
+    long releaseTime = System.currentTimeMillis() + 60000;
+    assertThat(node1.reserveToken("room-0", "abc", releaseTime)).isTrue();
+    assertThat(node2.reserveToken("room-0", "abc", releaseTime)).isFalse();
+    assertThat(node2.reserveToken("room-1", "abc", releaseTime)).isTrue();
+
+    node1.releaseToken("room-0", "abc");
+    assertThat(node2.reserveToken("room-0", "abc", releaseTime)).isTrue();
+  }
+
+  private RedisGiftStateStore connect(String keyPrefix) {
+    LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory("127.0.0.1", server.ports().get(0));
+    connectionFactory.afterPropertiesSet();
+    connectionFactories.add(connectionFactory);
+    StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+    RedisGiftStateStore store = new RedisGiftStateStore(redisTemplate);
+    ReflectionTestUtils.setField(store, "KEY_PREFIX", keyPrefix);
+    return store;
+  }
+
+  private long[] historyIds(int size) {
+    long[] historyIds = new long[size];
+    for(int i = 0; i < size; i++) historyIds[i] = i;
+    return historyIds;
+  }
+
+  private long[] amounts(int size, long amount) {
+    long[] amounts = new long[size];
+    for(int i = 0; i < size; i++) amounts[i] = amount;
+    return amounts;
+  }
+}
@@ -0,0 +1,103 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RoomShardExecutorTest {
+  SimpleMeterRegistry meterRegistry;
+  RoomShardExecutor executor;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    executor = new RoomShardExecutor(meterRegistry);
+    ReflectionTestUtils.setField(executor, "SHARD_COUNT", 4);
+    ReflectionTestUtils.setField(executor, "QUEUE_CAPACITY", 2);
+    executor.start();
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    executor.stop();
+  }
+
+  // 같은 대화방의 요청은 제출한 순서대로 처리된다.
+  @Test
+  void testSameRoomRunsInOrder() throws Exception {
+    ReflectionTestUtils.setField(executor, "QUEUE_CAPACITY", 1000);
+    executor.stop();
+    executor.start();
+
+    List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+    for(int i = 0; i < 500; i++) {
+      final int seq = i;
+      futures.add(executor.submit("room-0", () -> { processed.add(seq); return seq; }));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+    for(int i = 0; i < 500; i++) assertThat(processed.get(i)).isEqualTo(i);
+  }
+
+  // 한 대화방의 처리가 막혀 있어도 다른 샤드의 대화방은 처리된다.
+  @Test
+  void testOtherShardsAreNotBlocked() throws Exception {
+    String blockedRoom = "room-0";
+    String otherRoom = roomInOtherShard(blockedRoom);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<Boolean> blocked = executor.submit(blockedRoom, () -> await(release));
+
+    assertThat(executor.submit(otherRoom, () -> "done").get(5, TimeUnit.SECONDS)).isEqualTo("done");
+    assertThat(blocked).isNotDone();
+    release.countDown();
+    assertThat(blocked.get(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  // 샤드 대기열이 가득 차면 바로 거절하고, 대기열 길이를 지표로 노출한다.
+  @Test
+  void testFullShardRejectsRequest() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch running = new CountDownLatch(1);
+    executor.submit("room-0", () -> { running.countDown(); return await(release); });
+    assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+    executor.submit("room-0", () -> "queued-1");
+    executor.submit("room-0", () -> "queued-2");
+
+    int shard = executor.shardOf("room-0");
+    assertThat(executor.backlog(shard)).isEqualTo(2);
+    assertThat(meterRegistry.get("gift.room.shard.backlog").tag("shard", String.valueOf(shard)).gauge().value()).isEqualTo(2.0);
+
+    CompletableFuture<String> rejected = executor.submit("room-0", () -> "rejected");
+    assertThatThrownBy(rejected::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(ServiceUnavailableException.class);
+    assertThat(meterRegistry.get("gift.room.shard.rejected").counter().count()).isEqualTo(1.0);
+    release.countDown();
+  }
+
+  private String roomInOtherShard(String roomId) {
+    for(int i = 1; ; i++) {
+      if(executor.shardOf("room-" + i) != executor.shardOf(roomId)) return "room-" + i;
+    }
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
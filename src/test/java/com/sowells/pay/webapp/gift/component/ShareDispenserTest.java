@@ -0,0 +1,218 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.entity.GiftHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ShareDispenserTest {
+  JdbcTemplate jdbcTemplate;
+  ShareDispenser dispenser;
+
+  @BeforeEach
+  void setUp() {
+    jdbcTemplate = mock(JdbcTemplate.class);
+    when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenAnswer(invocation -> updated(invocation.getArgument(1), 1));
+    dispenser = new ShareDispenser(jdbcTemplate, new ReceiveJournal(), new InMemoryGiftStateStore(), new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(dispenser, "enabled", true);
+    ReflectionTestUtils.setField(dispenser, "FLUSH_SIZE", 1000);
+    ReflectionTestUtils.setField(dispenser, "MAX_ATTEMPTS", 10);
+  }
+
+  // 동시에 받기 요청이 몰려도 분배건은 한번씩만 할당되어야 한다.
+  @Test
+  void testConcurrentClaimsNeverShareAHistory() throws InterruptedException {
+    final int numOfShares = 100;
+    final int numOfReceivers = 500;
+    dispenser.register(0L, histories(numOfShares, 10), new Timestamp(System.currentTimeMillis() + 60000));
+
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger accepted = new AtomicInteger();
+    AtomicInteger unexpected = new AtomicInteger();
+    AtomicLong sumAmount = new AtomicLong();
+    for(int i = 0; i < numOfReceivers; i++) {
+      final long userId = i;
+      executor.execute(() -> {
+        try { start.await(); } catch (InterruptedException e) { return; }
+        ShareDispenser.Claim claim = dispenser.claim(0L, userId);
+        if(claim.isAccepted()) {
+          accepted.incrementAndGet();
+          sumAmount.addAndGet(claim.getAmount());
+        } else if(claim.getError() != Errors.ALREADY_FULLY_CONSUMED) {
+          unexpected.incrementAndGet();
+        }
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(accepted.get()).isEqualTo(numOfShares);
+    assertThat(unexpected.get()).isZero();
+    assertThat(sumAmount.get()).isEqualTo(numOfShares * 10L);
+
+    dispenser.flush();
+    verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<?> batch) -> batch.size() == numOfShares), eq(numOfShares), any());
+  }
+
+  @Test
+  void testOneCanClaimOnlyOnce() {
+    dispenser.register(0L, histories(2, 10), new Timestamp(System.currentTimeMillis() + 60000));
+
+    assertThat(dispenser.claim(0L, 1).isAccepted()).isTrue();
+    assertThat(dispenser.claim(0L, 1).getError()).isEqualTo(Errors.ALREADY_RECEIVED);
+  }
+
+  @Test
+  void testUnregisteredRequestFallsBack() {
+    assertThat(dispenser.claim(999L, 1)).isNull();
+  }
+
+  // 특정 할당 때문에 batch 가 실패하면 나누어 반영하고, 그 할당만 dead letter 로 옮긴 뒤 저널을 비운다.
+  @Test
+  void testRejectedAssignmentIsDeadLettered() {
+    List<Long> applied = new ArrayList<>();
+    when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenAnswer(invocation -> {
+      List<ShareDispenser.Assignment> batch = invocation.getArgument(1);
+      if(batch.stream().anyMatch(a -> a.receiverId == 3)) throw new DataIntegrityViolationException("uk_gift_history_request_receiver");
+      batch.forEach(a -> applied.add(a.receiverId));
+      return updated(batch, 1);
+    });
+    dispenser.register(0L, histories(5, 10), new Timestamp(System.currentTimeMillis() + 60000));
+    for(long userId = 1; userId <= 5; userId++) dispenser.claim(0L, userId);
+
+    assertThat(dispenser.flush()).isTrue();
+
+    assertThat(applied).containsExactlyInAnyOrder(1L, 2L, 4L, 5L);
+    verify(jdbcTemplate).update(startsWith("insert into t_gift_dead_letter"), eq(2L), eq(3L), eq("DataIntegrityViolationException"), any());
+    assertThat(dispenser.flush()).isTrue();
+  }
+
+  // DB 연결 장애는 횟수와 관계없이 계속 다시 시도하고 dead letter 로 옮기지 않는다.
+  @Test
+  void testTransientFailureIsRetriedWithoutDeadLetter() {
+    ReflectionTestUtils.setField(dispenser, "MAX_ATTEMPTS", 3);
+    when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenThrow(new CannotGetJdbcConnectionException("db down"));
+    dispenser.register(0L, histories(2, 10), new Timestamp(System.currentTimeMillis() + 60000));
+    dispenser.claim(0L, 1);
+
+    for(int i = 0; i < 10; i++) assertThat(dispenser.flush()).isFalse();
+    verify(jdbcTemplate, never()).update(anyString(), any(), any(), any(), any());
+    assertThat(dispenser.numOfPendingAssignments()).isEqualTo(1);
+  }
+
+  // dead letter 저장도 실패하면 할당은 큐에 남고 저널 세그먼트도 지우지 않는다.
+  @Test
+  void testAssignmentIsKeptWhenDeadLetterFails(@TempDir Path directory) throws Exception {
+    ReceiveJournal journal = new ReceiveJournal();
+    ReflectionTestUtils.setField(journal, "enabled", true);
+    ReflectionTestUtils.setField(journal, "DIRECTORY", directory.toString());
+    journal.open();
+    try {
+      dispenser = new ShareDispenser(jdbcTemplate, journal, new InMemoryGiftStateStore(), new SimpleMeterRegistry());
+      ReflectionTestUtils.setField(dispenser, "enabled", true);
+      ReflectionTestUtils.setField(dispenser, "FLUSH_SIZE", 1000);
+      ReflectionTestUtils.setField(dispenser, "MAX_ATTEMPTS", 3);
+      when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenThrow(new IllegalStateException("db down"));
+      when(jdbcTemplate.update(startsWith("insert into t_gift_dead_letter"), any(), any(), any(), any())).thenThrow(new IllegalStateException("db down"));
+      dispenser.register(0L, histories(2, 10), new Timestamp(System.currentTimeMillis() + 60000));
+      dispenser.claim(0L, 1);
+
+      for(int i = 0; i < 5; i++) assertThat(dispenser.flush()).isFalse();
+
+      verify(jdbcTemplate, atLeastOnce()).update(startsWith("insert into t_gift_dead_letter"), any(), any(), any(), any());
+      assertThat(dispenser.numOfPendingAssignments()).isEqualTo(1);
+      assertThat(dispenser.deadLetters.count()).isZero();
+      try(Stream<Path> segments = Files.list(directory)) {
+        assertThat(segments.mapToLong(this::sizeOf).sum()).isEqualTo(ReceiveJournal.RECORD_SIZE);
+      }
+    } finally {
+      journal.close();
+    }
+  }
+
+  // 나누어 반영하다 실패하면 아직 처리하지 못한 할당만 다시 반영하여, 이미 반영한 할당을 다시 쓰지 않는다.
+  @Test
+  void testOnlyUnprocessedAssignmentsAreRequeued() {
+    List<Long> applied = new ArrayList<>();
+    when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenAnswer(invocation -> {
+      List<ShareDispenser.Assignment> batch = invocation.getArgument(1);
+      if(batch.stream().anyMatch(a -> a.receiverId == 3)) throw new DataIntegrityViolationException("uk_gift_history_request_receiver");
+      batch.forEach(a -> applied.add(a.receiverId));
+      return updated(batch, 1);
+    });
+    when(jdbcTemplate.update(startsWith("insert into t_gift_dead_letter"), any(), any(), any(), any()))
+      .thenThrow(new IllegalStateException("db down")).thenReturn(1);
+    dispenser.register(0L, histories(5, 10), new Timestamp(System.currentTimeMillis() + 60000));
+    for(long userId = 1; userId <= 5; userId++) dispenser.claim(0L, userId);
+
+    assertThat(dispenser.flush()).isFalse();
+    assertThat(dispenser.flush()).isTrue();
+
+    assertThat(applied).containsExactlyInAnyOrder(1L, 2L, 4L, 5L);
+    verify(jdbcTemplate, times(2)).update(startsWith("insert into t_gift_dead_letter"), eq(2L), eq(3L), eq("DataIntegrityViolationException"), any());
+    assertThat(dispenser.deadLetters.count()).isEqualTo(1.0);
+  }
+
+  // 분배건이 이미 정리되어 반영되지 않은 할당은 건수를 세고 dead letter 로 남긴다.
+  @Test
+  void testMissingHistoryIsDeadLettered() {
+    when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenAnswer(invocation -> updated(invocation.getArgument(1), 0));
+    when(jdbcTemplate.queryForObject(startsWith("select count(*) from t_gift_history"), eq(Long.class), any())).thenReturn(0L);
+    dispenser.register(0L, histories(2, 10), new Timestamp(System.currentTimeMillis() + 60000));
+    dispenser.claim(0L, 1);
+
+    assertThat(dispenser.flush()).isTrue();
+    assertThat(dispenser.missingHistories.count()).isEqualTo(1.0);
+    verify(jdbcTemplate).update(startsWith("insert into t_gift_dead_letter"), eq(0L), eq(1L), eq("HISTORY_NOT_FOUND"), any());
+  }
+
+  private long sizeOf(Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private int[][] updated(List<?> batch, int count) {
+    int[] counts = new int[batch.size()];
+    Arrays.fill(counts, count);
+    return new int[][]{counts};
+  }
+
+  private List<GiftHistory> histories(int size, long amount) {
+    List<GiftHistory> histories = new ArrayList<>();
+    for(int i = 0; i < size; i++) {
+      GiftHistory history = new GiftHistory();
+      history.setHistoryId((long) i);
+      history.setAmount(amount);
+      histories.add(history);
+    }
+    return histories;
+  }
+}
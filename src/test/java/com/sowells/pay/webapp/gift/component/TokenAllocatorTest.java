@@ -0,0 +1,114 @@
+package com.sowells.pay.webapp.gift.component;
+
+import com.sowells.pay.webapp.gift.domain.IssuedToken;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TokenAllocatorTest {
+  GiftOrderRepository orderRepository;
+  TokenFactory tokenFactory;
+  TokenAllocator allocator;
+
+  @BeforeEach
+  void setUp() {
+    orderRepository = mock(GiftOrderRepository.class);
+    when(orderRepository.findTokensByRoomIdOrderByCreateTime(anyString())).thenReturn(Collections.emptyList());
+    tokenFactory = new TokenFactory();
+    ReflectionTestUtils.setField(tokenFactory, "GIFT_TOKEN_SIZE", 1);
+    allocator = new TokenAllocator(tokenFactory, orderRepository, new InMemoryGiftStateStore());
+    ReflectionTestUtils.setField(allocator, "VISIBLE_PERIOD_MILLIS", 60000L);
+  }
+
+  @Test
+  void testTokenCodec() {
+    ReflectionTestUtils.setField(tokenFactory, "GIFT_TOKEN_SIZE", 3);
+    assertThat(tokenFactory.spaceSize()).isEqualTo(36 * 36 * 36);
+    assertThat(tokenFactory.encode(0)).isEqualTo("000");
+    assertThat(tokenFactory.encode(tokenFactory.spaceSize() - 1)).isEqualTo("zzz");
+    assertThat(tokenFactory.decode(tokenFactory.encode(12345))).isEqualTo(12345);
+    assertThat(tokenFactory.decode("ABC")).isEqualTo(-1);
+    assertThat(tokenFactory.decode("ab")).isEqualTo(-1);
+  }
+
+  // 토큰 공간을 모두 사용할 때까지 중복 없이 발급하고, 이후에는 발급하지 않는다.
+  @Test
+  void testAllocatesEveryTokenOnce() {
+    Set<String> tokens = new HashSet<>();
+    for(int i = 0; i < 36; i++) {
+      tokens.add(allocator.allocate("room-0").getToken());
+    }
+    assertThat(tokens).hasSize(36);
+    assertThat(allocator.occupancy("room-0")).isEqualTo(1.0);
+    assertThat(allocator.allocate("room-0")).isNull();
+    assertThat(allocator.allocate("room-1")).isNotNull();
+  }
+
+  // 반납된 토큰은 이전 뿌리기 건이 남아있을 수 있으므로 recycled 로 재발급된다.
+  @Test
+  void testReleasedTokenIsRecycled() {
+    for(int i = 0; i < 36; i++) allocator.allocate("room-0");
+    allocator.release("room-0", "a");
+
+    TokenAllocator.Allocation allocation = allocator.allocate("room-0");
+    assertThat(allocation.getToken()).isEqualTo("a");
+    assertThat(allocation.isRecycled()).isTrue();
+  }
+
+  // DB에 발급 이력이 있는 토큰은 조회 가능 기간 동안 발급하지 않는다.
+  @Test
+  void testIssuedTokensAreLoadedFromRepository() {
+    long currentTime = System.currentTimeMillis();
+    when(orderRepository.findTokensByRoomIdOrderByCreateTime("room-0")).thenReturn(Arrays.asList(
+      issued("0", currentTime - 120000), // 조회 가능 기간이 지난 토큰
+      issued("1", currentTime)));
+
+    Set<String> tokens = new HashSet<>();
+    TokenAllocator.Allocation allocation;
+    while((allocation = allocator.allocate("room-0")) != null) {
+      tokens.add(allocation.getToken());
+      if(allocation.getToken().equals("0")) assertThat(allocation.isRecycled()).isTrue();
+    }
+    assertThat(tokens).hasSize(35).contains("0").doesNotContain("1");
+  }
+
+  // 상태 저장소를 함께 사용하는 노드들은 같은 대화방에 같은 토큰을 발급하지 않는다.
+  @Test
+  void testNodesSharingStateStoreNeverIssueSameToken() {
+    GiftStateStore stateStore = new InMemoryGiftStateStore();
+    TokenAllocator node1 = new TokenAllocator(tokenFactory, orderRepository, stateStore);
+    TokenAllocator node2 = new TokenAllocator(tokenFactory, orderRepository, stateStore);
+    ReflectionTestUtils.setField(node1, "VISIBLE_PERIOD_MILLIS", 60000L);
+    ReflectionTestUtils.setField(node2, "VISIBLE_PERIOD_MILLIS", 60000L);
+
+    Set<String> tokens = new HashSet<>();
+    for(int i = 0; i < 18; i++) {
+      assertThat(tokens.add(node1.allocate("room-0").getToken())).isTrue();
+      assertThat(tokens.add(node2.allocate("room-0").getToken())).isTrue();
+    }
+    assertThat(node1.allocate("room-0")).isNull();
+    assertThat(node2.allocate("room-0")).isNull();
+
+    // 반납된 토큰은 다른 노드에서 발급될 수 있다.
+    node1.release("room-0", "a");
+    assertThat(stateStore.reserveToken("room-0", "a", System.currentTimeMillis() + 60000)).isTrue();
+  }
+
+  private IssuedToken issued(String token, long createTime) {
+    return new IssuedToken() {
+      @Override public String getRoomId() { return "room"; }
+      @Override public String getToken() { return token; }
+      @Override public Timestamp getCreateTime() { return new Timestamp(createTime); }
+    };
+  }
+}
@@ -0,0 +1,114 @@
+package com.sowells.pay.webapp.gift.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.component.GiftApiExecutor;
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.domain.GiftCreationRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import static org.assertj.core.api.Assertions.*;
+
+// 처리 스레드 하나, 대기열 하나로 띄워 처리 한도를 쉽게 채운다.
+@SpringBootTest(classes = PayWebApplication.class, properties = {
+  "gift.api.execution-mode=async", "gift.api.async.threads=1", "gift.api.async.queue-capacity=1"})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+public class AsyncGiftControllerTest {
+  @Autowired
+  MockMvc mockMvc;
+
+  @Autowired
+  GiftApiExecutor executor;
+
+  ObjectMapper objectMapper = new ObjectMapper();
+
+  final String HEADER_USER_ID = "X-USER-ID";
+  final String HEADER_ROOM_ID = "X-ROOM-ID";
+
+  // 비동기 모드에서도 생성/받기가 처리 스레드에서 처리되어 응답된다.
+  @Test
+  public void testRequestsAreProcessedAsynchronously() throws Exception {
+    final String roomId = "room-async";
+    MvcResult created = mockMvc.perform(createRequest(0, roomId, 1000, 2))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    String token = mockMvc.perform(asyncDispatch(created))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+    assertThat(token).isNotEmpty();
+
+    MvcResult received = mockMvc.perform(put("/gift/"+token)
+      .header(HEADER_USER_ID, 1)
+      .header(HEADER_ROOM_ID, roomId))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    mockMvc.perform(asyncDispatch(received))
+      .andExpect(status().isOk());
+  }
+
+  // 처리 스레드와 대기열이 모두 차면 요청을 쌓아두지 않고 503 으로 바로 거절한다.
+  @Test
+  public void testRequestIsRejectedWhenPoolIsSaturated() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch running = new CountDownLatch(1);
+    CompletableFuture<Boolean> blocking = executor.submit("room-busy", () -> {
+      running.countDown();
+      return await(release);
+    });
+    CompletableFuture<Boolean> queued = null;
+    try {
+      // 처리 스레드가 막힌 뒤에 대기열을 채운다.
+      assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+      queued = executor.submit("room-busy", () -> true);
+      assertThat(queued).isNotDone();
+
+      MvcResult result = mockMvc.perform(createRequest(0, "room-busy", 1000, 2))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+      mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(content().string(Errors.SERVER_BUSY.getMessage()));
+    } finally {
+      release.countDown();
+    }
+    assertThat(blocking.get(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(queued.get(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  private MockHttpServletRequestBuilder createRequest(long userId, String roomId, long totalAmount, int maxNumOfRecipients) throws Exception {
+    GiftCreationRequest req = new GiftCreationRequest();
+    req.setMaxNumOfRecipients(maxNumOfRecipients);
+    req.setTotalAmount(totalAmount);
+    return post("/gift")
+      .contentType("application/json")
+      .header(HEADER_USER_ID, userId)
+      .header(HEADER_ROOM_ID, roomId)
+      .content(objectMapper.writeValueAsString(req));
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -5,21 +5,27 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sowells.pay.webapp.PayWebApplication;
 import com.sowells.pay.webapp.gift.domain.GiftCreationRequest;
 import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
-import org.junit.Test;
-import org.junit.runner.RunWith;
+import com.sowells.pay.webapp.gift.service.GiftService;
+import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
-import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import static org.assertj.core.api.Assertions.*;
 
-@RunWith(SpringRunner.class)
 @SpringBootTest(classes = PayWebApplication.class)
 @ActiveProfiles("test")
 @AutoConfigureMockMvc
@@ -30,6 +36,12 @@ public class GiftControllerTest {
   @Autowired
   GiftController giftController;
 
+  @Autowired
+  GiftService giftService;
+
+  @Autowired
+  ObjectMapper mvcObjectMapper; // 응답을 쓰는 ObjectMapper
+
   ObjectMapper objectMapper = new ObjectMapper();
 
   final String HEADER_USER_ID = "X-USER-ID";
@@ -135,6 +147,66 @@ public class GiftControllerTest {
     assertThat(giftInfo.getTotalAmount()).isEqualTo(totalAmount);
   }
 
+  // 조회 응답 JSON 은 받기 완료된 정보를 배열로 들고 있어도 기존과 같은 바이트로 쓰여야 한다.
+  @Test
+  public void testRetrievingJsonKeepsFormat() throws Exception {
+    GiftInfoResponse response = new GiftInfoResponse(new Timestamp(1593216000123L), 1000, 601, new long[]{7, 8}, new long[]{300, 301});
+    response.getCreationTime().setTime(0); // 공유되는 응답은 밖에서 바꿀 수 없다.
+    assertThat(mvcObjectMapper.writeValueAsString(response)).isEqualTo(
+      "{\"creationTime\":\"2020-06-27T00:00:00.123+00:00\",\"totalAmount\":1000,\"receivedAmount\":601,"
+        + "\"recevings\":[{\"receiverId\":7,\"amount\":300},{\"receiverId\":8,\"amount\":301}]}");
+    assertThat(mvcObjectMapper.writeValueAsString(new GiftInfoResponse(null, 0))).isEqualTo(
+      "{\"creationTime\":null,\"totalAmount\":0,\"receivedAmount\":0,\"recevings\":[]}");
+
+    GiftInfoResponse read = objectMapper.readValue(mvcObjectMapper.writeValueAsString(response), GiftInfoResponse.class);
+    assertThat(read.getRecevings()).containsExactly(new GiftInfoResponse.Receiving(7, 300), new GiftInfoResponse.Receiving(8, 301));
+  }
+
+  // Accept 헤더로 요청하면 조회 응답을 바이너리로 내려준다.
+  @Test
+  public void testRetrievingBinaryByAcceptHeader() throws Exception {
+    final long userId = 0;
+    final String roomId = "room-binary";
+    GiftCreationRequest req = new GiftCreationRequest();
+    req.setMaxNumOfRecipients(2);
+    req.setTotalAmount(1000);
+
+    String token = mockMvc.perform(post("/gift")
+      .contentType("application/json")
+      .header(HEADER_USER_ID, userId)
+      .header(HEADER_ROOM_ID, roomId)
+      .content(objectMapper.writeValueAsString(req)))
+      .andReturn().getResponse().getContentAsString();
+    long receivedAmount = Long.parseLong(mockMvc.perform(put("/gift/"+token)
+      .header(HEADER_USER_ID, 1)
+      .header(HEADER_ROOM_ID, roomId))
+      .andReturn().getResponse().getContentAsString());
+
+    MvcResult result = mockMvc.perform(get("/gift/"+token)
+      .accept(GiftInfoBinaryMessageConverter.MEDIA_TYPE)
+      .header(HEADER_USER_ID, userId)
+      .header(HEADER_ROOM_ID, roomId))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Content-Type", GiftInfoBinaryMessageConverter.MEDIA_TYPE_VALUE))
+      .andReturn();
+
+    ByteBuffer buffer = ByteBuffer.wrap(result.getResponse().getContentAsByteArray());
+    assertThat(buffer.getLong()).isPositive(); // 뿌린 시각
+    assertThat(buffer.getLong()).isEqualTo(1000);
+    assertThat(buffer.getLong()).isEqualTo(receivedAmount);
+    assertThat(buffer.getInt()).isEqualTo(1);
+    assertThat(buffer.getLong()).isEqualTo(1);
+    assertThat(buffer.getLong()).isEqualTo(receivedAmount);
+    assertThat(buffer.hasRemaining()).isFalse();
+
+    // Accept 헤더가 없으면 JSON 으로 내려간다.
+    mockMvc.perform(get("/gift/"+token)
+      .header(HEADER_USER_ID, userId)
+      .header(HEADER_ROOM_ID, roomId))
+      .andExpect(status().isOk())
+      .andExpect(header().string("Content-Type", "application/json"));
+  }
+
   @Test
   public void testRetrievingFailOnInvalidInput() throws Exception {
     final long userId = 0;
@@ -158,4 +230,91 @@ public class GiftControllerTest {
       .header(HEADER_ROOM_ID, roomId))
       .andExpect(status().isBadRequest());
   }
+
+  // 뿌린 사용자는 받기 내역을 구독하여, 구독 전후의 받기 내역을 받고 모두 받아가면 끝난다.
+  @Test
+  public void testReceiptStreamEndsWhenFullyConsumed() throws Exception {
+    final long userId = 0;
+    final String roomId = "room-receipts";
+    String token = createGift(userId, roomId, 1000, 2);
+    receive(1, roomId, token);
+
+    MvcResult result = mockMvc.perform(get("/gift/"+token+"/receipts")
+      .header(HEADER_USER_ID, userId)
+      .header(HEADER_ROOM_ID, roomId))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    receive(2, roomId, token);
+
+    String events = awaitCompleted(result);
+    assertThat(events).contains("\"receiverId\":1", "\"receiverId\":2", "data:FULLY_CONSUMED");
+    assertThat(events.split("event:receipt", -1)).hasSize(3);
+  }
+
+  // 모두 받아가지 않아도 뿌린 건이 만료되면 끝난다.
+  @Test
+  public void testReceiptStreamEndsOnExpiry() throws Exception {
+    final long userId = 0;
+    final String roomId = "room-receipts-expiry";
+    GiftService target = AopTestUtils.getTargetObject(giftService);
+    long expireDuration = (long) ReflectionTestUtils.getField(target, "EXPIRE_DURATION");
+    String token;
+    try {
+      ReflectionTestUtils.setField(target, "EXPIRE_DURATION", 300L);
+      token = createGift(userId, roomId, 1000, 2);
+    } finally {
+      ReflectionTestUtils.setField(target, "EXPIRE_DURATION", expireDuration);
+    }
+
+    MvcResult result = mockMvc.perform(get("/gift/"+token+"/receipts")
+      .header(HEADER_USER_ID, userId)
+      .header(HEADER_ROOM_ID, roomId))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    receive(1, roomId, token);
+
+    String events = awaitCompleted(result);
+    assertThat(events).contains("\"receiverId\":1", "data:EXPIRED");
+  }
+
+  @Test
+  public void testReceiptStreamIsOnlyForCreator() throws Exception {
+    final String roomId = "room-receipts-other";
+    String token = createGift(0, roomId, 1000, 2);
+
+    mockMvc.perform(get("/gift/"+token+"/receipts")
+      .header(HEADER_USER_ID, 1)
+      .header(HEADER_ROOM_ID, roomId))
+      .andExpect(status().isBadRequest());
+  }
+
+  private String createGift(long userId, String roomId, long totalAmount, int maxNumOfRecipients) throws Exception {
+    GiftCreationRequest req = new GiftCreationRequest();
+    req.setMaxNumOfRecipients(maxNumOfRecipients);
+    req.setTotalAmount(totalAmount);
+    return mockMvc.perform(post("/gift")
+      .contentType("application/json")
+      .header(HEADER_USER_ID, userId)
+      .header(HEADER_ROOM_ID, roomId)
+      .content(objectMapper.writeValueAsString(req)))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+  }
+
+  private void receive(long userId, String roomId, String token) throws Exception {
+    mockMvc.perform(put("/gift/"+token)
+      .header(HEADER_USER_ID, userId)
+      .header(HEADER_ROOM_ID, roomId))
+      .andExpect(status().isOk());
+  }
+
+  private String awaitCompleted(MvcResult result) throws Exception {
+    long deadline = System.currentTimeMillis() + 5000;
+    while(!result.getResponse().getContentAsString().contains("event:completed") && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    String events = result.getResponse().getContentAsString();
+    assertThat(events).contains("event:completed");
+    return events;
+  }
 }
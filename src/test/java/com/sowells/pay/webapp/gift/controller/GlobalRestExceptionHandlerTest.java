@@ -0,0 +1,56 @@
+package com.sowells.pay.webapp.gift.controller;
+
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.assertj.core.api.Assertions.*;
+
+class GlobalRestExceptionHandlerTest {
+  GlobalRestExceptionHandler handler;
+  ServletWebRequest request;
+
+  @BeforeEach
+  void setUp() {
+    handler = new GlobalRestExceptionHandler();
+    ReflectionTestUtils.setField(handler, "LOG_INTERVAL_MILLIS", 60000L);
+    request = new ServletWebRequest(new MockHttpServletRequest("PUT", "/gift"));
+  }
+
+  // 거절 응답은 에러 코드별로 미리 만들어 둔 응답을 재사용한다.
+  @Test
+  void testBadRequestResponseIsPreallocatedPerError() {
+    ResponseEntity<Object> first = handler.handleBadRequest(new BadRequestException(Errors.ALREADY_RECEIVED, " userId: %d", 1L), request);
+    ResponseEntity<Object> second = handler.handleBadRequest(new BadRequestException(Errors.ALREADY_RECEIVED, " userId: %d", 2L), request);
+    assertThat(first).isSameAs(second);
+    assertThat(first.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    assertThat(first.getBody()).isEqualTo(Errors.ALREADY_RECEIVED.getMessage());
+    assertThat(handler.handleBadRequest(new BadRequestException(Errors.EXPIRED, ""), request).getBody()).isEqualTo(Errors.EXPIRED.getMessage());
+  }
+
+  // 같은 에러 코드는 간격 당 한 건만 로그로 남기고 나머지는 생략 건수로 센다.
+  @Test
+  void testRepeatedBadRequestsAreSuppressed() {
+    for(int i = 0; i < 100; i++) {
+      handler.handleBadRequest(new BadRequestException(Errors.ALREADY_FULLY_CONSUMED, ""), request);
+    }
+    handler.handleBadRequest(new BadRequestException(Errors.INVALID_TOKEN, ""), request);
+    Object[] suppressedCounts = (Object[]) ReflectionTestUtils.getField(handler, "suppressedCounts");
+    assertThat(suppressedCounts[Errors.ALREADY_FULLY_CONSUMED.ordinal()]).hasToString("99");
+    assertThat(suppressedCounts[Errors.INVALID_TOKEN.ordinal()]).hasToString("0");
+  }
+
+  // 예상된 거절은 스택 트레이스 없이 만들어지고, 메시지는 조회할 때 만들어진다.
+  @Test
+  void testBadRequestExceptionIsStackless() {
+    BadRequestException e = new BadRequestException(Errors.EXPIRED, " userId: %d, roomId: %s", 1L, "room-0");
+    assertThat(e.getStackTrace()).isEmpty();
+    assertThat(e.getMessage()).isEqualTo(Errors.EXPIRED.getMessage() + " userId: 1, roomId: room-0");
+  }
+}
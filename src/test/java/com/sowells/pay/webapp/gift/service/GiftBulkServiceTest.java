@@ -0,0 +1,143 @@
+package com.sowells.pay.webapp.gift.service;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.component.ShareDispenser;
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.domain.BulkGiftEntry;
+import com.sowells.pay.webapp.gift.domain.BulkGiftResult;
+import com.sowells.pay.webapp.gift.domain.GiftCreationRequest;
+import com.sowells.pay.webapp.gift.entity.GiftHistory;
+import com.sowells.pay.webapp.gift.entity.GiftOrder;
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
+import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(classes = PayWebApplication.class)
+class GiftBulkServiceTest {
+  @Autowired GiftBulkService bulkService;
+  @Autowired GiftOrderRepository orderRepository;
+  @Autowired GiftHistoryRepository historyRepository;
+  @Autowired GiftService giftService;
+  @Autowired ShareDispenser shareDispenser;
+
+  int chunkSize;
+
+  @BeforeEach
+  void setUp() {
+    chunkSize = bulkService.CHUNK_SIZE;
+    ReflectionTestUtils.setField(bulkService, "CHUNK_SIZE", 3);
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.setField(bulkService, "CHUNK_SIZE", chunkSize);
+  }
+
+  // 대화방별 결과가 요청 순서대로 나오고, 잘못된 요청은 그 대화방만 실패한다.
+  @Test
+  void testBulkCreationReportsResultsInOrder() {
+    List<BulkGiftEntry> entries = new ArrayList<>();
+    for(int i = 0; i < 8; i++) entries.add(new BulkGiftEntry("bulk-room-" + i, 1000 + i, 1 + i));
+    entries.add(2, new BulkGiftEntry("bulk-room-x", 1, 2));
+    entries.add(5, new BulkGiftEntry(null, 1000, 2));
+
+    List<BulkGiftResult> results = addAll(entries);
+
+    assertThat(results).extracting(BulkGiftResult::getIndex).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    assertThat(results.get(2).getError()).isEqualTo(Errors.AMOUNT_MUST_GREATER_THAN_RECEIVERS);
+    assertThat(results.get(5).getError()).isEqualTo(Errors.ROOM_ID_REQUIRED);
+    for(BulkGiftResult result : results) {
+      if(result.getError() != null) continue;
+      GiftOrder order = orderRepository.findByRoomIdAndToken(result.getRoomId(), result.getToken());
+      BulkGiftEntry entry = entries.get(result.getIndex());
+      assertThat(order.getTotalAmount()).isEqualTo(entry.getTotalAmount());
+
+      List<GiftHistory> histories = historyRepository.findByRequestIdInOrderByHistoryId(Collections.singletonList(order.getRequestId()));
+      assertThat(histories).hasSize(entry.getMaxNumOfRecipients());
+      assertThat(histories.stream().mapToLong(GiftHistory::getAmount).sum()).isEqualTo(entry.getTotalAmount());
+    }
+  }
+
+  // 대화방의 토큰이 모두 사용중이면 남은 요청만 실패한다. (테스트 토큰 크기 1 - 36개)
+  @Test
+  void testBulkCreationFailsOnlyEntriesWithoutToken() {
+    List<BulkGiftEntry> entries = new ArrayList<>();
+    for(int i = 0; i < 40; i++) entries.add(new BulkGiftEntry("bulk-full-room", 100, 2));
+
+    List<BulkGiftResult> results = addAll(entries);
+
+    assertThat(results).filteredOn(r -> r.getToken() != null).hasSize(36);
+    assertThat(results).filteredOn(r -> r.getError() == Errors.NO_TOKEN_AVAILABLE).hasSize(4);
+    assertThat(results.stream().filter(r -> r.getToken() != null).map(BulkGiftResult::getToken).distinct()).hasSize(36);
+  }
+
+  // 분배기를 사용하면 분배건이 저장된 뒤 등록되어, 생성된 뿌리기 건을 메모리에서 받을 수 있다.
+  @Test
+  void testBulkCreationRegistersSharesToDispenser() {
+    ReflectionTestUtils.setField(shareDispenser, "enabled", true);
+    try {
+      List<BulkGiftEntry> entries = new ArrayList<>();
+      for(int i = 0; i < 5; i++) entries.add(new BulkGiftEntry("bulk-dispenser-room-" + i, 1000, 3));
+
+      List<BulkGiftResult> results = addAll(entries);
+
+      assertThat(results).allSatisfy(result -> {
+        assertThat(result.getError()).isNull();
+        assertThat(result.getToken()).isNotNull();
+      });
+      BulkGiftResult first = results.get(0);
+      long amount = giftService.receive(1, first.getRoomId(), first.getToken());
+      assertThat(amount).isPositive();
+      shareDispenser.flush();
+
+      GiftOrder order = orderRepository.findByRoomIdAndToken(first.getRoomId(), first.getToken());
+      assertThat(historyRepository.findReceivedAmount(order.getRequestId(), 1L)).isEqualTo(amount);
+    } finally {
+      ReflectionTestUtils.setField(shareDispenser, "enabled", false);
+    }
+  }
+
+  // 받을 인원이 단건 생성 한도를 넘는 요청은 그 대화방만 실패한다.
+  @Test
+  void testTooManyRecipientsFailsOnlyThatEntry() {
+    int max = GiftCreationRequest.MAX_NUM_OF_RECIPIENTS;
+    List<BulkGiftEntry> entries = new ArrayList<>();
+    entries.add(new BulkGiftEntry("bulk-max-room-0", 100000, max));
+    entries.add(new BulkGiftEntry("bulk-max-room-1", 100000, max + 1));
+    entries.add(new BulkGiftEntry("bulk-max-room-2", Long.MAX_VALUE, Integer.MAX_VALUE));
+
+    List<BulkGiftResult> results = addAll(entries);
+
+    assertThat(results.get(0).getError()).isNull();
+    assertThat(results.get(0).getToken()).isNotNull();
+    assertThat(results.get(1).getError()).isEqualTo(Errors.TOO_MANY_RECIPIENTS);
+    assertThat(results.get(2).getError()).isEqualTo(Errors.TOO_MANY_RECIPIENTS);
+  }
+
+  @Test
+  void testTooManyEntriesAreRejected() {
+    List<BulkGiftEntry> entries = Collections.nCopies(bulkService.MAX_ENTRIES + 1, new BulkGiftEntry("bulk-room", 100, 2));
+    assertThatThrownBy(() -> addAll(entries)).isInstanceOf(BadRequestException.class)
+      .extracting("error").isEqualTo(Errors.TOO_MANY_ENTRIES);
+  }
+
+  private List<BulkGiftResult> addAll(List<BulkGiftEntry> entries) {
+    List<BulkGiftResult> results = new ArrayList<>();
+    bulkService.addAll(0, entries, results::addAll);
+    return results;
+  }
+}
@@ -0,0 +1,93 @@
+package com.sowells.pay.webapp.gift.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.controller.GiftListController;
+import com.sowells.pay.webapp.gift.domain.CreatedGift;
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(classes = PayWebApplication.class)
+class GiftListServiceTest {
+  @Autowired GiftListService listService;
+  @Autowired GiftService giftService;
+  @Autowired GiftListController listController;
+  @Autowired ObjectMapper objectMapper;
+
+  int pageSize;
+
+  @BeforeEach
+  void setUp() {
+    pageSize = listService.PAGE_SIZE;
+    ReflectionTestUtils.setField(listService, "PAGE_SIZE", 2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.setField(listService, "PAGE_SIZE", pageSize);
+  }
+
+  // 최근에 뿌린 건부터 받기 완료 금액/인원과 함께 조회되고, 커서로 이어서 조회하면 빠지거나 겹치는 건이 없다.
+  @Test
+  void testCreatedGiftsArePagedByCursor() {
+    final long creatorId = 1900;
+    List<String> tokens = new ArrayList<>();
+    for(int i = 0; i < 5; i++) tokens.add(giftService.add(creatorId, "list-room-" + i, 1000, 3));
+    long receivedAmount = giftService.receive(creatorId + 1, "list-room-4", tokens.get(4)) + giftService.receive(creatorId + 2, "list-room-4", tokens.get(4));
+
+    List<CreatedGift> gifts = new ArrayList<>();
+    String cursor = listService.listCreated(creatorId, null, 3, gifts::addAll);
+    assertThat(cursor).isNotNull();
+    assertThat(listService.listCreated(creatorId, cursor, 3, gifts::addAll)).isNull();
+
+    assertThat(gifts).extracting(CreatedGift::getRoomId).containsExactly("list-room-4", "list-room-3", "list-room-2", "list-room-1", "list-room-0");
+    assertThat(gifts.get(0).getReceivedAmount()).isEqualTo(receivedAmount);
+    assertThat(gifts.get(0).getNumOfReceived()).isEqualTo(2);
+    assertThat(gifts.get(1).getReceivedAmount()).isZero();
+    assertThat(gifts.get(1).getNumOfReceived()).isZero();
+  }
+
+  // 응답은 페이지 단위로 스트림에 쓰여지며, 남은 건이 있으면 next 커서가 함께 내려간다.
+  @Test
+  void testCreatedGiftsAreStreamedAsJson() throws Exception {
+    final long creatorId = 1910;
+    for(int i = 0; i < 3; i++) giftService.add(creatorId, "list-json-room-" + i, 1000, 2);
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    listController.listCreated(creatorId, null, 2, response);
+    JsonNode body = objectMapper.readTree(response.getContentAsString());
+    assertThat(body.get("gifts")).hasSize(2);
+    assertThat(body.get("gifts").get(0).get("roomId").asText()).isEqualTo("list-json-room-2");
+    assertThat(body.get("gifts").get(0).get("totalAmount").asLong()).isEqualTo(1000);
+
+    response = new MockHttpServletResponse();
+    listController.listCreated(creatorId, body.get("next").asText(), 2, response);
+    body = objectMapper.readTree(response.getContentAsString());
+    assertThat(body.get("gifts")).hasSize(1);
+    assertThat(body.has("next")).isFalse();
+  }
+
+  @Test
+  void testInvalidCursorIsRejectedBeforeWriting() {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    assertThatThrownBy(() -> listController.listCreated(1920, "abc", 10, response))
+      .isInstanceOf(BadRequestException.class).extracting("error").isEqualTo(Errors.INVALID_CURSOR);
+    assertThat(response.isCommitted()).isFalse();
+    assertThat(response.getContentAsByteArray()).isEmpty();
+  }
+}
@@ -0,0 +1,92 @@
+package com.sowells.pay.webapp.gift.service;
+
+import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.constant.Errors;
+import com.sowells.pay.webapp.gift.exception.BadRequestException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(classes = PayWebApplication.class)
+class GiftReceiveCoalescerTest {
+  @Autowired GiftReceiveCoalescer coalescer;
+  @Autowired GiftService giftService;
+  @Autowired MeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(coalescer, "WINDOW_MICROS", 200_000L);
+    ReflectionTestUtils.setField(coalescer, "enabled", true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.setField(coalescer, "WINDOW_MICROS", 0L);
+    ReflectionTestUtils.setField(coalescer, "enabled", false);
+  }
+
+  // 동시에 들어온 받기 요청은 한번에 처리되며, 사용자별로 받은 금액 또는 거절 사유를 돌려받는다.
+  @Test
+  void testConcurrentReceivesAreAnsweredIndividually() throws Exception {
+    final long creatorId = 2100;
+    final String roomId = "coalesce-room-0";
+    String token = giftService.add(creatorId, roomId, 1000, 3);
+    long batches = meterRegistry.get("gift.receive.batch.size").summary().count();
+
+    // 받을 사용자 5명, 뿌린 사용자, 같은 사용자의 중복 요청
+    long[] userIds = {creatorId + 1, creatorId + 2, creatorId + 3, creatorId + 4, creatorId + 5, creatorId, creatorId + 1};
+    ExecutorService executor = Executors.newFixedThreadPool(userIds.length);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Long>> results = new ArrayList<>();
+    for(long userId : userIds) {
+      results.add(executor.submit(() -> {
+        start.await();
+        return coalescer.receive(userId, roomId, token);
+      }));
+    }
+    start.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+    long receivedAmount = 0;
+    List<Errors> errors = new ArrayList<>();
+    for(Future<Long> result : results) {
+      try {
+        receivedAmount += result.get();
+      } catch (ExecutionException e) {
+        assertThat(e.getCause()).isInstanceOf(BadRequestException.class);
+        errors.add(((BadRequestException) e.getCause()).getError());
+      }
+    }
+    assertThat(receivedAmount).isEqualTo(1000);
+    assertThat(errors).containsExactlyInAnyOrder(Errors.ALREADY_FULLY_CONSUMED, Errors.ALREADY_FULLY_CONSUMED,
+      Errors.NOT_ALLOWED_TO_CREATOR, Errors.ALREADY_RECEIVED);
+    assertThat(giftService.get(creatorId, roomId, token).getRecevings()).hasSize(3);
+    assertThat(meterRegistry.get("gift.receive.batch.size").summary().count() - batches).isLessThan(userIds.length);
+  }
+
+  @Test
+  void testSingleReceiveKeepsValidation() {
+    final long creatorId = 2110;
+    final String roomId = "coalesce-room-1";
+    String token = giftService.add(creatorId, roomId, 1000, 2);
+
+    assertThat(coalescer.receive(creatorId + 1, roomId, token)).isPositive();
+    assertThatThrownBy(() -> coalescer.receive(creatorId + 1, roomId, token))
+      .isInstanceOf(BadRequestException.class).extracting("error").isEqualTo(Errors.ALREADY_RECEIVED);
+    assertThatThrownBy(() -> coalescer.receive(creatorId + 1, roomId, "zz"))
+      .isInstanceOf(BadRequestException.class).extracting("error").isEqualTo(Errors.INVALID_TOKEN);
+  }
+}
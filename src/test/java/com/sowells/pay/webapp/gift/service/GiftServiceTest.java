@@ -1,11 +1,21 @@
 package com.sowells.pay.webapp.gift.service;
 
 import com.sowells.pay.webapp.PayWebApplication;
+import com.sowells.pay.webapp.gift.component.GiftInfoCache;
+import com.sowells.pay.webapp.gift.component.GiftOrderCache;
+import com.sowells.pay.webapp.gift.component.MoneyDivider;
+import com.sowells.pay.webapp.gift.component.ReceiptBroadcaster;
+import com.sowells.pay.webapp.gift.component.ReceiptListener;
+import com.sowells.pay.webapp.gift.component.ShareDispenser;
+import com.sowells.pay.webapp.gift.component.ShareSequence;
+import com.sowells.pay.webapp.gift.component.TokenFactory;
 import com.sowells.pay.webapp.gift.constant.Errors;
 import com.sowells.pay.webapp.gift.domain.GiftInfoResponse;
+import com.sowells.pay.webapp.gift.entity.GiftHistory;
 import com.sowells.pay.webapp.gift.entity.GiftOrder;
 import com.sowells.pay.webapp.gift.exception.BadRequestException;
 import com.sowells.pay.webapp.gift.exception.InternalException;
+import com.sowells.pay.webapp.gift.repository.GiftHistoryRepository;
 import com.sowells.pay.webapp.gift.repository.GiftOrderRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,10 +24,29 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.mock;
 
 @Slf4j
 @RunWith(SpringRunner.class)
@@ -30,6 +59,27 @@ class GiftServiceTest {
   @Autowired
   GiftOrderRepository giftOrderRepository;
 
+  @Autowired
+  GiftHistoryRepository giftHistoryRepository;
+
+  @Autowired
+  TokenFactory tokenFactory;
+
+  @Autowired
+  GiftInfoCache giftInfoCache;
+
+  @Autowired
+  GiftOrderCache giftOrderCache;
+
+  @Autowired
+  MoneyDivider moneyDivider;
+
+  @Autowired
+  ShareDispenser shareDispenser;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
   @Value("${gift.order.expire.duration}")
   long EXPIRE_DURATION;
 
@@ -95,6 +145,140 @@ class GiftServiceTest {
     }).isInstanceOf(InternalException.class).hasMessageContaining(Errors.NO_TOKEN_AVAILABLE.getMessage());
   }
 
+  // 생성 - optimistic 모드에서는 다른 노드가 먼저 발급한 토큰과 충돌하면 새 토큰으로 재시도한다.
+  @Test
+  void testOptimisticCreationRetriesOnTokenCollision() {
+    final String testRoomId = "room-optimistic";
+    final int numChars = 36; // 문자 26개 + 숫자 10개
+    final int numTakenByOthers = 5;
+    GiftService target = AopTestUtils.getTargetObject(giftService);
+    ReflectionTestUtils.setField(target, "CREATION_MODE", GiftService.CREATION_MODE_OPTIMISTIC);
+    try {
+      Set<String> tokens = new HashSet<>();
+      tokens.add(giftService.add(0, testRoomId, 10, 2));
+
+      // 이 노드 모르게 다른 노드가 토큰을 발급한 상황
+      for(int i = 0; tokens.size() < 1 + numTakenByOthers; i++) {
+        String token = tokenFactory.encode(i);
+        if(tokens.add(token)) {
+          GiftOrder order = new GiftOrder();
+          order.setRoomId(testRoomId);
+          order.setToken(token);
+          order.setTotalAmount(10);
+          order.setMaxNumOfRecipients(2);
+          order.setExpirationTime(new Timestamp(System.currentTimeMillis() + EXPIRE_DURATION));
+          giftOrderRepository.save(order);
+        }
+      }
+
+      for(int i = 0; i < numChars - 1 - numTakenByOthers; i++) {
+        assertThat(tokens.add(giftService.add(0, testRoomId, 10, 2))).isTrue();
+      }
+      assertThat(tokens).hasSize(numChars);
+      assertThatThrownBy(() -> {
+        giftService.add(0, testRoomId, 10, 2);
+      }).isInstanceOf(InternalException.class).hasMessageContaining(Errors.NO_TOKEN_AVAILABLE.getMessage());
+    } finally {
+      ReflectionTestUtils.setField(target, "CREATION_MODE", "serializable");
+    }
+  }
+
+  // 생성 - 대화방 샤드의 생성도 다른 노드가 먼저 발급한 토큰과 충돌하면 생성 모드와 관계없이 새 토큰으로 재시도한다.
+  @Test
+  void testRoomShardCreationRetriesOnTokenCollision() {
+    final String testRoomId = "room-shard-creation";
+    final int numChars = 36; // 문자 26개 + 숫자 10개
+    final int numTakenByOthers = 5;
+    Set<String> tokens = new HashSet<>();
+    tokens.add(giftService.addInRoomShard(0, testRoomId, 10, 2));
+
+    // 이 노드 모르게 다른 노드가 토큰을 발급한 상황
+    for(int i = 0; tokens.size() < 1 + numTakenByOthers; i++) {
+      String token = tokenFactory.encode(i);
+      if(tokens.add(token)) {
+        GiftOrder order = new GiftOrder();
+        order.setRoomId(testRoomId);
+        order.setToken(token);
+        order.setTotalAmount(10);
+        order.setMaxNumOfRecipients(2);
+        order.setExpirationTime(new Timestamp(System.currentTimeMillis() + EXPIRE_DURATION));
+        giftOrderRepository.save(order);
+      }
+    }
+
+    for(int i = 0; i < numChars - 1 - numTakenByOthers; i++) {
+      assertThat(tokens.add(giftService.addInRoomShard(0, testRoomId, 10, 2))).isTrue();
+    }
+    assertThat(tokens).hasSize(numChars);
+    assertThatThrownBy(() -> {
+      giftService.addInRoomShard(0, testRoomId, 1, 2);
+    }).isInstanceOf(BadRequestException.class);
+  }
+
+  // 받기 - 다른 노드가 DB 경로로 먼저 할당한 분배건은 분배기가 덮어쓰지 않고 dead letter 로 남긴다.
+  @Test
+  void testDispenserDoesNotOverwriteAssignedShare() {
+    final String testRoomId = "room-dispenser-assigned";
+    ReflectionTestUtils.setField(shareDispenser, "enabled", true);
+    try {
+      String token = giftService.add(0, testRoomId, 100, 1);
+      Long requestId = giftOrderRepository.findByRoomIdAndToken(testRoomId, token).getRequestId();
+      Long historyId = giftHistoryRepository.findByRequestIdInOrderByHistoryId(Collections.singletonList(requestId)).get(0).getHistoryId();
+      jdbcTemplate.update("update t_gift_history set receiver_id = ? where history_id = ?", 7, historyId); // 다른 노드의 할당
+
+      assertThat(giftService.receive(8, testRoomId, token)).isEqualTo(100);
+      assertThat(shareDispenser.flush()).isTrue();
+
+      assertThat(jdbcTemplate.queryForObject("select receiver_id from t_gift_history where history_id = ?", Long.class, historyId)).isEqualTo(7);
+      assertThat(jdbcTemplate.queryForObject("select reason from t_gift_dead_letter where history_id = ? and receiver_id = ?", String.class, historyId, 8))
+        .isEqualTo("ALREADY_ASSIGNED");
+    } finally {
+      ReflectionTestUtils.setField(shareDispenser, "enabled", false);
+    }
+  }
+
+  // 구독 - 분배기가 할당했지만 아직 DB에 반영하지 않은 받기도 구독 시점의 받기 내역에 포함된다.
+  @Test
+  void testReceiptSnapshotIncludesUnflushedAssignments() throws InterruptedException {
+    final String testRoomId = "room-dispenser-receipts";
+    ReflectionTestUtils.setField(shareDispenser, "enabled", true);
+    ReflectionTestUtils.setField(shareDispenser, "retryNotBefore", Long.MAX_VALUE); // 주기적인 flush 를 멈춘다.
+    try {
+      String token = giftService.add(0, testRoomId, 20, 2);
+      long received = giftService.receive(1, testRoomId, token);
+
+      List<Long> receiverIds = new CopyOnWriteArrayList<>();
+      List<String> completed = new CopyOnWriteArrayList<>();
+      CountDownLatch closed = new CountDownLatch(1);
+      giftService.subscribeReceipts(0, testRoomId, token).start(new ReceiptListener() {
+        @Override
+        public void onReceipt(long receiverId, long amount) {
+          receiverIds.add(receiverId);
+        }
+
+        @Override
+        public void onCompleted(String reason) {
+          completed.add(reason);
+        }
+
+        @Override
+        public void onClosed(Exception error) {
+          closed.countDown();
+        }
+      });
+      giftService.receive(2, testRoomId, token);
+
+      assertThat(closed.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(receiverIds).containsExactly(1L, 2L);
+      assertThat(completed).containsExactly(ReceiptBroadcaster.FULLY_CONSUMED);
+      assertThat(received).isPositive();
+    } finally {
+      ReflectionTestUtils.setField(shareDispenser, "retryNotBefore", 0L);
+      shareDispenser.flush();
+      ReflectionTestUtils.setField(shareDispenser, "enabled", false);
+    }
+  }
+
   // 받기 - 정상 받기된 경우 받은 금액을 리턴해야 한다.
   @Test
   void testReceivingWorks() throws InterruptedException {
@@ -109,13 +293,68 @@ class GiftServiceTest {
     GiftOrder order = giftOrderRepository.findByRoomIdAndToken(testRoomId, token);
 
     // 받기 처리가 DB까지 정상 수행되었는가
-    assertThat(order.getHistories()).isNotEmpty();
-    boolean historySaved = order.getHistories().stream().filter(h -> h.getReceiverId() != null && h.getReceiverId() == receiverId).findAny().isPresent();
+    boolean historySaved = giftHistoryRepository.existsByRequestIdAndReceiverId(order.getRequestId(), receiverId);
     assertThat(historySaved).isTrue();
+    assertThat(giftHistoryRepository.findReceivedAmount(order.getRequestId(), receiverId)).isEqualTo(receivedAmount);
 
     // 받기 되지 않은 나머지 1건이 남아있는가
-    boolean unreceivedExist = order.getHistories().stream().filter(h -> h.getReceiverId() == null).findAny().isPresent();
-    assertThat(unreceivedExist).isTrue();
+    assertThat(giftHistoryRepository.countByRequestIdAndReceiverIdIsNull(order.getRequestId())).isEqualTo(1);
+  }
+
+  // 받기 - 동시에 받기 요청이 몰려도 분배건은 한번씩만 할당되고, 받은 금액의 합은 뿌린 금액과 같아야 한다.
+  @Test
+  void testConcurrentReceivingPaysOutTotalAmount() throws InterruptedException {
+    final String testRoomId = "room-concurrent";
+    final long totalAmount = 100000;
+    final int maxNumOfReceivers = 50;
+    final int numOfUsers = 100;
+    final String token = giftService.add(0, testRoomId, totalAmount, maxNumOfReceivers);
+
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger received = new AtomicInteger();
+    AtomicLong receivedAmount = new AtomicLong();
+    List<Throwable> unexpectedErrors = new CopyOnWriteArrayList<>();
+    for(int i = 0; i < numOfUsers * 2; i++) {
+      final long receiverId = i % numOfUsers + 1; // 사용자마다 두번씩 요청한다.
+      executor.execute(() -> {
+        try {
+          start.await();
+          receivedAmount.addAndGet(giftService.receive(receiverId, testRoomId, token));
+          received.incrementAndGet();
+        } catch (BadRequestException e) {
+          if(!e.getMessage().contains(Errors.ALREADY_FULLY_CONSUMED.getMessage()) && !e.getMessage().contains(Errors.ALREADY_RECEIVED.getMessage())) {
+            unexpectedErrors.add(e);
+          }
+        } catch (Throwable e) {
+          unexpectedErrors.add(e);
+        }
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(unexpectedErrors).isEmpty();
+    assertThat(received.get()).isEqualTo(maxNumOfReceivers);
+    assertThat(receivedAmount.get()).isEqualTo(totalAmount);
+    assertThat(giftService.get(0, testRoomId, token).getReceivedAmount()).isEqualTo(totalAmount);
+  }
+
+  // 받기 - 요청마다 다른 salt 로 분배건을 골라, 동시 요청이 같은 분배건에 몰리지 않는다.
+  @Test
+  void testClaimPicksShareBySalt() {
+    final String testRoomId = "room-claim-salt";
+    final String token = giftService.add(0, testRoomId, 1000, 10);
+    Long requestId = giftOrderRepository.findByRoomIdAndToken(testRoomId, token).getRequestId();
+    List<GiftHistory> histories = giftHistoryRepository.findByRequestIdInOrderByHistoryId(Collections.singletonList(requestId));
+
+    assertThat(giftHistoryRepository.claim(requestId, 1, 1)).isEqualTo(1); // 키 순서 그대로 - 가장 작은 키
+    assertThat(giftHistoryRepository.claim(requestId, 2, GiftHistoryRepository.CLAIM_SALT_MODULUS - 1)).isEqualTo(1); // 키 역순 - 가장 큰 키
+
+    assertThat(giftHistoryRepository.findReceivedAmount(requestId, 1)).isEqualTo(histories.get(0).getAmount());
+    assertThat(giftHistoryRepository.findReceivedAmount(requestId, 2)).isEqualTo(histories.get(histories.size() - 1).getAmount());
+    assertThat(giftHistoryRepository.countByRequestIdAndReceiverIdIsNull(requestId)).isEqualTo(8);
   }
 
   // 받기 - 뿌리기 당 한 사용자는 한번만 받을 수 있다.
@@ -211,6 +450,141 @@ class GiftServiceTest {
     assertThat(receiving.getAmount()).isEqualTo(receivedAmount);
   }
 
+  // 조회 - 반복 조회는 캐시에서 응답하고, 캐시된 응답에도 받기 내역이 반영된다.
+  @Test
+  void testRetrievingIsServedFromCache() {
+    final long creatorId = 0;
+    final String testRoomId = "room-cache";
+    final String token = giftService.add(creatorId, testRoomId, 1000, 2);
+
+    giftService.get(creatorId, testRoomId, token);
+    long hitCount = giftInfoCache.stats().hitCount();
+    long receivedAmount = giftService.receive(1, testRoomId, token);
+    GiftInfoResponse res = giftService.get(creatorId, testRoomId, token);
+
+    assertThat(giftInfoCache.stats().hitCount()).isEqualTo(hitCount + 1);
+    assertThat(res.getReceivedAmount()).isEqualTo(receivedAmount);
+    assertThat(res.getRecevings()).hasSize(1);
+
+    assertThatThrownBy(() -> {
+      giftService.get(1, testRoomId, token);
+    }).isInstanceOf(BadRequestException.class).hasMessageContaining(Errors.ONLY_ALLOWED_TO_CREATOR.getMessage());
+  }
+
+  // 조회 - 받기 커밋 이후 DB에서 읽어 캐시된 응답에는 같은 받은 내역이 다시 추가되지 않는다.
+  @Test
+  void testCachedReceivingIsNotAppendedTwice() {
+    final long creatorId = 0;
+    final String testRoomId = "room-cache-race";
+    final String token = giftService.add(creatorId, testRoomId, 1000, 2);
+    long receivedAmount = giftService.receive(1, testRoomId, token);
+
+    giftInfoCache.invalidate(testRoomId, token);
+    giftService.get(creatorId, testRoomId, token); // 받기 커밋 이후, 캐시 반영 이전에 읽은 상황
+    giftInfoCache.addReceiving(testRoomId, token, 1, receivedAmount);
+    GiftInfoResponse res = giftService.get(creatorId, testRoomId, token);
+
+    assertThat(res.getReceivedAmount()).isEqualTo(receivedAmount);
+    assertThat(res.getRecevings()).hasSize(1);
+  }
+
+  // 조회 - 캐시에 없는 응답을 DB에서 읽은 뒤 캐시하기 전에 커밋된 받기도 캐시된 응답에 반영된다.
+  @Test
+  void testReceivingDuringCacheLoadIsNotLost() throws Exception {
+    final long creatorId = 0;
+    final String testRoomId = "room-cache-load";
+    final String token = giftService.add(creatorId, testRoomId, 1000, 2);
+    GiftOrder order = giftOrderRepository.findByRoomIdAndToken(testRoomId, token);
+
+    // 받은 내역을 읽은 직후 멈추도록 분배건 저장소를 감싼다.
+    CountDownLatch loaded = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    GiftHistoryRepository pausing = mock(GiftHistoryRepository.class, invocation -> {
+      Object result;
+      try {
+        result = invocation.getMethod().invoke(giftHistoryRepository, invocation.getArguments());
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+      if(invocation.getMethod().getName().equals("findByRequestIdAndReceiverIdIsNotNull")) {
+        loaded.countDown();
+        release.await(10, TimeUnit.SECONDS);
+      }
+      return result;
+    });
+    GiftService target = AopTestUtils.getUltimateTargetObject(giftService);
+    ReflectionTestUtils.setField(target, "historyRepository", pausing);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<GiftInfoResponse> get = executor.submit(() -> giftService.get(creatorId, testRoomId, token));
+      assertThat(loaded.await(5, TimeUnit.SECONDS)).isTrue();
+
+      Future<Long> receive = executor.submit(() -> giftService.receive(1, testRoomId, token));
+      // 받기가 커밋되어 캐시 반영을 시작할 때까지 읽기를 붙잡아둔다.
+      long deadline = System.currentTimeMillis() + 5000;
+      while(giftHistoryRepository.findReceivedAmount(order.getRequestId(), 1L) == null && System.currentTimeMillis() < deadline) Thread.sleep(10);
+      Thread.sleep(200);
+      release.countDown();
+
+      long receivedAmount = receive.get(5, TimeUnit.SECONDS);
+      assertThat(get.get(5, TimeUnit.SECONDS).getRecevings()).isEmpty(); // 받기 커밋 이전에 읽은 응답
+      GiftInfoResponse res = giftService.get(creatorId, testRoomId, token);
+      assertThat(res.getReceivedAmount()).isEqualTo(receivedAmount);
+      assertThat(res.getRecevings()).hasSize(1);
+    } finally {
+      release.countDown();
+      executor.shutdown();
+      ReflectionTestUtils.setField(target, "historyRepository", giftHistoryRepository);
+    }
+  }
+
+  // 받기 요청 검증에 필요한 뿌리기 건 정보는 생성 시 캐시되어 DB를 조회하지 않는다.
+  @Test
+  void testReceivingValidatesWithCachedOrder() {
+    final long creatorId = 0;
+    final String testRoomId = "room-order-cache";
+    final String token = giftService.add(creatorId, testRoomId, 1000, 2);
+
+    long hitCount = giftOrderCache.stats().hitCount();
+    giftService.receive(1, testRoomId, token);
+    assertThatThrownBy(() -> {
+      giftService.receive(creatorId, testRoomId, token);
+    }).isInstanceOf(BadRequestException.class).hasMessageContaining(Errors.NOT_ALLOWED_TO_CREATOR.getMessage());
+
+    assertThat(giftOrderCache.stats().hitCount()).isEqualTo(hitCount + 2);
+  }
+
+  // 존재하지 않는 토큰은 잠시 기억되고, 해당 토큰으로 뿌리기 건이 생성되면 바로 받을 수 있다.
+  @Test
+  void testUnknownTokenIsRememberedUntilCreated() {
+    final String testRoomId = "room-unknown-token";
+    final String token = giftService.add(0, "room-unknown-token-other", 1000, 2);
+
+    long hitCount = giftOrderCache.unknownStats().hitCount();
+    for(int i = 0; i < 2; i++) {
+      assertThatThrownBy(() -> {
+        giftService.receive(1, testRoomId, token);
+      }).isInstanceOf(BadRequestException.class).hasMessageContaining(Errors.INVALID_TOKEN.getMessage());
+    }
+    assertThat(giftOrderCache.unknownStats().hitCount()).isEqualTo(hitCount + 1);
+    assertThat(giftOrderCache.isUnknown(testRoomId, token)).isTrue();
+
+    GiftOrder order = giftOrderRepository.findByRoomIdAndToken("room-unknown-token-other", token);
+    GiftOrder created = new GiftOrder();
+    created.setRequestId(order.getRequestId());
+    created.setCreatorId(0L);
+    created.setRoomId(testRoomId);
+    created.setToken(token);
+    created.setTotalAmount(order.getTotalAmount());
+    created.setMaxNumOfRecipients(order.getMaxNumOfRecipients());
+    created.setCreateTime(order.getCreateTime());
+    created.setExpirationTime(order.getExpirationTime());
+    giftOrderCache.register(created, System.currentTimeMillis() + 60000);
+
+    assertThat(giftOrderCache.isUnknown(testRoomId, token)).isFalse();
+    assertThat(giftOrderCache.get(testRoomId, token)).isNotNull();
+  }
+
   // 유효하지 않은 토큰은 실패 응답이 내려간다.
   @Test
   void testRetrievingFailOnInvalidToken() {
@@ -258,12 +632,12 @@ class GiftServiceTest {
   }
 
   private void testMoneyDividerMustBeConsistent(long totalAmount, int numOfReceivers) {
-    GiftService.MoneyDivider moneyDivider = giftService.new MoneyDivider(totalAmount, numOfReceivers);
+    ShareSequence shares = moneyDivider.divide(totalAmount, numOfReceivers);
     long sumAmount = 0;
     for(int i = 0; i < numOfReceivers; i++) {
-      long amount = moneyDivider.next();
-      assertThat(amount).isLessThanOrEqualTo(moneyDivider.getMaxAmount());
-      assertThat(amount).isGreaterThanOrEqualTo(moneyDivider.getMinAmount());
+      long amount = shares.next();
+      assertThat(amount).isLessThanOrEqualTo(shares.getMaxAmount());
+      assertThat(amount).isGreaterThanOrEqualTo(shares.getMinAmount());
       sumAmount += amount;
     }
     assertThat(sumAmount).isEqualTo(totalAmount);